@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves many concurrent ATM sessions against a single Bank
+ * Demonstrates: Networking, Thread-per-session concurrency, Resource management
+ */
+public class ATMServer implements AutoCloseable {
+
+    private final Bank bank;
+    // All terminals served here pay out from the same cassettes
+    private final CashDispenser dispenser = CashDispenser.fromSystemProperties();
+    private final ExecutorService sessionExecutor;
+    private final AtomicInteger sessionCounter = new AtomicInteger();
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private volatile ServerSocket serverSocket;
+
+    public ATMServer(Bank bank) {
+        this.bank = bank;
+        // One thread per session; sessions spend almost all their time blocked on terminal input
+        this.sessionExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "atm-session-" + sessionCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Metrics.global().gauge("atm_active_sessions", "", "Terminal sessions currently open",
+            activeSessions::get);
+    }
+
+    /**
+     * Accepts terminal connections on the given port until the server is closed
+     */
+    public void listen(int port) throws IOException {
+        serverSocket = new ServerSocket(port);
+        System.out.println("🌐 ATM server listening on port " + serverSocket.getLocalPort());
+
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (serverSocket.isClosed()) break;
+                throw e;
+            }
+            sessionExecutor.submit(() -> serveSocket(socket));
+        }
+    }
+
+    /**
+     * Starts an in-process session over the given streams (used by simulated terminals)
+     */
+    public Future<?> openLocalSession(InputStream input, OutputStream output) {
+        return openLocalSession(input, output, false);
+    }
+
+    /**
+     * Starts an in-process session, optionally headless so scripted terminals run at full speed
+     */
+    public Future<?> openLocalSession(InputStream input, OutputStream output, boolean headless) {
+        return sessionExecutor.submit(() -> runSession(input, output, headless));
+    }
+
+    private void serveSocket(Socket socket) {
+        try (Socket s = socket) {
+            runSession(s.getInputStream(), s.getOutputStream(), false);
+        } catch (IOException e) {
+            System.out.println("❌ Terminal connection error: " + e.getMessage());
+        }
+    }
+
+    private void runSession(InputStream input, OutputStream output, boolean headless) {
+        activeSessions.incrementAndGet();
+        try {
+            PrintStream out = new PrintStream(output, true, StandardCharsets.UTF_8);
+            new ATMSession(bank, input, out, headless, dispenser).run();
+            if (!headless) {
+                out.println("\n👋 Thank you for using our ATM service!");
+            }
+        } finally {
+            activeSessions.decrementAndGet();
+        }
+    }
+
+    public int getActiveSessions() { return activeSessions.get(); }
+    public CashDispenser getDispenser() { return dispenser; }
+
+    @Override
+    public void close() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        sessionExecutor.shutdownNow();
+        try {
+            sessionExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,744 @@
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+/**
+ * A single customer session at an ATM terminal
+ * Demonstrates: State machine, Per-session state, Stream-based I/O
+ */
+public class ATMSession {
+
+    private static final int MAX_PIN_ATTEMPTS = 3;
+    // Quick withdrawal presets, options 1-5 of the withdrawal menu
+    private static final double[] FAST_CASH_AMOUNTS = { 500, 1000, 2000, 5000, 10000 };
+
+    // Bank-side time of each step, excluding customer typing and screen animations
+    private static final Metrics.Timer LOGIN_TIME = Metrics.global().timer("atm_login_seconds", "",
+        "PIN check time per login attempt, including lockout checks and verifier queueing");
+    private static final Metrics.Counter[] LOGIN_RESULTS = new Metrics.Counter[PinVerifier.Result.values().length];
+    private static final Metrics.Timer BALANCE_TIME = operationTimer("balance");
+    private static final Metrics.Timer WITHDRAW_TIME = operationTimer("withdraw");
+    private static final Metrics.Timer DEPOSIT_TIME = operationTimer("deposit");
+    private static final Metrics.Timer PIN_CHANGE_TIME = operationTimer("pin_change");
+    private static final Metrics.Timer STATEMENT_TIME = operationTimer("mini_statement");
+    private static final Metrics.Timer ACCOUNTS_TIME = operationTimer("accounts");
+
+    static {
+        for (PinVerifier.Result result : PinVerifier.Result.values()) {
+            LOGIN_RESULTS[result.ordinal()] = Metrics.global().counter("atm_login_attempts_total",
+                "result=\"" + result.name().toLowerCase(Locale.ROOT) + "\"", "Login attempts by outcome");
+        }
+    }
+
+    private static Metrics.Timer operationTimer(String operation) {
+        return Metrics.global().timer("atm_operation_seconds", "operation=\"" + operation + "\"",
+            "Processing time of ATM menu operations");
+    }
+
+    // Session lifecycle states
+    private enum State { AUTHENTICATE, MENU, ANOTHER_TRANSACTION, CLOSED }
+
+    private final Bank bank;
+    private final Scanner in;
+    private final PrintStream out;
+    // Headless sessions skip banners, animations and "press Enter" pauses (scripted/load runs)
+    private final boolean headless;
+    // Cash cassettes of this terminal, possibly shared with other terminals
+    private final CashDispenser dispenser;
+    // Account the menu operations act on; any of the logged-in customer's accounts
+    private Account currentAccount;
+
+    public ATMSession(Bank bank, InputStream input, PrintStream output) {
+        this(bank, input, output, false);
+    }
+
+    public ATMSession(Bank bank, InputStream input, PrintStream output, boolean headless) {
+        this(bank, input, output, headless, CashDispenser.fromSystemProperties());
+    }
+
+    public ATMSession(Bank bank, InputStream input, PrintStream output, boolean headless, CashDispenser dispenser) {
+        this.bank = bank;
+        this.in = new Scanner(input);
+        this.out = output;
+        this.headless = headless;
+        this.dispenser = dispenser;
+        dispenser.precompute(FAST_CASH_AMOUNTS);
+    }
+
+    /**
+     * Displays the welcome screen with bank information
+     */
+    private void displayWelcomeScreen() {
+        if (headless) return;
+
+        clearScreen();
+        out.println("╔" + "=".repeat(60) + "╗");
+        out.println("║" + " ".repeat(18) + "WELCOME TO ATM SIMULATOR" + " ".repeat(18) + "║");
+        out.println("║" + " ".repeat(60) + "║");
+        out.println("║" + " ".repeat(15) + "🏦 STATE BANK OF JAVA 🏦" + " ".repeat(16) + "║");
+        out.println("║" + " ".repeat(60) + "║");
+        out.println("║" + " ".repeat(12) + "Your Money, Your Security, Our Priority" + " ".repeat(10) + "║");
+        out.println("╚" + "=".repeat(60) + "╝");
+        out.println();
+
+        // Display demo accounts for easy testing
+        bank.displayDemoAccounts(out);
+
+        // Simulate ATM initialization
+        showProgress("🔧 Initializing ATM services", 3, 500, " ✅ Ready!\n");
+    }
+
+    /**
+     * Runs the session until the customer leaves or the terminal disconnects
+     */
+    public void run() {
+        displayWelcomeScreen();
+
+        State state = State.AUTHENTICATE;
+        while (state != State.CLOSED) {
+            try {
+                state = step(state);
+            } catch (NoSuchElementException e) {
+                // Terminal closed its input stream
+                state = State.CLOSED;
+            } catch (Exception e) {
+                out.println("\n❌ An error occurred: " + e.getMessage());
+                out.println("Please try again.");
+                waitForUser();
+                state = State.AUTHENTICATE;
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Advances the session state machine by one step
+     */
+    private State step(State state) {
+        switch (state) {
+            case AUTHENTICATE:
+                if (authenticateUser()) {
+                    return State.MENU;
+                }
+                out.println("\n❌ Authentication failed. Please try again later.");
+                waitForUser();
+                return State.ANOTHER_TRANSACTION;
+            case MENU:
+                return handleMenuChoice();
+            case ANOTHER_TRANSACTION:
+                return askForAnotherTransaction() ? State.AUTHENTICATE : State.CLOSED;
+            default:
+                return State.CLOSED;
+        }
+    }
+
+    /**
+     * Handles user authentication with PIN validation
+     */
+    private boolean authenticateUser() {
+        clearScreen();
+        out.println("🔐 ATM Authentication");
+        out.println("=" + "=".repeat(30));
+
+        int attempts = 0;
+        Account lastAccount = null;
+        while (attempts < MAX_PIN_ATTEMPTS) {
+            try {
+                // Get account number
+                out.print("\n💳 Enter your Account Number (10 digits): ");
+                String accountNumber = in.nextLine().trim();
+
+                // Validate account number format
+                if (Account.parseAccountNumber(accountNumber) == Digits.INVALID) {
+                    out.println("❌ Invalid account number format! Please enter 10 digits.");
+                    continue;
+                }
+
+                // Find account
+                Account account = bank.findAccount(accountNumber);
+                if (account == null) {
+                    out.println("❌ Account not found! Please check your account number.");
+                    attempts++;
+                    continue;
+                }
+                lastAccount = account;
+
+                if (account.isLocked()) {
+                    out.println("🔒 This account is locked after too many incorrect PINs.");
+                    out.println("📞 Please contact customer service: 1800-XXX-XXXX");
+                    return false;
+                }
+
+                // Get PIN
+                out.print("🔑 Enter your 4-digit PIN: ");
+                String pin = in.nextLine().trim();
+
+                // Validate PIN format
+                if (!PinCredential.isWellFormed(pin)) {
+                    out.println("❌ Invalid PIN format! Please enter 4 digits.");
+                    attempts++;
+                    continue;
+                }
+
+                // Validate PIN (hash check runs on the bank's verifier pool)
+                long checkStart = System.nanoTime();
+                PinVerifier.Result result = bank.verifyPin(account, pin);
+                LOGIN_TIME.recordSince(checkStart);
+                LOGIN_RESULTS[result.ordinal()].increment();
+                if (result == PinVerifier.Result.BUSY) {
+                    out.println("⏳ The ATM network is busy. Please try again in a moment.");
+                    continue;
+                }
+                if (result == PinVerifier.Result.THROTTLED) {
+                    out.println("⏳ Too many incorrect PINs. Please try again in "
+                        + bank.getLoginRetryAfterSeconds(account) + " seconds.");
+                    attempts++;
+                    continue;
+                }
+                if (result == PinVerifier.Result.LOCKED) {
+                    out.println("🔒 Too many incorrect PINs. This account has been locked.");
+                    out.println("📞 Please contact customer service: 1800-XXX-XXXX");
+                    return false;
+                }
+                if (result == PinVerifier.Result.MATCH) {
+                    currentAccount = account;
+                    out.println("\n✅ Authentication successful!");
+                    out.println("👋 Welcome, " + account.getAccountHolderName() + "!");
+
+                    // Brief loading animation
+                    showProgress("🔄 Loading your account", 3, 300, " ✅");
+
+                    List<Account> accounts = customerAccounts();
+                    if (accounts.size() > 1) {
+                        out.println("\n🗂️ You have " + accounts.size() + " accounts with us, ₹"
+                            + String.format("%.2f", Account.fromMinorUnits(currentAccount.getCustomer().getTotalBalanceMinor()))
+                            + " in total. Choose 'My Accounts' to see them or switch.");
+                    }
+                    return true;
+                } else {
+                    attempts++;
+                    int remainingAttempts = MAX_PIN_ATTEMPTS - attempts;
+                    if (remainingAttempts > 0) {
+                        out.println("❌ Incorrect PIN! " + remainingAttempts + " attempts remaining.");
+                    }
+                }
+
+            } catch (Exception e) {
+                out.println("❌ Invalid input! Please try again.");
+                attempts++;
+            }
+        }
+
+        out.println("\n🚫 Maximum PIN attempts exceeded!");
+        if (lastAccount != null && bank.getLoginRetryAfterSeconds(lastAccount) > 0) {
+            // The back-off is shared across terminals, so starting a new session doesn't reset it
+            out.println("🔒 Further attempts on this account are paused for "
+                + bank.getLoginRetryAfterSeconds(lastAccount) + " seconds.");
+        }
+        out.println("📞 Please contact customer service: 1800-XXX-XXXX");
+
+        return false;
+    }
+
+    /**
+     * Shows the main menu and handles a single selection
+     */
+    private State handleMenuChoice() {
+        displayMainMenu();
+
+        try {
+            int choice = getIntInput("👆 Enter your choice (1-7): ");
+
+            switch (choice) {
+                case 1:
+                    handleBalanceInquiry();
+                    break;
+                case 2:
+                    handleCashWithdrawal();
+                    break;
+                case 3:
+                    handleCashDeposit();
+                    break;
+                case 4:
+                    handlePinChange();
+                    break;
+                case 5:
+                    handleMiniStatement();
+                    break;
+                case 6:
+                    handleMyAccounts();
+                    break;
+                case 7:
+                    handleSessionEnd();
+                    return State.ANOTHER_TRANSACTION;
+                default:
+                    out.println("❌ Invalid choice! Please select 1-7.");
+            }
+
+            waitForUser();
+
+        } catch (NoSuchElementException e) {
+            throw e;
+        } catch (Exception e) {
+            out.println("❌ Invalid input! Please enter a number between 1-7.");
+            waitForUser();
+        }
+        return State.MENU;
+    }
+
+    /**
+     * Displays the main ATM menu
+     */
+    private void displayMainMenu() {
+        if (headless) return;
+
+        clearScreen();
+        out.println("╔" + "=".repeat(50) + "╗");
+        out.println("║" + " ".repeat(15) + "ATM MAIN MENU" + " ".repeat(22) + "║");
+        out.println("║" + " ".repeat(50) + "║");
+        out.println("║  1. 💰 Balance Inquiry" + " ".repeat(25) + "║");
+        out.println("║  2. 💸 Cash Withdrawal" + " ".repeat(25) + "║");
+        out.println("║  3. 💵 Cash Deposit" + " ".repeat(28) + "║");
+        out.println("║  4. 🔑 Change PIN" + " ".repeat(31) + "║");
+        out.println("║  5. 📄 Mini Statement" + " ".repeat(26) + "║");
+        out.println("║  6. 🗂️ My Accounts" + " ".repeat(30) + "║");
+        out.println("║  7. 🚪 Exit" + " ".repeat(36) + "║");
+        out.println("║" + " ".repeat(50) + "║");
+        out.println("╚" + "=".repeat(50) + "╝");
+        out.println("\n👤 Account: " + maskAccountNumber(currentAccount.getAccountNumber()));
+        out.println("👋 Welcome, " + currentAccount.getAccountHolderName());
+    }
+
+    /**
+     * Handles balance inquiry
+     */
+    private void handleBalanceInquiry() {
+        clearScreen();
+        out.println("💰 BALANCE INQUIRY");
+        out.println("=" + "=".repeat(30));
+        out.println();
+        out.println("💳 Account: " + maskAccountNumber(currentAccount.getAccountNumber()));
+        out.println("👤 Name: " + currentAccount.getAccountHolderName());
+        out.println();
+        long start = System.nanoTime();
+        out.println("💵 Available Balance: ₹" + String.format("%.2f", currentAccount.getBalance()));
+        List<Account> accounts = customerAccounts();
+        if (accounts.size() > 1) {
+            out.println("🏦 Total across your " + accounts.size() + " accounts: ₹"
+                + String.format("%.2f", Account.fromMinorUnits(currentAccount.getCustomer().getTotalBalanceMinor())));
+        }
+        BALANCE_TIME.recordSince(start);
+        out.println();
+        out.println("✅ Balance inquiry completed successfully!");
+    }
+
+    /**
+     * Handles cash withdrawal
+     */
+    private void handleCashWithdrawal() {
+        clearScreen();
+        out.println("💸 CASH WITHDRAWAL");
+        out.println("=" + "=".repeat(30));
+        out.println("\n💰 Current Balance: ₹" + String.format("%.2f", currentAccount.getBalance()));
+        out.println("\n💡 Quick withdrawal amounts:");
+        out.println("  1. ₹500     2. ₹1,000   3. ₹2,000");
+        out.println("  4. ₹5,000   5. ₹10,000  6. Other amount");
+        out.println();
+
+        try {
+            int choice = getIntInput("Select option (1-6): ");
+            double amount = 0;
+
+            if (choice >= 1 && choice <= FAST_CASH_AMOUNTS.length) {
+                amount = FAST_CASH_AMOUNTS[choice - 1];
+            } else if (choice == 6) {
+                amount = getDoubleInput("💰 Enter withdrawal amount: ₹");
+            } else {
+                out.println("❌ Invalid choice!");
+                return;
+            }
+
+            // Set the notes aside first, so an amount the cassettes can't make is refused before any debit
+            long amountMinor = Account.toMinorUnits(amount);
+            CashDispenser.Reservation notes = null;
+            long reserveNanos = 0;
+            if (amountMinor > 0 && amountMinor % 10000 == 0) {
+                reserveNanos = System.nanoTime();
+                notes = dispenser.reserve(amountMinor);
+                reserveNanos = System.nanoTime() - reserveNanos;
+                if (notes == null) {
+                    WITHDRAW_TIME.record(reserveNanos);
+                    out.println("❌ Sorry, this ATM cannot dispense ₹" + String.format("%.2f", amount)
+                        + " right now. Please try a different amount.");
+                    return;
+                }
+            }
+
+            // Confirmation
+            out.println("\n🔄 Processing withdrawal of ₹" + String.format("%.2f", amount));
+            showProgress("⏳ Please wait", 3, 500, "");
+
+            TransactionResult result = null;
+            long start = System.nanoTime();
+            try {
+                result = currentAccount.withdraw(amount);
+            } finally {
+                if ((result == null || !result.isSuccess()) && notes != null) {
+                    dispenser.release(notes);
+                }
+                WITHDRAW_TIME.record(reserveNanos + System.nanoTime() - start);
+            }
+            switch (result) {
+                case INVALID_AMOUNT:
+                    out.println("❌ Invalid amount! Please enter a positive value.");
+                    break;
+                case INVALID_DENOMINATION:
+                    out.println("❌ Please enter amount in multiples of ₹100");
+                    break;
+                case DAILY_LIMIT_EXCEEDED:
+                    out.println("❌ Daily withdrawal limit exceeded! Maximum withdrawal: ₹25,000 per day, ₹"
+                        + String.format("%.2f", Account.fromMinorUnits(currentAccount.getWithdrawalAllowanceLeftMinor()))
+                        + " left today");
+                    break;
+                case INSUFFICIENT_FUNDS:
+                    out.println("❌ Insufficient funds! Available balance: ₹"
+                        + String.format("%.2f", currentAccount.getBalance()));
+                    break;
+                case SUSPECTED_FRAUD:
+                    out.println("🛡️ This withdrawal has been held for your security. No money has been taken.");
+                    out.println("📞 Please contact customer service to confirm it.");
+                    break;
+                case JOURNAL_UNAVAILABLE:
+                    out.println("❌ Withdrawals are unavailable right now. No money has been taken.");
+                    break;
+                case NOT_DURABLE:
+                    // The debit could not be confirmed, so no cash leaves the machine
+                    out.println("⚠️ We could not confirm this withdrawal and no cash was dispensed.");
+                    out.println("📞 Please contact customer service about your balance.");
+                    break;
+                default:
+                    break;
+            }
+            if (result.isSuccess()) {
+                out.println("✅ ₹" + String.format("%.2f", amount) + " withdrawn successfully!");
+                out.println("💰 Remaining balance: ₹" + String.format("%.2f", currentAccount.getBalance()));
+                out.println("\n💰 Please collect your cash from the dispenser: " + notes);
+                out.println("🧾 Transaction receipt printed");
+                out.println("💳 Please take your card");
+            }
+
+        } catch (Exception e) {
+            out.println("❌ Invalid amount entered!");
+        }
+    }
+
+    /**
+     * Handles cash deposit
+     */
+    private void handleCashDeposit() {
+        clearScreen();
+        out.println("💵 CASH DEPOSIT");
+        out.println("=" + "=".repeat(30));
+        out.println("\n💰 Current Balance: ₹" + String.format("%.2f", currentAccount.getBalance()));
+        out.println("\n📝 Instructions:");
+        out.println("  • Insert cash notes into the deposit slot");
+        out.println("  • Maximum deposit: ₹50,000 per transaction");
+        out.println("  • Only ₹100, ₹200, ₹500, ₹2000 notes accepted");
+        out.println();
+
+        try {
+            double amount = getDoubleInput("💰 Enter deposit amount: ₹");
+
+            // Simulate cash counting
+            out.println("\n🔄 Counting and validating cash...");
+            showProgress("⏳ Please wait", 4, 400, "");
+
+            long start = System.nanoTime();
+            TransactionResult result = currentAccount.deposit(amount);
+            DEPOSIT_TIME.recordSince(start);
+            if (result == TransactionResult.INVALID_AMOUNT) {
+                out.println("❌ Invalid amount! Please enter a positive value.");
+            } else if (result == TransactionResult.DAILY_LIMIT_EXCEEDED) {
+                out.println("❌ Daily deposit limit exceeded! Maximum deposit: ₹50,000 per day, ₹"
+                    + String.format("%.2f", Account.fromMinorUnits(currentAccount.getDepositAllowanceLeftMinor()))
+                    + " left today");
+            } else if (result == TransactionResult.JOURNAL_UNAVAILABLE) {
+                out.println("❌ Deposits are unavailable right now. Please collect your cash.");
+            } else if (result == TransactionResult.NOT_DURABLE) {
+                out.println("⚠️ We could not confirm this deposit. Please contact customer service.");
+            }
+            if (result.isSuccess()) {
+                out.println("✅ ₹" + String.format("%.2f", amount) + " deposited successfully!");
+                out.println("\n✅ Cash deposit successful!");
+                out.println("💰 New Balance: ₹" + String.format("%.2f", currentAccount.getBalance()));
+                out.println("🧾 Transaction receipt printed");
+            }
+
+        } catch (Exception e) {
+            out.println("❌ Invalid amount entered!");
+        }
+    }
+
+    /**
+     * Handles PIN change
+     */
+    private void handlePinChange() {
+        clearScreen();
+        out.println("🔑 CHANGE PIN");
+        out.println("=" + "=".repeat(30));
+        out.println("\n🔒 For security, please enter your current PIN and new PIN");
+        out.println();
+
+        try {
+            String currentPin = getPasswordInput("🔑 Enter current PIN (4 digits): ");
+
+            if (!PinCredential.isWellFormed(currentPin)) {
+                out.println("❌ Invalid PIN format!");
+                return;
+            }
+
+            String newPin = getPasswordInput("🆕 Enter new PIN (4 digits): ");
+
+            if (!PinCredential.isWellFormed(newPin)) {
+                out.println("❌ Invalid PIN format!");
+                return;
+            }
+
+            String confirmPin = getPasswordInput("✅ Confirm new PIN (4 digits): ");
+
+            if (!newPin.equals(confirmPin)) {
+                out.println("❌ New PIN and confirmation don't match!");
+                return;
+            }
+
+            // Processing animation
+            out.println("\n🔄 Processing PIN change...");
+            showProgress("⏳ Please wait", 3, 500, "");
+
+            long start = System.nanoTime();
+            TransactionResult result = bank.changePin(currentAccount, currentPin, newPin);
+            PIN_CHANGE_TIME.recordSince(start);
+            switch (result) {
+                case SUCCESS:
+                    out.println("✅ PIN changed successfully!");
+                    break;
+                case INCORRECT_PIN:
+                    out.println("❌ Invalid current PIN!");
+                    break;
+                case INVALID_PIN_FORMAT:
+                    out.println("❌ PIN must be exactly 4 digits!");
+                    break;
+                case SAME_PIN:
+                    out.println("❌ New PIN cannot be the same as current PIN!");
+                    break;
+                case ACCOUNT_LOCKED:
+                    out.println("🔒 Too many incorrect PINs. This account has been locked.");
+                    out.println("📞 Please contact customer service: 1800-XXX-XXXX");
+                    break;
+                case TRY_AGAIN_LATER:
+                    out.println("⏳ PIN changes are unavailable for now. Please try again in "
+                        + Math.max(1, bank.getLoginRetryAfterSeconds(currentAccount)) + " seconds.");
+                    break;
+                case JOURNAL_UNAVAILABLE:
+                    out.println("❌ PIN changes are unavailable right now. Your PIN is unchanged.");
+                    break;
+                case NOT_DURABLE:
+                    out.println("⚠️ We could not confirm your new PIN. Please contact customer service.");
+                    break;
+                default:
+                    break;
+            }
+
+        } catch (Exception e) {
+            out.println("❌ Error processing PIN change!");
+        }
+    }
+
+    /**
+     * Handles mini statement display
+     */
+    private void handleMiniStatement() {
+        clearScreen();
+        long start = System.nanoTime();
+        currentAccount.printMiniStatement(out);
+        STATEMENT_TIME.recordSince(start);
+    }
+
+    /**
+     * Lists all of the customer's accounts with consolidated balances and lets them switch account
+     */
+    private void handleMyAccounts() {
+        clearScreen();
+        out.println("🗂️ MY ACCOUNTS");
+        out.println("=" + "=".repeat(30));
+        out.println();
+
+        long start = System.nanoTime();
+        List<Account> accounts = customerAccounts();
+        long totalMinor = 0;
+        long typeTotalMinor = 0;
+        int typeCount = 0;
+        for (int i = 0; i < accounts.size(); i++) {
+            Account account = accounts.get(i);
+            long balanceMinor = account.getBalanceMinor();
+            out.println(String.format("  %d. %-8s %s  ₹%,.2f%s%s", i + 1, account.getAccountType().getDisplayName(),
+                maskAccountNumber(account.getAccountNumber()), Account.fromMinorUnits(balanceMinor),
+                account == currentAccount ? "  ◀ in use" : "", account.isLocked() ? "  🔒 locked" : ""));
+            totalMinor += balanceMinor;
+            typeTotalMinor += balanceMinor;
+            typeCount++;
+            // Accounts come sorted by type, so each type's subtotal closes where the type changes
+            boolean lastOfType = i + 1 == accounts.size()
+                || accounts.get(i + 1).getAccountType() != account.getAccountType();
+            if (lastOfType) {
+                if (typeCount > 1) {
+                    out.println(String.format("     %s total: ₹%,.2f", account.getAccountType().getDisplayName(),
+                        Account.fromMinorUnits(typeTotalMinor)));
+                }
+                typeTotalMinor = 0;
+                typeCount = 0;
+            }
+        }
+        out.println("-" + "-".repeat(30));
+        out.println(String.format("🏦 Total balance: ₹%,.2f", Account.fromMinorUnits(totalMinor)));
+        ACCOUNTS_TIME.recordSince(start);
+
+        if (accounts.size() < 2) {
+            return;
+        }
+        int choice = getIntInput("\n👆 Select an account to use (1-" + accounts.size() + "), or 0 to keep this one: ");
+        if (choice == 0) {
+            return;
+        }
+        if (choice < 1 || choice > accounts.size()) {
+            out.println("❌ Invalid choice! Please select 0-" + accounts.size() + ".");
+            return;
+        }
+        Account selected = accounts.get(choice - 1);
+        if (selected.isLocked()) {
+            // A locked account stays out of reach until customer service unlocks it, even after login
+            out.println("🔒 That account is locked. Please contact customer service: 1800-XXX-XXXX");
+            return;
+        }
+        currentAccount = selected;
+        out.println("✅ Now using your " + selected.getAccountType().getDisplayName() + " account "
+            + maskAccountNumber(selected.getAccountNumber()));
+    }
+
+    // All accounts of the logged-in customer, sorted by type; just the current one if it has no customer
+    private List<Account> customerAccounts() {
+        Customer customer = currentAccount.getCustomer();
+        return customer == null ? List.of(currentAccount) : customer.getAccounts();
+    }
+
+    /**
+     * Handles session end
+     */
+    private void handleSessionEnd() {
+        if (headless) {
+            currentAccount = null;
+            out.println("✅ Transaction completed successfully!");
+            return;
+        }
+
+        clearScreen();
+        out.println("🚪 SESSION END");
+        out.println("=" + "=".repeat(20));
+        out.println();
+        out.println("✅ Transaction completed successfully!");
+        out.println("🙏 Thank you for banking with us!");
+        out.println();
+        out.println("🔒 For your security:");
+        out.println("  • Please take your card");
+        out.println("  • Keep your PIN confidential");
+        out.println("  • Check your account regularly");
+        out.println();
+        out.println("📞 Customer Service: 1800-XXX-XXXX");
+        out.println("🌐 Online Banking: www.statebankofjava.com");
+
+        currentAccount = null; // Clear current session
+
+        // Countdown before next session
+        out.println("\n⏳ ATM will be ready for next customer in...");
+        for (int i = 3; i > 0; i--) {
+            out.print(i + "... ");
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        out.println("Ready! 🎯\n");
+    }
+
+    /**
+     * Asks user if they want to perform another transaction
+     */
+    private boolean askForAnotherTransaction() {
+        if (currentAccount != null) return false; // Already logged out
+
+        out.println("\n" + "=".repeat(50));
+        out.print("🔄 Would you like to perform another transaction? (y/n): ");
+        String response = in.nextLine().trim().toLowerCase();
+        return response.startsWith("y");
+    }
+
+    // Utility methods
+
+    private void clearScreen() {
+        if (headless) return;
+
+        // Print multiple lines to simulate screen clear
+        for (int i = 0; i < 3; i++) {
+            out.println();
+        }
+    }
+
+    private void waitForUser() {
+        if (headless) return;
+
+        out.println("\n📱 Press Enter to continue...");
+        in.nextLine();
+    }
+
+    /**
+     * Prints a dotted progress animation; skipped entirely in headless mode
+     */
+    private void showProgress(String label, int dots, long delayMillis, String suffix) {
+        if (headless) return;
+
+        out.print(label);
+        for (int i = 0; i < dots; i++) {
+            try {
+                Thread.sleep(delayMillis);
+                out.print(".");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        out.println(suffix);
+    }
+
+    private int getIntInput(String prompt) {
+        out.print(prompt);
+        return Integer.parseInt(in.nextLine().trim());
+    }
+
+    private double getDoubleInput(String prompt) {
+        out.print(prompt);
+        return Double.parseDouble(in.nextLine().trim());
+    }
+
+    private String getPasswordInput(String prompt) {
+        out.print(prompt);
+        return in.nextLine().trim();
+    }
+
+    private String maskAccountNumber(String accountNumber) {
+        if (accountNumber.length() <= 4) return accountNumber;
+        return "****" + accountNumber.substring(accountNumber.length() - 4);
+    }
+}
@@ -2,31 +2,84 @@
  * Represents a bank account with basic operations
  * Demonstrates: Encapsulation, Data validation, Method overloading
  */
-import java.util.ArrayList;
+import java.io.PrintStream;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Account {
     private String accountNumber;
     private String accountHolderName;
-    private double balance;
-    private String pin;
-    private List<Transaction> transactionHistory;
+    private final AccountType accountType;
+    // Customer holding the account, kept in step by Customer.addAccount; null until it joins a customer
+    private volatile Customer customer;
+    // Balance in paise (minor units) so concurrent terminals can update it with CAS
+    private final AtomicLong balanceMinor;
+    // Salted PBKDF2 hash; the PIN itself is never stored
+    private volatile PinCredential pin;
+    private final TransactionHistory transactionHistory;
     private Date accountCreationDate;
+    // Write-ahead journal; null until the account is registered with a journaling Bank
+    private volatile TransactionJournal journal;
+    // Set after too many wrong PINs; only customer service (Bank.unlockAccount) clears it
+    private volatile boolean locked;
+    // Failed logins before this mark (last success or unlock) no longer count towards back-off
+    private volatile LoginThrottle.Mark loginMark;
+    // Exact wrong PINs since the last success or unlock, which alone decide a lockout (guarded by this)
+    private int loginFailures;
+    private long lastLoginFailure;
+    // Bank-wide aggregates; null until the account is registered with a Bank
+    private volatile BankTotals totals;
+
+    // ATM cash limits per account over the window chosen by DailyLimits (rolling 24h by default)
+    static final long DAILY_WITHDRAWAL_LIMIT_MINOR = 25_000_00L;
+    static final long DAILY_DEPOSIT_LIMIT_MINOR = 50_000_00L;
+    // Account numbers are always this many digits, so every one fits in a long
+    static final int ACCOUNT_NUMBER_DIGITS = 10;
+    private static volatile DailyLimits dailyLimits = DailyLimits.fromSystemProperties();
+    // Risk rules every ATM withdrawal passes after the limits and before the debit
+    private static volatile FraudScreen fraudScreen = FraudScreen.fromSystemProperties();
+    private static final AsyncLogger AUDIT = AsyncLogger.global();
 
     // Constructor with initial balance
     public Account(String accountNumber, String accountHolderName, double initialBalance, String pin) {
+        this(accountNumber, accountHolderName, AccountType.SAVINGS, initialBalance, pin);
+    }
+
+    public Account(String accountNumber, String accountHolderName, AccountType accountType, double initialBalance,
+                   String pin) {
+        this(accountNumber, accountHolderName, accountType, toMinorUnits(initialBalance), PinCredential.create(pin),
+            System.currentTimeMillis(),
+            Transaction.nextId());
+    }
+
+    // Restores an account from a snapshot (balance already includes its history); its limits and
+    // fraud windows are refilled from the journal's last day, not from this short history
+    static Account restore(String accountNumber, String accountHolderName, AccountType accountType, long balanceMinor,
+                           PinCredential pin, long openedAt, List<Transaction> recentHistory) {
+        Account account = new Account(accountNumber, accountHolderName, accountType, 0L, pin, openedAt, 0);
+        account.balanceMinor.set(balanceMinor);
+        for (Transaction transaction : recentHistory) {
+            account.transactionHistory.add(transaction);
+        }
+        return account;
+    }
+
+    // Restores an account opened at a known time with a known opening transaction id (journal replay)
+    Account(String accountNumber, String accountHolderName, AccountType accountType, long initialBalanceMinor,
+            PinCredential pin, long openedAt, long openingTransactionId) {
         this.accountNumber = accountNumber;
         this.accountHolderName = accountHolderName;
-        this.balance = initialBalance;
+        this.accountType = accountType;
+        this.balanceMinor = new AtomicLong(initialBalanceMinor);
         this.pin = pin;
-        this.transactionHistory = new ArrayList<>();
-        this.accountCreationDate = new Date();
+        this.transactionHistory = new TransactionHistory();
+        this.accountCreationDate = new Date(openedAt);
 
         // Add initial deposit transaction
-        if (initialBalance > 0) {
-            transactionHistory.add(new Transaction("DEPOSIT", initialBalance, 
-                "Account opened with initial deposit"));
+        if (initialBalanceMinor > 0) {
+            transactionHistory.add(new Transaction(openingTransactionId, TransactionType.DEPOSIT, initialBalanceMinor,
+                Transaction.Description.ACCOUNT_OPENING, Transaction.millisToEpochNanos(openedAt)));
         }
     }
 
@@ -41,116 +94,305 @@ public class Account {
      * @return true if PIN matches
      */
     public boolean validatePin(String enteredPin) {
-        return this.pin.equals(enteredPin);
+        return this.pin.matches(enteredPin);
     }
 
     /**
      * Deposits money into the account
      * @param amount Amount to deposit
-     * @return true if successful
+     * @return SUCCESS, or INVALID_AMOUNT / DAILY_LIMIT_EXCEEDED / JOURNAL_UNAVAILABLE / NOT_DURABLE
      */
-    public boolean deposit(double amount) {
-        if (amount <= 0) {
-            System.out.println("❌ Invalid amount! Please enter a positive value.");
-            return false;
+    public TransactionResult deposit(double amount) {
+        long amountMinor = toMinorUnits(amount);
+        if (amountMinor <= 0) {
+            return audit(AsyncLogger.Event.DEPOSIT, TransactionResult.INVALID_AMOUNT, amountMinor);
         }
 
-        if (amount > 50000) {
-            System.out.println("❌ Daily deposit limit exceeded! Maximum deposit: ₹50,000");
-            return false;
+        DailyLimits limits = dailyLimits;
+        long limitBucket = limits.tryConsume(DailyLimits.Kind.DEPOSIT, accountNumber, amountMinor,
+            DAILY_DEPOSIT_LIMIT_MINOR);
+        if (limitBucket == DailyLimits.REFUSED) {
+            return audit(AsyncLogger.Event.DEPOSIT, TransactionResult.DAILY_LIMIT_EXCEEDED, amountMinor);
         }
 
-        this.balance += amount;
-        transactionHistory.add(new Transaction("DEPOSIT", amount, "Cash deposit via ATM"));
-        System.out.println("✅ ₹" + String.format("%.2f", amount) + " deposited successfully!");
-        return true;
+        Transaction transaction = new Transaction(TransactionType.DEPOSIT, amountMinor,
+            Transaction.Description.ATM_DEPOSIT);
+        TransactionResult result = TransactionResult.SUCCESS;
+        TransactionJournal journal = this.journal;
+        if (journal == null) {
+            balanceMinor.addAndGet(amountMinor);
+            countInTotals(TransactionType.DEPOSIT, amountMinor, System.currentTimeMillis());
+        } else {
+            long sequence;
+            journal.beginMutation();
+            try {
+                // Credit only after the record is appended, so a refused record leaves nothing to undo
+                sequence = journal.appendDeposit(accountNumber, amountMinor, transaction.getId());
+                balanceMinor.addAndGet(amountMinor);
+                countInTotals(TransactionType.DEPOSIT, amountMinor, System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                limits.release(DailyLimits.Kind.DEPOSIT, accountNumber, amountMinor, limitBucket);
+                return audit(AsyncLogger.Event.DEPOSIT, TransactionResult.JOURNAL_UNAVAILABLE, amountMinor);
+            } finally {
+                journal.endMutation();
+            }
+            result = awaitDurable(journal, sequence);
+        }
+        transactionHistory.add(transaction);
+        return audit(AsyncLogger.Event.DEPOSIT, result, amountMinor);
     }
 
     /**
      * Withdraws money from the account
      * @param amount Amount to withdraw
-     * @return true if successful
+     * @return SUCCESS, or INVALID_AMOUNT / INVALID_DENOMINATION / DAILY_LIMIT_EXCEEDED / SUSPECTED_FRAUD /
+     *         INSUFFICIENT_FUNDS / JOURNAL_UNAVAILABLE / NOT_DURABLE
      */
-    public boolean withdraw(double amount) {
-        if (amount <= 0) {
-            System.out.println("❌ Invalid amount! Please enter a positive value.");
-            return false;
+    public TransactionResult withdraw(double amount) {
+        long amountMinor = toMinorUnits(amount);
+        if (amountMinor <= 0) {
+            return audit(AsyncLogger.Event.WITHDRAWAL, TransactionResult.INVALID_AMOUNT, amountMinor);
         }
 
-        if (amount > this.balance) {
-            System.out.println("❌ Insufficient funds! Available balance: ₹" + 
-                String.format("%.2f", this.balance));
-            return false;
+        // Check for minimum denomination
+        if (amountMinor % 10000 != 0) {
+            return audit(AsyncLogger.Event.WITHDRAWAL, TransactionResult.INVALID_DENOMINATION, amountMinor);
         }
 
-        if (amount > 25000) {
-            System.out.println("❌ Daily withdrawal limit exceeded! Maximum withdrawal: ₹25,000");
-            return false;
+        DailyLimits limits = dailyLimits;
+        long limitBucket = limits.tryConsume(DailyLimits.Kind.WITHDRAWAL, accountNumber, amountMinor,
+            DAILY_WITHDRAWAL_LIMIT_MINOR);
+        if (limitBucket == DailyLimits.REFUSED) {
+            return audit(AsyncLogger.Event.WITHDRAWAL, TransactionResult.DAILY_LIMIT_EXCEEDED, amountMinor);
+        }
+        FraudScreen screen = fraudScreen;
+        long fraudHold = screen.authorize(accountNumber, amountMinor);
+        if (fraudHold == FraudScreen.DECLINED) {
+            limits.release(DailyLimits.Kind.WITHDRAWAL, accountNumber, amountMinor, limitBucket);
+            return audit(AsyncLogger.Event.WITHDRAWAL, TransactionResult.SUSPECTED_FRAUD, amountMinor);
         }
 
-        // Check for minimum denomination
-        if (amount % 100 != 0) {
-            System.out.println("❌ Please enter amount in multiples of ₹100");
-            return false;
+        Transaction transaction = new Transaction(TransactionType.WITHDRAWAL, amountMinor,
+            Transaction.Description.ATM_WITHDRAWAL);
+        long remaining;
+        TransactionResult result = TransactionResult.SUCCESS;
+        TransactionJournal journal = this.journal;
+        if (journal == null) {
+            remaining = debitFunds(amountMinor);
+            if (remaining >= 0) countInTotals(TransactionType.WITHDRAWAL, amountMinor, System.currentTimeMillis());
+        } else {
+            long sequence = 0;
+            journal.beginMutation();
+            try {
+                remaining = debitFunds(amountMinor);
+                if (remaining >= 0) {
+                    try {
+                        sequence = journal.appendWithdrawal(accountNumber, amountMinor, transaction.getId());
+                    } catch (RuntimeException e) {
+                        // Nothing was journaled, so give the money back before anyone can spend it
+                        creditFunds(amountMinor);
+                        limits.release(DailyLimits.Kind.WITHDRAWAL, accountNumber, amountMinor, limitBucket);
+                        screen.release(accountNumber, fraudHold);
+                        return audit(AsyncLogger.Event.WITHDRAWAL, TransactionResult.JOURNAL_UNAVAILABLE,
+                            amountMinor);
+                    }
+                    countInTotals(TransactionType.WITHDRAWAL, amountMinor, System.currentTimeMillis());
+                }
+            } finally {
+                journal.endMutation();
+            }
+            if (sequence > 0) result = awaitDurable(journal, sequence);
+        }
+        if (remaining < 0) {
+            // Refused withdrawals don't use up the day's allowance or count towards the fraud rules
+            limits.release(DailyLimits.Kind.WITHDRAWAL, accountNumber, amountMinor, limitBucket);
+            screen.release(accountNumber, fraudHold);
+            return audit(AsyncLogger.Event.WITHDRAWAL, TransactionResult.INSUFFICIENT_FUNDS, amountMinor);
         }
+        // An unconfirmed withdrawal still left the balance, so it counts like any other
+        screen.confirm(accountNumber, amountMinor, fraudHold);
 
-        this.balance -= amount;
-        transactionHistory.add(new Transaction("WITHDRAWAL", amount, "Cash withdrawal via ATM"));
-        System.out.println("✅ ₹" + String.format("%.2f", amount) + " withdrawn successfully!");
-        System.out.println("💰 Remaining balance: ₹" + String.format("%.2f", this.balance));
-        return true;
+        transactionHistory.add(transaction);
+        return audit(AsyncLogger.Event.WITHDRAWAL, result, amountMinor);
     }
 
     /**
-     * Changes the PIN
-     * @param oldPin Current PIN
-     * @param newPin New PIN to set
-     * @return true if successful
+     * Waits for an appended record to reach disk; by then its change is already visible, so a failed
+     * sync is reported as NOT_DURABLE rather than undone
      */
-    public boolean changePin(String oldPin, String newPin) {
-        if (!validatePin(oldPin)) {
-            System.out.println("❌ Invalid current PIN!");
-            return false;
+    private static TransactionResult awaitDurable(TransactionJournal journal, long sequence) {
+        try {
+            journal.awaitDurable(sequence);
+            return TransactionResult.SUCCESS;
+        } catch (RuntimeException e) {
+            return TransactionResult.NOT_DURABLE;
         }
+    }
 
-        if (newPin.length() != 4 || !newPin.matches("\\d{4}")) {
-            System.out.println("❌ PIN must be exactly 4 digits!");
-            return false;
-        }
+    private TransactionResult audit(AsyncLogger.Event event, TransactionResult result, long amountMinor) {
+        AUDIT.log(event, result, accountNumber, amountMinor);
+        return result;
+    }
+
+    /**
+     * What is left of today's ATM withdrawal allowance, in paise
+     */
+    public long getWithdrawalAllowanceLeftMinor() {
+        return Math.max(0, DAILY_WITHDRAWAL_LIMIT_MINOR - dailyLimits.used(DailyLimits.Kind.WITHDRAWAL, accountNumber));
+    }
+
+    /**
+     * What is left of today's ATM deposit allowance, in paise
+     */
+    public long getDepositAllowanceLeftMinor() {
+        return Math.max(0, DAILY_DEPOSIT_LIMIT_MINOR - dailyLimits.used(DailyLimits.Kind.DEPOSIT, accountNumber));
+    }
+
+    // Replayed ATM cash movements and PIN changes still count against today's limits and the fraud
+    // screen's windows and average after a restart
+    private void countTowardsLimits(Transaction transaction) {
+        countTowardsLimits(transaction.getDescriptionCode(), transaction.getAmountMinor(),
+            transaction.getTimestampNanos() / 1_000_000L, false);
+    }
 
-        if (newPin.equals(oldPin)) {
-            System.out.println("❌ New PIN cannot be the same as current PIN!");
-            return false;
+    /**
+     * Counts a movement from before the snapshot into the windows only; its balance and the fraud
+     * screen's average already include it
+     */
+    void refillWindows(Transaction.Description description, long amountMinor, long timestampMillis) {
+        countTowardsLimits(description, amountMinor, timestampMillis, true);
+    }
+
+    private void countTowardsLimits(Transaction.Description description, long amountMinor, long timestampMillis,
+                                    boolean inSnapshot) {
+        if (description == Transaction.Description.PIN_CHANGED) {
+            fraudScreen.recordPinChange(accountNumber, timestampMillis);
+            return;
         }
+        DailyLimits.Kind kind = description == Transaction.Description.ATM_WITHDRAWAL ? DailyLimits.Kind.WITHDRAWAL
+            : description == Transaction.Description.ATM_DEPOSIT ? DailyLimits.Kind.DEPOSIT : null;
+        if (kind != null) {
+            dailyLimits.recordHistorical(kind, accountNumber, amountMinor, timestampMillis);
+        }
+        if (kind == DailyLimits.Kind.WITHDRAWAL) {
+            fraudScreen.recordHistoricalWithdrawal(accountNumber, amountMinor, timestampMillis, inSnapshot);
+        }
+    }
 
-        this.pin = newPin;
-        transactionHistory.add(new Transaction("PIN_CHANGE", 0, "PIN changed successfully"));
-        System.out.println("✅ PIN changed successfully!");
-        return true;
+    /**
+     * Replaces the daily limit tracker (e.g. with DailyLimits.disabled() for benchmarks)
+     */
+    public static void setDailyLimits(DailyLimits limits) {
+        dailyLimits = limits;
+    }
+
+    /**
+     * Replaces the withdrawal fraud screen (e.g. with custom rules, or FraudScreen.disabled())
+     */
+    public static void setFraudScreen(FraudScreen screen) {
+        fraudScreen = screen;
+    }
+
+    public static FraudScreen getFraudScreen() { return fraudScreen; }
+
+    // Back-office movements (package-private, used by transfers and batch settlement)
+
+    /**
+     * Checks funds and debits in one CAS loop so two terminals can't overdraw the account.
+     * Limits and note multiples are the caller's business (cash withdrawals check them first).
+     * @return remaining balance in paise, or -1 if funds are insufficient
+     */
+    long debitFunds(long amountMinor) {
+        long current;
+        long remaining;
+        do {
+            current = balanceMinor.get();
+            if (amountMinor > current) {
+                return -1;
+            }
+            remaining = current - amountMinor;
+        } while (!balanceMinor.compareAndSet(current, remaining));
+        return remaining;
+    }
+
+    // Returns the new balance in paise
+    long creditFunds(long amountMinor) {
+        return balanceMinor.addAndGet(amountMinor);
+    }
+
+    /**
+     * Reports an applied balance change to the Bank-wide totals; callers hold the journal's mutation gate
+     */
+    void countInTotals(TransactionType type, long amountMinor, long epochMillis) {
+        BankTotals totals = this.totals;
+        if (totals != null) totals.recorded(type, amountMinor, epochMillis);
+    }
+
+    void recordTransaction(Transaction transaction) {
+        transactionHistory.add(transaction);
+    }
+
+    /**
+     * Installs a new PIN whose old PIN Bank.changePin has already checked; the new credential is
+     * derived before this is called, so no hashing happens under the account's lock
+     * @return SUCCESS, or JOURNAL_UNAVAILABLE / NOT_DURABLE
+     */
+    synchronized TransactionResult changePin(PinCredential credential) {
+        Transaction transaction = new Transaction(TransactionType.PIN_CHANGE, 0, Transaction.Description.PIN_CHANGED);
+        TransactionResult result = TransactionResult.SUCCESS;
+        TransactionJournal journal = this.journal;
+        if (journal == null) {
+            this.pin = credential;
+            countInTotals(TransactionType.PIN_CHANGE, 0, System.currentTimeMillis());
+        } else {
+            long sequence;
+            journal.beginMutation();
+            try {
+                // The old PIN keeps working unless the new one is on record
+                sequence = journal.appendPinChange(accountNumber, credential.encode(), transaction.getId());
+                this.pin = credential;
+                countInTotals(TransactionType.PIN_CHANGE, 0, System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                return audit(AsyncLogger.Event.PIN_CHANGE, TransactionResult.JOURNAL_UNAVAILABLE, 0);
+            } finally {
+                journal.endMutation();
+            }
+            result = awaitDurable(journal, sequence);
+        }
+        transactionHistory.add(transaction);
+        fraudScreen.recordPinChange(accountNumber, System.currentTimeMillis());
+        return audit(AsyncLogger.Event.PIN_CHANGE, result, 0);
     }
 
     /**
      * Gets mini statement (last 5 transactions)
      */
     public void printMiniStatement() {
-        System.out.println("\n" + "=".repeat(50));
-        System.out.println("           MINI STATEMENT");
-        System.out.println("=".repeat(50));
-        System.out.println("Account: " + maskAccountNumber());
-        System.out.println("Holder: " + accountHolderName);
-        System.out.println("Current Balance: ₹" + String.format("%.2f", balance));
-        System.out.println("\nRecent Transactions:");
-        System.out.println("-".repeat(50));
-
-        int transactionsToShow = Math.min(5, transactionHistory.size());
-        if (transactionsToShow == 0) {
-            System.out.println("No transactions found.");
+        printMiniStatement(System.out);
+    }
+
+    /**
+     * Prints the mini statement to the given terminal output
+     */
+    public void printMiniStatement(PrintStream out) {
+        out.println("\n" + "=".repeat(50));
+        out.println("           MINI STATEMENT");
+        out.println("=".repeat(50));
+        out.println("Account: " + maskAccountNumber());
+        out.println("Holder: " + accountHolderName);
+        out.println("Current Balance: ₹" + String.format("%.2f", getBalance()));
+        out.println("\nRecent Transactions:");
+        out.println("-".repeat(50));
+
+        List<Transaction> recent = transactionHistory.recent(5);
+        if (recent.isEmpty()) {
+            out.println("No transactions found.");
         } else {
-            for (int i = transactionHistory.size() - transactionsToShow; i < transactionHistory.size(); i++) {
-                System.out.println(transactionHistory.get(i).toString());
+            for (Transaction transaction : recent) {
+                out.println(transaction.toString());
             }
         }
-        System.out.println("=".repeat(50));
+        out.println("=".repeat(50));
     }
 
     /**
@@ -161,19 +403,151 @@ public class Account {
         return "****" + accountNumber.substring(accountNumber.length() - 4);
     }
 
+    // Journal integration (package-private, used by Bank)
+
+    void attachJournal(TransactionJournal journal) {
+        this.journal = journal;
+    }
+
+    // Counts the current balance into the totals once; later changes are reported as they happen
+    void attachTotals(BankTotals totals) {
+        if (this.totals == null) {
+            this.totals = totals;
+            totals.accountOpened(balanceMinor.get());
+        }
+    }
+
+    PinCredential getPinCredential() { return pin; }
+
+    void setCustomer(Customer customer) { this.customer = customer; }
+
+    void setLocked(boolean locked) { this.locked = locked; }
+    LoginThrottle.Mark getLoginMark() { return loginMark; }
+    void setLoginMark(LoginThrottle.Mark loginMark) { this.loginMark = loginMark; }
+
+    /**
+     * Counts a wrong PIN; a failure more than a window after the previous one starts the count again
+     * @return wrong PINs since the last success or unlock
+     */
+    synchronized int recordLoginFailure(long now, long windowMillis) {
+        if (now - lastLoginFailure >= windowMillis) {
+            loginFailures = 0;
+        }
+        lastLoginFailure = now;
+        return ++loginFailures;
+    }
+
+    synchronized void clearLoginFailures() {
+        loginFailures = 0;
+    }
+
+    // Id of the opening deposit, or 0 if the account was opened without a balance
+    long getOpeningTransactionId() {
+        List<Transaction> history = transactionHistory.recent(transactionHistory.getCapacity());
+        return !history.isEmpty() && history.get(0).getDescriptionCode() == Transaction.Description.ACCOUNT_OPENING
+            ? history.get(0).getId() : 0;
+    }
+
+    void replayDeposit(long amountMinor, long transactionId, long timestamp) {
+        balanceMinor.addAndGet(amountMinor);
+        countInTotals(TransactionType.DEPOSIT, amountMinor, timestamp);
+        Transaction transaction = new Transaction(transactionId, TransactionType.DEPOSIT, amountMinor,
+            Transaction.Description.ATM_DEPOSIT, Transaction.millisToEpochNanos(timestamp));
+        transactionHistory.add(transaction);
+        countTowardsLimits(transaction);
+    }
+
+    void replayWithdrawal(long amountMinor, long transactionId, long timestamp) {
+        balanceMinor.addAndGet(-amountMinor);
+        countInTotals(TransactionType.WITHDRAWAL, amountMinor, timestamp);
+        Transaction transaction = new Transaction(transactionId, TransactionType.WITHDRAWAL, amountMinor,
+            Transaction.Description.ATM_WITHDRAWAL, Transaction.millisToEpochNanos(timestamp));
+        transactionHistory.add(transaction);
+        countTowardsLimits(transaction);
+    }
+
+    synchronized void replayPinChange(PinCredential newPin, long transactionId, long timestamp) {
+        this.pin = newPin;
+        countInTotals(TransactionType.PIN_CHANGE, 0, timestamp);
+        Transaction transaction = new Transaction(transactionId, TransactionType.PIN_CHANGE, 0,
+            Transaction.Description.PIN_CHANGED, Transaction.millisToEpochNanos(timestamp));
+        transactionHistory.add(transaction);
+        countTowardsLimits(transaction);
+    }
+
+    void replayTransferOut(long amountMinor, long transactionId, long timestamp) {
+        balanceMinor.addAndGet(-amountMinor);
+        countInTotals(TransactionType.TRANSFER_OUT, amountMinor, timestamp);
+        transactionHistory.add(new Transaction(transactionId, TransactionType.TRANSFER_OUT, amountMinor,
+            Transaction.Description.TRANSFER_SENT, Transaction.millisToEpochNanos(timestamp)));
+    }
+
+    void replayTransferIn(long amountMinor, long transactionId, long timestamp) {
+        balanceMinor.addAndGet(amountMinor);
+        countInTotals(TransactionType.TRANSFER_IN, amountMinor, timestamp);
+        transactionHistory.add(new Transaction(transactionId, TransactionType.TRANSFER_IN, amountMinor,
+            Transaction.Description.TRANSFER_RECEIVED, Transaction.millisToEpochNanos(timestamp)));
+    }
+
+    void replaySettlementCredit(long amountMinor, long transactionId, long timestamp) {
+        balanceMinor.addAndGet(amountMinor);
+        countInTotals(TransactionType.DEPOSIT, amountMinor, timestamp);
+        transactionHistory.add(new Transaction(transactionId, TransactionType.DEPOSIT, amountMinor,
+            Transaction.Description.SETTLEMENT_CREDIT, Transaction.millisToEpochNanos(timestamp)));
+    }
+
+    void replaySettlementDebit(long amountMinor, long transactionId, long timestamp) {
+        balanceMinor.addAndGet(-amountMinor);
+        countInTotals(TransactionType.WITHDRAWAL, amountMinor, timestamp);
+        transactionHistory.add(new Transaction(transactionId, TransactionType.WITHDRAWAL, amountMinor,
+            Transaction.Description.SETTLEMENT_DEBIT, Transaction.millisToEpochNanos(timestamp)));
+    }
+
+    /**
+     * Converts a rupee amount to paise, rounding to the nearest paisa
+     */
+    static long toMinorUnits(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    /**
+     * Converts paise back to a rupee amount for display
+     */
+    static double fromMinorUnits(long amountMinor) {
+        return amountMinor / 100.0;
+    }
+
+    /**
+     * Reads an account number as a long, or Digits.INVALID unless it is exactly ten digits
+     */
+    static long parseAccountNumber(CharSequence accountNumber) {
+        return Digits.parse(accountNumber, ACCOUNT_NUMBER_DIGITS);
+    }
+
+    static String formatAccountNumber(long accountNumber) {
+        return Digits.format(accountNumber, ACCOUNT_NUMBER_DIGITS);
+    }
+
     // Getters and Setters (Encapsulation)
     public String getAccountNumber() { return accountNumber; }
     public String getAccountHolderName() { return accountHolderName; }
-    public double getBalance() { return balance; }
+    public AccountType getAccountType() { return accountType; }
+    public Customer getCustomer() { return customer; }
+    public double getBalance() { return fromMinorUnits(balanceMinor.get()); }
+    public long getBalanceMinor() { return balanceMinor.get(); }
     public Date getAccountCreationDate() { return accountCreationDate; }
-    public List<Transaction> getTransactionHistory() { return transactionHistory; }
+    // Recent transactions held in memory; older history lives in the transaction journal
+    public List<Transaction> getTransactionHistory() { return transactionHistory.recent(transactionHistory.getCapacity()); }
+    List<Transaction> getRecentTransactions(int n) { return transactionHistory.recent(n); }
+    public long getTransactionCount() { return transactionHistory.getTotalCount(); }
+    public boolean isLocked() { return locked; }
 
     @Override
     public String toString() {
         return "Account{" +
                 "accountNumber='" + maskAccountNumber() + '\'' +
                 ", accountHolderName='" + accountHolderName + '\'' +
-                ", balance=" + String.format("%.2f", balance) +
+                ", balance=" + String.format("%.2f", getBalance()) +
                 '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,406 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact fixed-width snapshot of all customers and accounts, read through memory mapping
+ * Demonstrates: Binary file formats, Memory-mapped I/O, Checkpointing
+ *
+ * Layout (big-endian):
+ *   header    magic, version, journal sequence, journal offset, window offset, created-at, last transaction id issued,
+ *             customer count, account count, totals day, deposits/withdrawals that day (paise), TOTALS_TYPE_SLOTS transaction counts by type
+ *   customers CUSTOMER_RECORD_SIZE bytes each: id, first name, last name, phone, email
+ *   accounts  ACCOUNT_RECORD_SIZE bytes each: account number, balance (paise), opened-at,
+ *             owning customer index, flags (bit 0: locked, bits 8-15: account type code), PIN hash (iterations, salt, hash), holder name,
+ *             fraud screen average withdrawal (paise) and withdrawal count, recent-history count and HISTORY_SLOTS (id, type, description, amount, epoch nanos) entries
+ *
+ * Text fields are zero-padded UTF-8; Bank.addCustomer refuses values too long for them. The
+ * journal sequence/offset say where replay resumes; the window offset is where the records of
+ * the day before the checkpoint begin, which a restore reads again to refill daily limits and
+ * fraud windows. The state is captured while the shard's mutations are paused and written out
+ * after they resume, so terminals wait for a memory copy rather than for the disk.
+ * A sharded bank writes one snapshot per shard; the snapshots of one checkpoint share a created-at.
+ */
+public class AccountSnapshot {
+
+    private static final int MAGIC = 0x41544D53; // "ATMS"
+    private static final int VERSION = 9;
+    // Running-total counters that can't be rebuilt from balances; one slot per TransactionType ordinal
+    private static final int TOTALS_TYPE_SLOTS = 8;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 8 + 8 + 4 + 4 + 8 + 8 + 8 + TOTALS_TYPE_SLOTS * 8;
+
+    private static final int CUSTOMER_ID_WIDTH = 16;
+    private static final int NAME_WIDTH = 32;
+    static final int PHONE_WIDTH = 16;
+    static final int EMAIL_WIDTH = 96;
+    private static final int CUSTOMER_RECORD_SIZE =
+        CUSTOMER_ID_WIDTH + NAME_WIDTH + NAME_WIDTH + PHONE_WIDTH + EMAIL_WIDTH;
+
+    private static final int HOLDER_WIDTH = 48;
+    private static final int FLAG_LOCKED = 1;
+    private static final int ACCOUNT_TYPE_SHIFT = 8;
+    // Recent transactions carried in the snapshot so mini statements survive a restart
+    private static final int HISTORY_SLOTS = 5;
+    private static final int HISTORY_SLOT_SIZE = 8 + 1 + 1 + 8 + 8;
+    private static final int ACCOUNT_RECORD_SIZE =
+        8 + 8 + 8 + 4 + 4 + PinCredential.ENCODED_SIZE + HOLDER_WIDTH + 8 + 4 + 1 + HISTORY_SLOTS * HISTORY_SLOT_SIZE;
+
+    // Map the account table in windows so files larger than 2 GB still load
+    private static final int RECORDS_PER_WINDOW = 1 << 20;
+
+    /**
+     * Journal position a snapshot corresponds to
+     */
+    public static class Checkpoint {
+        private final long sequence;
+        private final long journalOffset;
+        private final long windowOffset;
+        private final long createdAt;
+        private final long lastTransactionId;
+
+        Checkpoint(long sequence, long journalOffset, long windowOffset, long createdAt, long lastTransactionId) {
+            this.sequence = sequence;
+            this.journalOffset = journalOffset;
+            this.windowOffset = windowOffset;
+            this.createdAt = createdAt;
+            this.lastTransactionId = lastTransactionId;
+        }
+
+        public long getSequence() { return sequence; }
+        public long getJournalOffset() { return journalOffset; }
+        // Records from here to the journal offset are the day before the checkpoint (and maybe more)
+        public long getWindowOffset() { return windowOffset; }
+        public long getCreatedAt() { return createdAt; }
+        // No transaction journaled before the checkpoint has a larger id
+        public long getLastTransactionId() { return lastTransactionId; }
+    }
+
+    private AccountSnapshot() {
+    }
+
+    /**
+     * One shard's state at a checkpoint, copied while its mutations are paused so the file can be
+     * written after they resume. Only what can change is copied; account numbers, opening dates
+     * and names are fixed once an account is open.
+     */
+    static final class Image {
+        private final Checkpoint checkpoint;
+        private final long totalsDay;
+        private final long depositsToday;
+        private final long withdrawalsToday;
+        private final long[] countsByType = new long[TOTALS_TYPE_SLOTS];
+        // Customer id, first name, last name, phone, email
+        private final String[][] customerFields;
+        private final Account[][] accountsByCustomer;
+        private final int accountCount;
+        // Per account, in file order
+        private final long[] balances;
+        private final int[] flags;
+        private final PinCredential[] pins;
+        private final long[] averageWithdrawals;
+        private final int[] withdrawals;
+        private final List<List<Transaction>> histories;
+
+        private Image(Checkpoint checkpoint, Collection<Customer> customers, BankTotals totals) {
+            this.checkpoint = checkpoint;
+            // Read the day last: reading the day totals may roll them over to a new day first
+            depositsToday = totals.getDepositsTodayMinor();
+            withdrawalsToday = totals.getWithdrawalsTodayMinor();
+            totalsDay = totals.getDay();
+            TransactionType[] types = TransactionType.values();
+            for (int i = 0; i < TOTALS_TYPE_SLOTS && i < types.length; i++) {
+                countsByType[i] = totals.getTransactionCount(types[i]);
+            }
+
+            customerFields = new String[customers.size()][];
+            accountsByCustomer = new Account[customers.size()][];
+            int count = 0;
+            int customerIndex = 0;
+            for (Customer customer : customers) {
+                customerFields[customerIndex] = new String[] {customer.getCustomerId(), customer.getFirstName(),
+                    customer.getLastName(), customer.getPhoneNumber(), customer.getEmail()};
+                accountsByCustomer[customerIndex] = customer.getAccounts().toArray(new Account[0]);
+                count += accountsByCustomer[customerIndex].length;
+                customerIndex++;
+            }
+            accountCount = count;
+
+            balances = new long[count];
+            flags = new int[count];
+            pins = new PinCredential[count];
+            averageWithdrawals = new long[count];
+            withdrawals = new int[count];
+            histories = new ArrayList<>(count);
+            int i = 0;
+            FraudScreen screen = Account.getFraudScreen();
+            for (Account[] accounts : accountsByCustomer) {
+                for (Account account : accounts) {
+                    balances[i] = account.getBalanceMinor();
+                    flags[i] = (account.isLocked() ? FLAG_LOCKED : 0)
+                        | account.getAccountType().getCode() << ACCOUNT_TYPE_SHIFT;
+                    pins[i] = account.getPinCredential();
+                    FraudScreen.Profile profile = screen.findProfile(account.getAccountNumber());
+                    if (profile != null) {
+                        synchronized (profile) {
+                            averageWithdrawals[i] = profile.getAverageMinor();
+                            withdrawals[i] = profile.getWithdrawals();
+                        }
+                    }
+                    histories.add(account.getRecentTransactions(HISTORY_SLOTS));
+                    i++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies a shard's state; the caller holds the shard's checkpoint gate so the copy matches the
+     * journal position
+     */
+    static Image capture(long sequence, long journalOffset, long windowOffset, long createdAt, long lastTransactionId,
+                         Collection<Customer> customers, BankTotals totals) {
+        return new Image(new Checkpoint(sequence, journalOffset, windowOffset, createdAt, lastTransactionId),
+            customers, totals);
+    }
+
+    /**
+     * Writes a captured image to a temporary file and atomically moves it into place
+     */
+    static void write(Path path, Image image) throws IOException {
+        Checkpoint checkpoint = image.checkpoint;
+        int customerCount = image.customerFields.length;
+        int accountCount = image.accountCount;
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        long customerTableSize = (long) customerCount * CUSTOMER_RECORD_SIZE;
+        long fileSize = HEADER_SIZE + customerTableSize + (long) accountCount * ACCOUNT_RECORD_SIZE;
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer head = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + customerTableSize);
+            head.putInt(MAGIC);
+            head.putInt(VERSION);
+            head.putLong(checkpoint.sequence);
+            head.putLong(checkpoint.journalOffset);
+            head.putLong(checkpoint.windowOffset);
+            head.putLong(checkpoint.createdAt);
+            head.putLong(checkpoint.lastTransactionId);
+            head.putInt(customerCount);
+            head.putInt(accountCount);
+            head.putLong(image.totalsDay);
+            head.putLong(image.depositsToday);
+            head.putLong(image.withdrawalsToday);
+            for (long count : image.countsByType) {
+                head.putLong(count);
+            }
+
+            for (String[] fields : image.customerFields) {
+                putText(head, fields[0], CUSTOMER_ID_WIDTH);
+                putText(head, fields[1], NAME_WIDTH);
+                putText(head, fields[2], NAME_WIDTH);
+                putText(head, fields[3], PHONE_WIDTH);
+                putText(head, fields[4], EMAIL_WIDTH);
+            }
+            head.force();
+
+            long position = HEADER_SIZE + customerTableSize;
+            MappedByteBuffer window = null;
+            int inWindow = RECORDS_PER_WINDOW;
+            int written = 0;
+            for (int customerIndex = 0; customerIndex < customerCount; customerIndex++) {
+                for (Account account : image.accountsByCustomer[customerIndex]) {
+                    if (inWindow == RECORDS_PER_WINDOW) {
+                        if (window != null) window.force();
+                        long records = Math.min(RECORDS_PER_WINDOW, accountCount - written);
+                        window = channel.map(FileChannel.MapMode.READ_WRITE, position, records * ACCOUNT_RECORD_SIZE);
+                        position += records * ACCOUNT_RECORD_SIZE;
+                        inWindow = 0;
+                    }
+                    window.putLong(Account.parseAccountNumber(account.getAccountNumber()));
+                    window.putLong(image.balances[written]);
+                    window.putLong(account.getAccountCreationDate().getTime());
+                    window.putInt(customerIndex);
+                    window.putInt(image.flags[written]);
+                    image.pins[written].writeTo(window);
+                    putText(window, account.getAccountHolderName(), HOLDER_WIDTH);
+                    window.putLong(image.averageWithdrawals[written]);
+                    window.putInt(image.withdrawals[written]);
+                    putHistory(window, image.histories.get(written));
+                    inWindow++;
+                    written++;
+                }
+            }
+            if (window != null) window.force();
+
+            if (channel.size() != fileSize) {
+                throw new IOException("Snapshot size mismatch: " + channel.size() + " != " + fileSize);
+            }
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Checks that a new customer's text fields and its accounts' holder names fit their snapshot fields
+     * @throws IllegalArgumentException naming the first field that is too long
+     */
+    static void checkFits(Customer customer) {
+        checkFits("Customer id", customer.getCustomerId(), CUSTOMER_ID_WIDTH);
+        checkFits("First name", customer.getFirstName(), NAME_WIDTH);
+        checkFits("Last name", customer.getLastName(), NAME_WIDTH);
+        checkFits("Phone number", customer.getPhoneNumber(), PHONE_WIDTH);
+        checkFits("Email", customer.getEmail(), EMAIL_WIDTH);
+        for (Account account : customer.getAccounts()) {
+            checkFits("Account holder name", account.getAccountHolderName(), HOLDER_WIDTH);
+        }
+    }
+
+    static void checkFits(String field, String value, int width) {
+        if (value.getBytes(StandardCharsets.UTF_8).length > width) {
+            throw new IllegalArgumentException(field + " is longer than " + width + " bytes: " + value);
+        }
+    }
+
+    /**
+     * Loads a snapshot into the given maps and totals and returns the journal position it covers
+     */
+    public static Checkpoint load(Path path, Map<String, Customer> customers, LongHashIndex<Account> accounts,
+                                  BankTotals totals) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not an account snapshot: " + path);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + " in " + path);
+            }
+            long sequence = header.getLong();
+            long journalOffset = header.getLong();
+            long windowOffset = header.getLong();
+            long createdAt = header.getLong();
+            long lastTransactionId = header.getLong();
+            int customerCount = header.getInt();
+            int accountCount = header.getInt();
+            long totalsDay = header.getLong();
+            long depositsToday = header.getLong();
+            long withdrawalsToday = header.getLong();
+            long[] countsByType = new long[TOTALS_TYPE_SLOTS];
+            for (int i = 0; i < TOTALS_TYPE_SLOTS; i++) {
+                countsByType[i] = header.getLong();
+            }
+            totals.restore(totalsDay, depositsToday, withdrawalsToday, countsByType);
+
+            long customerTableSize = (long) customerCount * CUSTOMER_RECORD_SIZE;
+            MappedByteBuffer customerTable = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, customerTableSize);
+            Customer[] byIndex = new Customer[customerCount];
+            for (int i = 0; i < customerCount; i++) {
+                Customer customer = new Customer(getText(customerTable, CUSTOMER_ID_WIDTH),
+                    getText(customerTable, NAME_WIDTH), getText(customerTable, NAME_WIDTH),
+                    getText(customerTable, PHONE_WIDTH), getText(customerTable, EMAIL_WIDTH));
+                byIndex[i] = customer;
+                customers.put(customer.getCustomerId(), customer);
+            }
+
+            long position = HEADER_SIZE + customerTableSize;
+            int remaining = accountCount;
+            while (remaining > 0) {
+                int records = Math.min(RECORDS_PER_WINDOW, remaining);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    (long) records * ACCOUNT_RECORD_SIZE);
+                for (int i = 0; i < records; i++) {
+                    long number = window.getLong();
+                    String accountNumber = Account.formatAccountNumber(number);
+                    long balanceMinor = window.getLong();
+                    long openedAt = window.getLong();
+                    int customerIndex = window.getInt();
+                    int flags = window.getInt();
+                    PinCredential pin = PinCredential.readFrom(window);
+                    String holderName = getText(window, HOLDER_WIDTH);
+                    long averageWithdrawalMinor = window.getLong();
+                    int withdrawals = window.getInt();
+                    List<Transaction> recent = getHistory(window);
+
+                    AccountType accountType = AccountType.fromCode((flags >>> ACCOUNT_TYPE_SHIFT) & 0xFF);
+                    Account account = Account.restore(accountNumber, holderName, accountType, balanceMinor, pin,
+                        openedAt, recent);
+                    account.setLocked((flags & FLAG_LOCKED) != 0);
+                    Account.getFraudScreen().restoreAverage(accountNumber, averageWithdrawalMinor, withdrawals);
+                    byIndex[customerIndex].addAccount(account);
+                    accounts.put(number, account);
+                }
+                position += (long) records * ACCOUNT_RECORD_SIZE;
+                remaining -= records;
+            }
+
+            return new Checkpoint(sequence, journalOffset, windowOffset, createdAt, lastTransactionId);
+        }
+    }
+
+    private static void putHistory(ByteBuffer buffer, List<Transaction> history) {
+        int count = Math.min(HISTORY_SLOTS, history.size());
+        buffer.put((byte) count);
+        for (int i = 0; i < HISTORY_SLOTS; i++) {
+            if (i < count) {
+                Transaction transaction = history.get(history.size() - count + i);
+                buffer.putLong(transaction.getId());
+                buffer.put((byte) transaction.getType().ordinal());
+                buffer.put(transaction.getDescriptionCode().getCode());
+                buffer.putLong(transaction.getAmountMinor());
+                buffer.putLong(transaction.getTimestampNanos());
+            } else {
+                buffer.put(new byte[HISTORY_SLOT_SIZE]);
+            }
+        }
+    }
+
+    private static List<Transaction> getHistory(ByteBuffer buffer) {
+        int count = buffer.get();
+        List<Transaction> history = new ArrayList<>(count);
+        for (int i = 0; i < HISTORY_SLOTS; i++) {
+            if (i < count) {
+                long transactionId = buffer.getLong();
+                TransactionType type = TransactionType.values()[buffer.get()];
+                Transaction.Description description = Transaction.Description.fromCode(buffer.get());
+                long amountMinor = buffer.getLong();
+                long timestampNanos = buffer.getLong();
+                history.add(new Transaction(transactionId, type, amountMinor, description, timestampNanos));
+            } else {
+                buffer.position(buffer.position() + HISTORY_SLOT_SIZE);
+            }
+        }
+        return history;
+    }
+
+    private static void putText(ByteBuffer buffer, String value, int width) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > width) {
+            throw new IllegalArgumentException("Value too long for " + width + "-byte snapshot field: " + value);
+        }
+        buffer.put(bytes);
+        for (int i = bytes.length; i < width; i++) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    private static String getText(ByteBuffer buffer, int width) {
+        int start = buffer.position();
+        int length = 0;
+        while (length < width && buffer.get(start + length) != 0) {
+            length++;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        buffer.position(start + width);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
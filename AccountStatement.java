@@ -0,0 +1,416 @@
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Renders account statements from a StatementCursor as text, CSV or paged fixed-width output
+ * Demonstrates: Streaming output, Reusable buffers, Fixed-width report layout
+ *
+ * Usage: java AccountStatement <account> [--from yyyy-MM-dd] [--to yyyy-MM-dd]
+ *                              [--format text|csv|fixed] [--page-rows N] [--out file]
+ *
+ * Each row is formatted straight into one char buffer that is handed to the Writer in large
+ * chunks, so a statement of any length needs the same few kilobytes. An instance can be
+ * reused for any number of statements (one at a time). Rendering can stop after a number of
+ * rows and continue later from the cursor's bookmark: CSV then carries on without a second
+ * header, and fixed-width pages keep their numbering and brought-forward balances.
+ */
+public class AccountStatement {
+
+    /**
+     * Output layouts
+     */
+    public enum Format {
+        // Screen/email statement with one header and footer
+        TEXT,
+        // One row per transaction with signed amounts, for spreadsheets and reconciliation
+        CSV,
+        // Printable 80-column pages with page headers, carried-forward balances and form feeds
+        FIXED_WIDTH
+    }
+
+    static final int DEFAULT_PAGE_ROWS = 40;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int PAGE_WIDTH = 80;
+    private static final DateTimeFormatter DATE_TIME =
+        DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss").withZone(ZoneId.systemDefault());
+    private static final DateTimeFormatter DATE =
+        DateTimeFormatter.ofPattern("dd-MM-yyyy").withZone(ZoneId.systemDefault());
+    private static final DateTimeFormatter CSV_TIME =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private final Format format;
+    private final int pageRows;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    // Scratch space for one formatted field
+    private final StringBuilder field = new StringBuilder(64);
+    private int used;
+    private Writer out;
+
+    public AccountStatement(Format format) {
+        this(format, DEFAULT_PAGE_ROWS);
+    }
+
+    public AccountStatement(Format format, int pageRows) {
+        if (pageRows <= 0) {
+            throw new IllegalArgumentException("Pages need at least one row: " + pageRows);
+        }
+        this.format = format;
+        this.pageRows = pageRows;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java AccountStatement <account> [--from yyyy-MM-dd] [--to yyyy-MM-dd]"
+                + " [--format text|csv|fixed] [--page-rows N] [--out file]");
+            return;
+        }
+
+        String accountNumber = args[0];
+        long fromMillis = Long.MIN_VALUE;
+        long toMillis = Long.MAX_VALUE;
+        Format format = Format.TEXT;
+        int pageRows = DEFAULT_PAGE_ROWS;
+        String outPath = null;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--from":
+                    fromMillis = startOfDayMillis(LocalDate.parse(value));
+                    break;
+                case "--to":
+                    // Inclusive date, so the range ends at the start of the following day
+                    toMillis = startOfDayMillis(LocalDate.parse(value).plusDays(1));
+                    break;
+                case "--format":
+                    format = value.equalsIgnoreCase("fixed") ? Format.FIXED_WIDTH
+                        : Format.valueOf(value.toUpperCase(Locale.ROOT));
+                    break;
+                case "--page-rows":
+                    pageRows = Integer.parseInt(value);
+                    break;
+                case "--out":
+                    outPath = value;
+                    break;
+                default:
+                    System.out.println("❌ Unknown option " + args[i]);
+                    return;
+            }
+        }
+
+        Bank bank = Bank.getInstance("State Bank of Java");
+        try (StatementCursor cursor = bank.openStatement(accountNumber, fromMillis, toMillis, null)) {
+            if (cursor == null) {
+                System.out.println("❌ Account not found: " + accountNumber);
+                return;
+            }
+            AccountStatement statement = new AccountStatement(format, pageRows);
+            if (outPath == null) {
+                Writer console = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+                statement.write(cursor, Long.MAX_VALUE, console);
+                console.flush();
+            } else {
+                try (Writer file = new OutputStreamWriter(Files.newOutputStream(Paths.get(outPath)),
+                        StandardCharsets.UTF_8)) {
+                    long rows = statement.write(cursor, Long.MAX_VALUE, file);
+                    System.out.println("✅ Statement written to " + outPath + " (" + rows + " transactions)");
+                }
+            }
+        }
+    }
+
+    private static long startOfDayMillis(LocalDate date) {
+        return date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Writes up to maxRows rows from the cursor, with the format's headers and footers
+     * @return the number of rows written; fewer than maxRows means the statement is complete
+     */
+    public long write(StatementCursor cursor, long maxRows, Writer out) throws IOException {
+        this.out = out;
+        this.used = 0;
+        boolean resumed = cursor.getRowNumber() > 0;
+        // Reading the first row also settles the opening balance the header shows
+        boolean more = maxRows > 0 && cursor.next();
+        long written = 0;
+        long credits = 0;
+        long debits = 0;
+
+        if (format == Format.CSV) {
+            if (!resumed) {
+                append("date,transaction_id,type,description,amount,balance\n");
+            }
+        } else if (format == Format.TEXT) {
+            textHeader(cursor, resumed);
+        }
+
+        while (more) {
+            long amount = cursor.getSignedAmountMinor();
+            if (amount > 0) credits += amount; else debits -= amount;
+            if (format == Format.FIXED_WIDTH) {
+                long index = cursor.getRowNumber() - 1;
+                if (written == 0 || index % pageRows == 0) {
+                    if (written > 0) pageFooter(cursor.getBalanceAfterMinor() - amount, true);
+                    pageHeader(cursor, index / pageRows + 1, cursor.getBalanceAfterMinor() - amount);
+                }
+            }
+            row(cursor, amount);
+            written++;
+            more = written < maxRows && cursor.next();
+        }
+
+        boolean complete = written < maxRows;
+        long closingBalance = written == 0 ? cursor.getOpeningBalanceMinor() : cursor.getBalanceAfterMinor();
+        if (format == Format.TEXT) {
+            textFooter(closingBalance, written, credits, debits, complete);
+        } else if (format == Format.FIXED_WIDTH) {
+            if (written == 0) {
+                pageHeader(cursor, cursor.getRowNumber() / pageRows + 1, closingBalance);
+                append("No transactions in this period.\n");
+            }
+            pageFooter(closingBalance, !complete);
+        }
+        flush();
+        this.out = null;
+        return written;
+    }
+
+    // Layouts
+
+    private void textHeader(StatementCursor cursor, boolean resumed) throws IOException {
+        Account account = cursor.getAccount();
+        repeat('=', PAGE_WIDTH + 20);
+        append("\nSTATEMENT OF ACCOUNT\n");
+        append("Account: ").append(maskAccountNumber(account.getAccountNumber())).append(" (")
+            .append(account.getAccountType().getDisplayName()).append(")   Holder: ")
+            .append(account.getAccountHolderName()).append('\n');
+        append("Period: ");
+        period(cursor);
+        append('\n');
+        append(resumed ? "Balance brought forward: " : "Opening balance: ");
+        money(cursor.getOpeningBalanceMinor(), true);
+        append('\n');
+        repeat('-', PAGE_WIDTH + 20);
+        append('\n');
+        column("Date", 21, false);
+        column("Transaction ID", 24, false);
+        column("Description", 37, false);
+        column("Amount", 14, true);
+        column("Balance", 14, true);
+        append('\n');
+    }
+
+    private void textFooter(long closingBalance, long rows, long credits, long debits, boolean complete)
+            throws IOException {
+        if (rows == 0) {
+            append("No transactions in this period.\n");
+        }
+        repeat('-', PAGE_WIDTH + 20);
+        append('\n');
+        append(complete ? "Closing balance: " : "Balance carried forward: ");
+        money(closingBalance, true);
+        append("\n").append(Long.toString(rows)).append(" transaction(s); credits ");
+        money(credits, true);
+        append(", debits ");
+        money(debits, true);
+        append('\n');
+        repeat('=', PAGE_WIDTH + 20);
+        append('\n');
+    }
+
+    private void pageHeader(StatementCursor cursor, long page, long broughtForward) throws IOException {
+        Account account = cursor.getAccount();
+        field.setLength(0);
+        field.append("Page ").append(page);
+        column("STATEMENT OF ACCOUNT", PAGE_WIDTH - field.length(), false);
+        append(field).append('\n');
+        field.setLength(0);
+        field.append(maskAccountNumber(account.getAccountNumber())).append(' ')
+            .append(account.getAccountType().getDisplayName()).append("  ").append(account.getAccountHolderName());
+        column(field, PAGE_WIDTH, false);
+        append('\n');
+        append("Period: ");
+        period(cursor);
+        append('\n');
+        repeat('-', PAGE_WIDTH);
+        append('\n');
+        column("Date", 11, false);
+        column("Reference", 23, false);
+        column("Description", 20, false);
+        column("Amount", 13, true);
+        column("Balance", 13, true);
+        append('\n');
+        repeat('-', PAGE_WIDTH);
+        append('\n');
+        column("Brought forward", 67, false);
+        field.setLength(0);
+        appendMoney(field, broughtForward, true);
+        column(field, 13, true);
+        append('\n');
+    }
+
+    private void pageFooter(long balance, boolean carriedForward) throws IOException {
+        repeat('-', PAGE_WIDTH);
+        append('\n');
+        column(carriedForward ? "Carried forward" : "Closing balance", 67, false);
+        field.setLength(0);
+        appendMoney(field, balance, true);
+        column(field, 13, true);
+        append('\n');
+        // Form feed: each page starts on a new sheet
+        append('\f');
+    }
+
+    private void row(StatementCursor cursor, long amount) throws IOException {
+        Instant at = Instant.ofEpochMilli(cursor.getTimestampMillis());
+        switch (format) {
+            case CSV:
+                field.setLength(0);
+                CSV_TIME.formatTo(at, field);
+                append(field).append(',').append("TXN").append(Long.toString(cursor.getTransactionId()))
+                    .append(',').append(cursor.getType().name()).append(',')
+                    .append(cursor.getDescription().getText()).append(',');
+                field.setLength(0);
+                appendMoney(field, amount, false);
+                append(field).append(',');
+                field.setLength(0);
+                appendMoney(field, cursor.getBalanceAfterMinor(), false);
+                append(field).append('\n');
+                break;
+            case TEXT:
+                field.setLength(0);
+                DATE_TIME.formatTo(at, field);
+                column(field, 21, false);
+                field.setLength(0);
+                field.append("TXN").append(cursor.getTransactionId());
+                column(field, 24, false);
+                column(cursor.getDescription().getText(), 37, false);
+                field.setLength(0);
+                appendMoney(field, amount, true);
+                column(field, 14, true);
+                field.setLength(0);
+                appendMoney(field, cursor.getBalanceAfterMinor(), true);
+                column(field, 14, true);
+                append('\n');
+                break;
+            default:
+                field.setLength(0);
+                DATE.formatTo(at, field);
+                column(field, 11, false);
+                field.setLength(0);
+                field.append("TXN").append(cursor.getTransactionId());
+                column(field, 23, false);
+                column(cursor.getDescription().getShortText(), 20, false);
+                field.setLength(0);
+                appendMoney(field, amount, true);
+                column(field, 13, true);
+                field.setLength(0);
+                appendMoney(field, cursor.getBalanceAfterMinor(), true);
+                column(field, 13, true);
+                append('\n');
+        }
+    }
+
+    private void period(StatementCursor cursor) throws IOException {
+        if (cursor.getFromMillis() == Long.MIN_VALUE) {
+            append("account opening");
+        } else {
+            field.setLength(0);
+            DATE.formatTo(Instant.ofEpochMilli(cursor.getFromMillis()), field);
+            append(field);
+        }
+        append(" to ");
+        if (cursor.getToMillis() == Long.MAX_VALUE) {
+            append("today");
+        } else {
+            field.setLength(0);
+            // The range end is exclusive; show the last day it includes
+            DATE.formatTo(Instant.ofEpochMilli(cursor.getToMillis() - 1), field);
+            append(field);
+        }
+    }
+
+    private static String maskAccountNumber(String accountNumber) {
+        if (accountNumber.length() <= 4) return accountNumber;
+        return "****" + accountNumber.substring(accountNumber.length() - 4);
+    }
+
+    /**
+     * Appends paise as rupees with two decimals; grouped adds ₹ and thousands separators
+     */
+    static void appendMoney(StringBuilder target, long amountMinor, boolean grouped) {
+        if (amountMinor < 0) {
+            target.append('-');
+        }
+        long magnitude = Math.abs(amountMinor);
+        if (grouped) {
+            target.append('₹');
+        }
+        long rupees = magnitude / 100;
+        if (grouped && rupees >= 1000) {
+            String digits = Long.toString(rupees);
+            int lead = digits.length() % 3 == 0 ? 3 : digits.length() % 3;
+            target.append(digits, 0, lead);
+            for (int i = lead; i < digits.length(); i += 3) {
+                target.append(',').append(digits, i, i + 3);
+            }
+        } else {
+            target.append(rupees);
+        }
+        long paise = magnitude % 100;
+        target.append('.').append((char) ('0' + paise / 10)).append((char) ('0' + paise % 10));
+    }
+
+    // Buffered output
+
+    private void money(long amountMinor, boolean grouped) throws IOException {
+        field.setLength(0);
+        appendMoney(field, amountMinor, grouped);
+        append(field);
+    }
+
+    // Text padded (or cut) to width characters, left- or right-aligned, plus one space
+    private void column(CharSequence text, int width, boolean alignRight) throws IOException {
+        int length = Math.min(text.length(), width - 1);
+        if (alignRight) repeat(' ', width - 1 - length);
+        append(text, length);
+        if (!alignRight) repeat(' ', width - 1 - length);
+        append(' ');
+    }
+
+    private AccountStatement append(CharSequence text) throws IOException {
+        return append(text, text.length());
+    }
+
+    private AccountStatement append(CharSequence text, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            if (used == buffer.length) flush();
+            buffer[used++] = text.charAt(i);
+        }
+        return this;
+    }
+
+    private AccountStatement append(char c) throws IOException {
+        if (used == buffer.length) flush();
+        buffer[used++] = c;
+        return this;
+    }
+
+    private void repeat(char c, int count) throws IOException {
+        for (int i = 0; i < count; i++) append(c);
+    }
+
+    private void flush() throws IOException {
+        out.write(buffer, 0, used);
+        used = 0;
+    }
+}
@@ -0,0 +1,27 @@
+/**
+ * Kinds of bank accounts, in the order a customer's accounts are listed
+ * Demonstrates: Enums, Stable persisted codes
+ */
+public enum AccountType {
+    SAVINGS(0, "Savings"),
+    CURRENT(1, "Current");
+
+    // Stored in journals and snapshots; must not change once written
+    private final byte code;
+    private final String displayName;
+
+    AccountType(int code, String displayName) {
+        this.code = (byte) code;
+        this.displayName = displayName;
+    }
+
+    static AccountType fromCode(int code) {
+        for (AccountType type : values()) {
+            if (type.code == code) return type;
+        }
+        throw new IllegalArgumentException("Unknown account type: " + code);
+    }
+
+    byte getCode() { return code; }
+    public String getDisplayName() { return displayName; }
+}
@@ -0,0 +1,240 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous audit logger backed by a preallocated ring buffer
+ * Demonstrates: Multi-producer ring buffers, Non-blocking logging, Pluggable sinks
+ *
+ * Business methods only claim a slot with one CAS and copy a few fields into it (an event
+ * kind, an outcome, account numbers they already hold, an amount), so logging never
+ * allocates, formats or waits for I/O on the caller's thread. A single background thread
+ * hands filled slots to the Sink, which formats and writes them. If the sink falls a whole
+ * buffer behind, new events are dropped and counted rather than slowing business calls.
+ *
+ * Settings: -Datm.log=none (default) | console | path/to/audit.log, -Datm.log.buffer (default 8192)
+ */
+public class AsyncLogger {
+
+    /**
+     * What was audited
+     */
+    public enum Event { DEPOSIT, WITHDRAWAL, PIN_CHANGE, TRANSFER, LOGIN, ACCOUNT_LOCK, ACCOUNT_UNLOCK }
+
+    /**
+     * Receives events on the logger thread; the entry is reused, so copy anything kept
+     */
+    public interface Sink {
+        void write(Entry entry) throws IOException;
+
+        // Called whenever the logger has caught up with producers
+        default void flush() throws IOException {
+        }
+    }
+
+    /**
+     * One ring slot; producers fill it and publish it by writing its sequence
+     */
+    public static final class Entry {
+        private volatile long published = -1;
+        private long timestampMillis;
+        private Event event;
+        private Enum<?> outcome;
+        private String account;
+        private String counterparty;
+        private long amountMinor;
+
+        public long getTimestampMillis() { return timestampMillis; }
+        public Event getEvent() { return event; }
+        // A TransactionResult, PinVerifier.Result or similar code
+        public Enum<?> getOutcome() { return outcome; }
+        public String getAccount() { return account; }
+        public String getCounterparty() { return counterparty; }
+        public long getAmountMinor() { return amountMinor; }
+    }
+
+    private static final AsyncLogger GLOBAL = fromSystemProperties();
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Entry[] ring;
+    private final int mask;
+    private final Sink sink;
+    // Next sequence producers will claim, and next sequence the logger thread will write
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+    private final Metrics.Counter logged = Metrics.global().counter("atm_log_events_total", "",
+        "Audit events written by the async logger");
+    private final Metrics.Counter dropped = Metrics.global().counter("atm_log_dropped_total", "",
+        "Audit events dropped because the log sink fell behind");
+
+    public AsyncLogger(Sink sink, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new Entry[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new Entry();
+        }
+        this.mask = size - 1;
+        this.sink = sink;
+
+        Thread writer = new Thread(this::drainLoop, "atm-async-logger");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(TimeUnit.SECONDS.toMillis(2)),
+            "atm-async-logger-shutdown"));
+    }
+
+    public static AsyncLogger global() {
+        return GLOBAL;
+    }
+
+    static AsyncLogger fromSystemProperties() {
+        String target = System.getProperty("atm.log", "none");
+        int capacity = Integer.getInteger("atm.log.buffer", 8192);
+        if (target.equalsIgnoreCase("none")) {
+            return new AsyncLogger(entry -> { }, capacity);
+        }
+        if (target.equalsIgnoreCase("console")) {
+            return new AsyncLogger(new TextSink(System.out), capacity);
+        }
+        try {
+            Path path = Paths.get(target);
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            return new AsyncLogger(new TextSink(Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)), capacity);
+        } catch (IOException e) {
+            System.out.println("⚠️ Audit log " + target + " unavailable, logging disabled: " + e.getMessage());
+            return new AsyncLogger(entry -> { }, capacity);
+        }
+    }
+
+    /**
+     * Queues an audit event without blocking
+     * @return false if the buffer was full and the event was dropped
+     */
+    public boolean log(Event event, Enum<?> outcome, String account, String counterparty, long amountMinor) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= ring.length) {
+                dropped.increment();
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        Entry entry = ring[(int) (sequence & mask)];
+        entry.timestampMillis = System.currentTimeMillis();
+        entry.event = event;
+        entry.outcome = outcome;
+        entry.account = account;
+        entry.counterparty = counterparty;
+        entry.amountMinor = amountMinor;
+        entry.published = sequence;
+        return true;
+    }
+
+    public boolean log(Event event, Enum<?> outcome, String account, long amountMinor) {
+        return log(event, outcome, account, null, amountMinor);
+    }
+
+    private void drainLoop() {
+        long idleParkNanos = 1_000;
+        while (true) {
+            long next = consumed;
+            Entry entry = ring[(int) (next & mask)];
+            if (entry.published != next) {
+                // Caught up: flush what was written, then back off while idle
+                flushSink();
+                LockSupport.parkNanos(idleParkNanos);
+                idleParkNanos = Math.min(idleParkNanos * 2, MAX_IDLE_PARK_NANOS);
+                continue;
+            }
+            idleParkNanos = 1_000;
+            try {
+                sink.write(entry);
+                logged.increment();
+            } catch (IOException | RuntimeException e) {
+                dropped.increment();
+            }
+            entry.account = null;
+            entry.counterparty = null;
+            consumed = next + 1;
+        }
+    }
+
+    private void flushSink() {
+        try {
+            sink.flush();
+        } catch (IOException e) {
+            // Nothing sensible to report it to; the next flush retries
+        }
+    }
+
+    /**
+     * Waits up to the timeout for every event queued so far to reach the sink
+     */
+    public boolean flush(long timeoutMillis) {
+        long target = claimed.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (consumed < target) {
+            if (System.nanoTime() > deadline) return false;
+            LockSupport.parkNanos(100_000);
+        }
+        flushSink();
+        return true;
+    }
+
+    public long getDropped() { return dropped.getValue(); }
+
+    /**
+     * Writes one line per event: time, event, outcome, account(s), amount
+     */
+    public static class TextSink implements Sink {
+        private static final DateTimeFormatter TIME =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+        private final Writer writer;
+        private final StringBuilder line = new StringBuilder(128);
+
+        public TextSink(Writer writer) {
+            this.writer = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer);
+        }
+
+        public TextSink(PrintStream out) {
+            this(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void write(Entry entry) throws IOException {
+            line.setLength(0);
+            TIME.formatTo(Instant.ofEpochMilli(entry.getTimestampMillis()), line);
+            line.append(' ').append(entry.getEvent()).append(' ').append(entry.getOutcome());
+            line.append(" account=").append(entry.getAccount());
+            if (entry.getCounterparty() != null) {
+                line.append(" to=").append(entry.getCounterparty());
+            }
+            if (entry.getAmountMinor() != 0) {
+                line.append(" amount=").append(String.format("%.2f", Account.fromMinorUnits(entry.getAmountMinor())));
+            }
+            line.append('\n');
+            writer.append(line);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+    }
+}
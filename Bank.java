@@ -1,33 +1,478 @@
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Bank class manages all customers and accounts
- * Demonstrates: Aggregation, Collections, Business logic, Singleton pattern
+ * Demonstrates: Aggregation, Collections, Business logic, Singleton pattern, Sharding
+ *
+ * Accounts are spread over BankShards by consistent hashing of the account number (customers by
+ * their id); the Bank routes each lookup to the owning shard and coordinates the few operations
+ * that span shards - transfers, customers with accounts on several shards, and checkpoints,
+ * which close every shard's gate in index order so the per-shard snapshots form one consistent cut.
  */
 public class Bank {
     private static Bank instance;
-    private Map<String, Customer> customers;
-    private Map<String, Account> accounts;
+    private final ShardRouter router;
+    private final BankShard[] shards;
     private String bankName;
+    // True when every shard writes a journal; -Datm.journal=none runs purely in memory
+    private boolean journaled;
+    // Created-at of the last snapshot set, so every checkpoint gets a distinct one
+    private long lastCheckpointMillis;
+    private final Object snapshotLock = new Object();
+    // Time-partitioned index over the journals; null without a journal
+    private TransactionStore transactionStore;
+    // Slow PIN hash checks run here so login bursts can't starve transaction processing
+    private final PinVerifier pinVerifier = PinVerifier.fromSystemProperties();
+    // Failed logins across all sessions, for back-off and lockout
+    private final LoginThrottle loginThrottle = new LoginThrottle();
+    private static final AsyncLogger AUDIT = AsyncLogger.global();
+
+    // Journal location; set -Datm.journal=none to run purely in memory
+    private static final String JOURNAL_PROPERTY = "atm.journal";
+    private static final String DEFAULT_JOURNAL_PATH = "data/atm-journal.bin";
+    // Snapshots are written next to the journal every atm.snapshot.intervalSeconds (0 disables)
+    private static final String SNAPSHOT_FILE_NAME = "atm-snapshot.bin";
+    private static final String SNAPSHOT_INTERVAL_PROPERTY = "atm.snapshot.intervalSeconds";
+    private static final long DEFAULT_SNAPSHOT_INTERVAL_SECONDS = 300;
+    // Shard count for a new bank (default: one per core, up to MAX_DEFAULT_SHARDS); an existing
+    // journal keeps the count it was created with, recorded in SHARD_LAYOUT_FILE_NAME
+    private static final String SHARDS_PROPERTY = "atm.shards";
+    private static final String SHARD_LAYOUT_FILE_NAME = "atm-shards";
+    private static final int MAX_DEFAULT_SHARDS = 16;
+    // Transaction store files live in this directory next to the journal; it catches up with the
+    // journals every atm.store.refreshSeconds (0: only when queried)
+    private static final String STORE_DIRECTORY_NAME = "atm-store";
+    private static final String STORE_REFRESH_PROPERTY = "atm.store.refreshSeconds";
+    private static final long DEFAULT_STORE_REFRESH_SECONDS = 10;
 
     // Private constructor for Singleton pattern
     private Bank(String bankName) {
         this.bankName = bankName;
-        this.customers = new HashMap<>();
-        this.accounts = new HashMap<>();
-        initializeSampleData();
+        String location = System.getProperty(JOURNAL_PROPERTY, DEFAULT_JOURNAL_PATH);
+        Path journalPath = location.equalsIgnoreCase("none") ? null : Paths.get(location);
+
+        this.router = new ShardRouter(resolveShardCount(journalPath));
+        this.shards = new BankShard[router.getShardCount()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new BankShard(i, router);
+        }
+        if (journalPath != null) {
+            openJournals(journalPath);
+        }
+        registerMetrics();
+
+        if (getAccountCount() == 0) {
+            // First start (or in-memory mode): seed the journal with the demo accounts
+            initializeSampleData();
+        } else {
+            System.out.println("🏦 Bank restored from snapshot and journal:");
+            System.out.println("   • " + getCustomerCount() + " customers, " + getAccountCount() + " accounts"
+                + " in " + shards.length + " shard" + (shards.length == 1 ? "" : "s"));
+            System.out.println("   • Ready for ATM operations");
+            System.out.println();
+        }
+    }
+
+    /**
+     * Works out how many shards to run; a journal on disk fixes the count it was written with
+     */
+    private static int resolveShardCount(Path journalPath) {
+        Integer configured = Integer.getInteger(SHARDS_PROPERTY);
+        int fallback = Math.min(Runtime.getRuntime().availableProcessors(), MAX_DEFAULT_SHARDS);
+        if (journalPath == null) {
+            return configured != null ? configured : fallback;
+        }
+
+        Path layout = journalPath.resolveSibling(SHARD_LAYOUT_FILE_NAME);
+        try {
+            // Journals from before sharding are a single shard
+            int existing = Files.exists(layout) ? Integer.parseInt(Files.readString(layout).trim())
+                : Files.exists(journalPath) ? 1 : 0;
+            if (existing > 0 && configured != null && configured != existing) {
+                throw new IllegalStateException("Journal " + journalPath + " was written by " + existing
+                    + " shards; -D" + SHARDS_PROPERTY + "=" + configured + " would route accounts to the wrong ones");
+            }
+            int count = existing > 0 ? existing : configured != null ? configured : fallback;
+            if (!Files.exists(layout)) {
+                if (layout.toAbsolutePath().getParent() != null) {
+                    Files.createDirectories(layout.toAbsolutePath().getParent());
+                }
+                Files.writeString(layout, count + "\n");
+            }
+            return count;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read shard layout " + layout, e);
+        }
+    }
+
+    /**
+     * Exports the verifier's and running totals' figures through the metrics registry
+     */
+    private void registerMetrics() {
+        Metrics metrics = Metrics.global();
+        metrics.timer("atm_pin_check_seconds", "", "PIN hash checks on the verifier pool, including queueing",
+            pinVerifier.getLatency());
+        metrics.gauge("atm_pin_check_queue", "", "PIN checks waiting for a verifier thread", pinVerifier::getQueued);
+        metrics.gauge("atm_pin_check_rejected", "", "PIN checks refused because the verifier pool stayed full",
+            pinVerifier::getRejected);
+        metrics.gauge("atm_accounts", "", "Accounts held by the bank", this::getAccountCount);
+        for (BankShard shard : shards) {
+            metrics.gauge("atm_shard_accounts", "shard=\"" + shard.getIndex() + "\"", "Accounts held by each shard",
+                shard::getAccountCount);
+        }
+        metrics.gauge("atm_bank_balance_rupees", "", "Total balance across all accounts",
+            () -> Account.fromMinorUnits(getBalanceMinor()));
+        for (TransactionType type : TransactionType.values()) {
+            metrics.gauge("atm_transactions", "transaction_type=\"" + type.name().toLowerCase() + "\"",
+                "Transactions applied since the bank was created", () -> getTransactionCount(type));
+        }
+    }
+
+    /**
+     * Recovers every shard from its snapshot and journal, then schedules future snapshots
+     *
+     * Shards load and replay in parallel on their own executors. Snapshots are only used if
+     * every shard has one from the same checkpoint; otherwise all shards replay their whole
+     * journal, since mixing checkpoints could count a cross-shard transfer twice.
+     */
+    private void openJournals(Path journalPath) {
+        Path snapshotPath = journalPath.resolveSibling(SNAPSHOT_FILE_NAME);
+        for (BankShard shard : shards) {
+            shard.setFiles(shardFile(journalPath, shard.getIndex()), shardFile(snapshotPath, shard.getIndex()));
+        }
+
+        try {
+            List<AccountSnapshot.Checkpoint> checkpoints = onEveryShard(shard -> {
+                if (!Files.exists(shard.getSnapshotPath())) return null;
+                try {
+                    return shard.loadSnapshot();
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("⚠️ Ignoring snapshot: " + e.getMessage());
+                    return null;
+                }
+            });
+            boolean usable = checkpoints.get(0) != null;
+            for (AccountSnapshot.Checkpoint checkpoint : checkpoints) {
+                usable &= checkpoint != null && checkpoint.getCreatedAt() == checkpoints.get(0).getCreatedAt();
+            }
+            if (!usable) {
+                // Unreadable, missing or mismatched snapshots: rebuild everything from the journals instead
+                if (shards.length > 1 && checkpoints.stream().anyMatch(c -> c != null)) {
+                    System.out.println("⚠️ Shard snapshots are from different checkpoints; replaying the full journals");
+                }
+                for (BankShard shard : shards) {
+                    shard.clearRestored();
+                }
+            } else {
+                lastCheckpointMillis = checkpoints.get(0).getCreatedAt();
+            }
+
+            boolean useSnapshots = usable;
+            onEveryShard(shard -> {
+                AccountSnapshot.Checkpoint checkpoint = useSnapshots ? checkpoints.get(shard.getIndex()) : null;
+                if (checkpoint == null) {
+                    shard.openJournal(0, 0, 0);
+                } else {
+                    shard.openJournal(checkpoint.getSequence(), checkpoint.getJournalOffset(),
+                        checkpoint.getWindowOffset());
+                }
+                return null;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open transaction journal " + journalPath, e);
+        }
+        journaled = true;
+
+        // Ids are unique only if none recovered is handed out again, even after a clock step back
+        long lastTransactionId = 0;
+        for (BankShard shard : shards) {
+            lastTransactionId = Math.max(lastTransactionId, shard.getLastTransactionId());
+        }
+        Transaction.advanceIdsPast(lastTransactionId);
+
+        completeCrossShardTransfers();
+        mergeRestoredCustomers();
+        openTransactionStore(journalPath.resolveSibling(STORE_DIRECTORY_NAME));
+        scheduleSnapshots();
+    }
+
+    // The store only indexes the journals, so the bank runs without it if it can't be opened
+    private void openTransactionStore(Path directory) {
+        try {
+            transactionStore = TransactionStore.open(directory, shards, TransactionStore.Granularity.fromSystemProperties());
+        } catch (IOException | RuntimeException e) {
+            System.out.println("⚠️ Transaction store unavailable: " + e.getMessage());
+            return;
+        }
+
+        long interval = Long.getLong(STORE_REFRESH_PROPERTY, DEFAULT_STORE_REFRESH_SECONDS);
+        if (interval > 0) {
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "atm-store");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // The first run indexes whatever the journals gained since the store last ran
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    transactionStore.refresh();
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("⚠️ Transaction store refresh failed: " + e.getMessage());
+                }
+            }, 0, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    // Shard 0 keeps the unsharded file name, so a single-shard bank reads journals from before sharding
+    private static Path shardFile(Path path, int shard) {
+        if (shard == 0) return path;
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return path.resolveSibling(dot < 0 ? name + "-" + shard
+            : name.substring(0, dot) + "-" + shard + name.substring(dot));
+    }
+
+    /**
+     * Applies the missing leg of cross-shard transfers a crash left in only one journal
+     *
+     * Both journals get the record before either is awaited, but they are flushed independently.
+     * The leg that did reach disk was validated when it ran, and if a journal lost the record it
+     * also lost everything that shard appended afterwards, so rolling forward is always safe.
+     */
+    private void completeCrossShardTransfers() {
+        int completed = 0;
+        for (BankShard shard : shards) {
+            for (Map.Entry<Long, BankShard.CrossShardTransfer> entry : shard.getCrossShardTransfers().entrySet()) {
+                BankShard.CrossShardTransfer transfer = entry.getValue();
+                boolean outgoing = shard.owns(transfer.fromAccountNumber);
+                BankShard other = shardFor(outgoing ? transfer.toAccountNumber : transfer.fromAccountNumber);
+                if (other.getCrossShardTransfers().remove(entry.getKey()) != null) {
+                    continue;
+                }
+
+                long transactionId = entry.getKey();
+                if (outgoing) {
+                    other.findAccount(transfer.toAccountNumber)
+                        .replayTransferIn(transfer.amountMinor, transactionId, transfer.timestamp);
+                } else {
+                    other.findAccount(transfer.fromAccountNumber)
+                        .replayTransferOut(transfer.amountMinor, transactionId, transfer.timestamp);
+                }
+                other.getJournal().awaitDurable(other.getJournal().appendTransfer(transfer.fromAccountNumber,
+                    transfer.toAccountNumber, transfer.amountMinor, transactionId));
+                completed++;
+            }
+            shard.getCrossShardTransfers().clear();
+        }
+        if (completed > 0) {
+            System.out.println("⚠️ Completed " + completed + " cross-shard transfer(s) interrupted by a crash");
+        }
+    }
+
+    // Each shard restored its own accounts' owners; give every customer one object on its home shard
+    private void mergeRestoredCustomers() {
+        for (BankShard shard : shards) {
+            for (Customer restored : shard.getRestoredCustomers().values()) {
+                Customer home = shardFor(restored.getCustomerId()).addCustomerIfAbsent(restored);
+                if (home != null) {
+                    for (Account account : restored.getAccounts()) {
+                        home.addAccount(account);
+                    }
+                }
+            }
+            shard.getRestoredCustomers().clear();
+        }
+    }
+
+    private void scheduleSnapshots() {
+        long interval = Long.getLong(SNAPSHOT_INTERVAL_PROPERTY, DEFAULT_SNAPSHOT_INTERVAL_SECONDS);
+        if (interval > 0) {
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "atm-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::trySnapshot, interval, interval, TimeUnit.SECONDS);
+        }
+
+        // Snapshot on the way out so the next start replays as little journal as possible
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            trySnapshot();
+            for (BankShard shard : shards) {
+                shard.getJournal().close();
+            }
+        }, "atm-journal-shutdown"));
+    }
+
+    /**
+     * Writes a snapshot of every shard at one consistent cut across all their journals
+     *
+     * The gates are held only while each shard's state is copied; the files are written after
+     * mutations resume. One snapshot runs at a time, so an older cut never replaces a newer one.
+     */
+    public void takeSnapshot() throws IOException {
+        if (!journaled) {
+            throw new IllegalStateException("Snapshots require the transaction journal");
+        }
+        synchronized (snapshotLock) {
+            List<AccountSnapshot.Image> images = new ArrayList<>(shards.length);
+            withAllShardsPaused((sequences, offsets) -> {
+                long createdAt = Math.max(System.currentTimeMillis(), lastCheckpointMillis + 1);
+                lastCheckpointMillis = createdAt;
+                // Every id in the journals up to this cut was issued by now
+                long lastTransactionId = Transaction.lastIssuedId();
+                List<List<Customer>> customersByShard = customersByShard();
+                images.addAll(onEveryShard(shard -> {
+                    int index = shard.getIndex();
+                    // Where the journal's last day starts, so a restore can refill the daily windows
+                    long windowOffset = shard.getJournal().offsetSince(createdAt - DailyLimits.MAX_WINDOW_MILLIS);
+                    return AccountSnapshot.capture(sequences[index], offsets[index], windowOffset, createdAt,
+                        lastTransactionId, customersByShard.get(index), shard.getTotals());
+                }));
+            });
+            onEveryShard(shard -> {
+                AccountSnapshot.write(shard.getSnapshotPath(), images.get(shard.getIndex()));
+                return null;
+            });
+        }
+    }
+
+    private void trySnapshot() {
+        try {
+            takeSnapshot();
+        } catch (IOException | RuntimeException e) {
+            // The journal still holds everything; the next snapshot or a full replay recovers
+            System.err.println("⚠️ Snapshot failed: " + e);
+        }
+    }
+
+    // Each shard's snapshot holds its own accounts, under copies of their customers
+    private List<List<Customer>> customersByShard() {
+        List<List<Customer>> byShard = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (BankShard shard : shards) {
+            shard.forEachCustomer(customer -> {
+                List<Account> accounts = customer.getAccounts();
+                List<List<Account>> shares = new ArrayList<>(Collections.nCopies(shards.length, null));
+                for (Account account : accounts) {
+                    int index = router.shardFor(account.getAccountNumber());
+                    if (shares.get(index) == null) shares.set(index, new ArrayList<>());
+                    shares.get(index).add(account);
+                }
+                for (int i = 0; i < shares.size(); i++) {
+                    List<Account> share = shares.get(i);
+                    if (share != null) {
+                        byShard.get(i).add(share.size() == accounts.size() ? customer : customer.withAccounts(share));
+                    }
+                }
+            });
+        }
+        return byShard;
+    }
+
+    /**
+     * Work run on every shard's executor at once
+     */
+    private interface ShardTask<T> {
+        T run(BankShard shard) throws IOException;
+    }
+
+    /**
+     * Runs the task on every shard in parallel and returns the results in shard order
+     */
+    private <T> List<T> onEveryShard(ShardTask<T> task) throws IOException {
+        List<Future<T>> futures = new ArrayList<>(shards.length);
+        for (BankShard shard : shards) {
+            futures.add(shard.submit(() -> task.run(shard)));
+        }
+        List<T> results = new ArrayList<>(shards.length);
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for shard work");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Receives each shard's journal sequence and offset while every shard's mutations are paused
+     */
+    private interface PausedShardsWriter {
+        void write(long[] sequences, long[] offsets) throws IOException;
     }
 
-    // Singleton getInstance method
-    public static Bank getInstance(String bankName) {
+    // Takes each shard's checkpoint gate in index order, the same order mutations enter them
+    private void withAllShardsPaused(PausedShardsWriter writer) throws IOException {
+        long[] sequences = new long[shards.length];
+        long[] offsets = new long[shards.length];
+        pauseFrom(0, sequences, offsets, writer);
+    }
+
+    private void pauseFrom(int index, long[] sequences, long[] offsets, PausedShardsWriter writer) throws IOException {
+        if (index == shards.length) {
+            writer.write(sequences, offsets);
+            return;
+        }
+        shards[index].getJournal().checkpoint((sequence, offset) -> {
+            sequences[index] = sequence;
+            offsets[index] = offset;
+            pauseFrom(index + 1, sequences, offsets, writer);
+        });
+    }
+
+    // Mutations spanning shards enter their gates in index order, so they can't deadlock with a checkpoint
+    private void beginMutation(boolean[] involved) {
+        for (int i = 0; i < shards.length; i++) {
+            if (involved[i]) shards[i].beginMutation();
+        }
+    }
+
+    private void endMutation(boolean[] involved) {
+        for (int i = shards.length - 1; i >= 0; i--) {
+            if (involved[i]) shards[i].endMutation();
+        }
+    }
+
+    private void awaitDurable(long[] lastSequences) {
+        for (int i = 0; i < shards.length; i++) {
+            if (lastSequences[i] > 0) shards[i].getJournal().awaitDurable(lastSequences[i]);
+        }
+    }
+
+    // Singleton getInstance method (synchronized so concurrent sessions share one Bank)
+    public static synchronized Bank getInstance(String bankName) {
         if (instance == null) {
             instance = new Bank(bankName);
         }
         return instance;
     }
 
-    public static Bank getInstance() {
+    public static synchronized Bank getInstance() {
         return instance;
     }
 
@@ -40,34 +485,27 @@ public class Bank {
 
         // Customer 1: John Doe
         Customer john = new Customer("CUST001", "John", "Doe", "9876543210", "john.doe@email.com");
-        Account johnSavings = new Account("1234567890", "John Doe", 15000.0, "1234");
-        john.addAccount(johnSavings);
-        customers.put("CUST001", john);
-        accounts.put("1234567890", johnSavings);
+        john.addAccount(new Account("1234567890", "John Doe", 15000.0, "1234"));
+        john.addAccount(new Account("1234567894", "John Doe", AccountType.CURRENT, 40000.0, "4321"));
+        addCustomer(john);
 
         // Customer 2: Jane Smith
         Customer jane = new Customer("CUST002", "Jane", "Smith", "9876543211", "jane.smith@email.com");
-        Account janeSavings = new Account("1234567891", "Jane Smith", 25000.0, "5678");
-        jane.addAccount(janeSavings);
-        customers.put("CUST002", jane);
-        accounts.put("1234567891", janeSavings);
+        jane.addAccount(new Account("1234567891", "Jane Smith", 25000.0, "5678"));
+        addCustomer(jane);
 
         // Customer 3: Mike Johnson
         Customer mike = new Customer("CUST003", "Mike", "Johnson", "9876543212", "mike.johnson@email.com");
-        Account mikeSavings = new Account("1234567892", "Mike Johnson", 8500.0, "9999");
-        mike.addAccount(mikeSavings);
-        customers.put("CUST003", mike);
-        accounts.put("1234567892", mikeSavings);
+        mike.addAccount(new Account("1234567892", "Mike Johnson", 8500.0, "9999"));
+        addCustomer(mike);
 
         // Customer 4: Sarah Wilson (for testing edge cases)
         Customer sarah = new Customer("CUST004", "Sarah", "Wilson", "9876543213", "sarah.wilson@email.com");
-        Account sarahSavings = new Account("1234567893", "Sarah Wilson", 500.0, "0000");
-        sarah.addAccount(sarahSavings);
-        customers.put("CUST004", sarah);
-        accounts.put("1234567893", sarahSavings);
+        sarah.addAccount(new Account("1234567893", "Sarah Wilson", 500.0, "0000"));
+        addCustomer(sarah);
 
         System.out.println("🏦 Bank initialized with sample data:");
-        System.out.println("   • 4 customers with accounts created");
+        System.out.println("   • 4 customers with 5 accounts created");
         System.out.println("   • Ready for ATM operations");
         System.out.println();
     }
@@ -76,71 +514,522 @@ public class Bank {
      * Finds customer by customer ID
      */
     public Customer findCustomer(String customerId) {
-        return customers.get(customerId);
+        return shardFor(customerId).findCustomer(customerId);
     }
 
     /**
      * Finds account by account number
      */
     public Account findAccount(String accountNumber) {
-        return accounts.get(accountNumber);
+        return shardFor(accountNumber).findAccount(accountNumber);
+    }
+
+    /**
+     * Finds the customer holding an account, without searching the customers
+     */
+    public Customer findCustomerByAccount(String accountNumber) {
+        Account account = findAccount(accountNumber);
+        return account == null ? null : account.getCustomer();
+    }
+
+    /**
+     * Opens a cursor over an account's transactions with timestamps in [fromMillis, toMillis), oldest first
+     * @param resumeAt bookmark from an earlier cursor on the same account and range, or null to start at the beginning
+     * @return the cursor, or null if there is no such account
+     * @throws IllegalArgumentException if the bookmark was taken on another account or period
+     *
+     * Rows come from the transaction store's index of the account, which takes none of the
+     * journal's locks, so the account stays open for business meanwhile. Without a journal only
+     * the transactions still in memory are available.
+     */
+    public StatementCursor openStatement(String accountNumber, long fromMillis, long toMillis,
+                                         StatementCursor.Bookmark resumeAt) throws IOException {
+        Account account = findAccount(accountNumber);
+        if (account == null) {
+            return null;
+        }
+        if (!journaled) {
+            return StatementCursor.ofRecentHistory(account, fromMillis, toMillis);
+        }
+        return StatementCursor.open(account, requireTransactionStore(), fromMillis, toMillis, resumeAt);
+    }
+
+    /**
+     * Visits every transaction with a timestamp in [fromMillis, toMillis), in time order
+     * @return the number of transactions visited
+     */
+    public long forEachTransaction(long fromMillis, long toMillis, TransactionStore.RowVisitor visitor)
+            throws IOException {
+        return requireTransactionStore().forEach(fromMillis, toMillis, visitor);
+    }
+
+    /**
+     * Visits an account's transactions with a timestamp in [fromMillis, toMillis), in time order
+     * @return the number of transactions visited
+     */
+    public long forEachTransaction(String accountNumber, long fromMillis, long toMillis,
+                                   TransactionStore.RowVisitor visitor) throws IOException {
+        long number = Account.parseAccountNumber(accountNumber);
+        if (number == Digits.INVALID) {
+            throw new IllegalArgumentException("Account numbers must be " + Account.ACCOUNT_NUMBER_DIGITS
+                + " digits: " + accountNumber);
+        }
+        return requireTransactionStore().forEach(number, fromMillis, toMillis, visitor);
+    }
+
+    private TransactionStore requireTransactionStore() {
+        if (transactionStore == null) {
+            throw new IllegalStateException("Transaction queries require the transaction journal");
+        }
+        return transactionStore;
+    }
+
+    // Shard owning an account number or customer id
+    BankShard shardFor(String key) {
+        return shards[router.shardFor(key)];
     }
 
     /**
      * Adds a new customer to the bank
      */
     public void addCustomer(Customer customer) {
-        customers.put(customer.getCustomerId(), customer);
+        // Refused up front, since a value the snapshots can't hold would fail every later snapshot
+        AccountSnapshot.checkFits(customer);
+        BankShard home = shardFor(customer.getCustomerId());
+        if (!journaled) {
+            home.addCustomer(customer);
+            for (Account account : customer.getAccounts()) {
+                BankShard shard = shardFor(account.getAccountNumber());
+                shard.addAccount(account);
+                account.attachTotals(shard.getTotals());
+            }
+            return;
+        }
 
-        // Add all customer accounts to the accounts map
+        // Register and journal the accounts as one step relative to snapshots of every shard involved
+        boolean[] involved = new boolean[shards.length];
+        involved[home.getIndex()] = true;
         for (Account account : customer.getAccounts()) {
-            accounts.put(account.getAccountNumber(), account);
+            involved[router.shardFor(account.getAccountNumber())] = true;
         }
+        long[] lastSequences = new long[shards.length];
+        beginMutation(involved);
+        try {
+            home.addCustomer(customer);
+            for (Account account : customer.getAccounts()) {
+                BankShard shard = shardFor(account.getAccountNumber());
+                shard.addAccount(account);
+                lastSequences[shard.getIndex()] = shard.getJournal().appendOpenAccount(customer.getCustomerId(),
+                    customer.getFirstName(), customer.getLastName(), customer.getPhoneNumber(), customer.getEmail(),
+                    account.getAccountNumber(), account.getAccountHolderName(), account.getAccountType(),
+                    account.getBalanceMinor(), account.getPinCredential().encode(), account.getOpeningTransactionId());
+                account.attachJournal(shard.getJournal());
+                account.attachTotals(shard.getTotals());
+            }
+        } finally {
+            endMutation(involved);
+        }
+        awaitDurable(lastSequences);
     }
 
+
     /**
      * Validates account and PIN combination
      */
     public boolean validateAccountAndPin(String accountNumber, String pin) {
         Account account = findAccount(accountNumber);
-        return account != null && account.validatePin(pin);
+        return account != null && verifyPin(account, pin) == PinVerifier.Result.MATCH;
+    }
+
+    /**
+     * Checks a PIN, applying lockout and back-off shared by every session
+     * @return LOCKED or THROTTLED without checking the PIN, BUSY if the verifier pool stayed
+     *         full, otherwise MATCH or MISMATCH
+     */
+    public PinVerifier.Result verifyPin(Account account, String pin) {
+        PinVerifier.Result result = checkPin(account, pin);
+        AUDIT.log(AsyncLogger.Event.LOGIN, result, account.getAccountNumber(), 0);
+        return result;
+    }
+
+    private PinVerifier.Result checkPin(Account account, String pin) {
+        String accountNumber = account.getAccountNumber();
+        if (account.isLocked()) {
+            return PinVerifier.Result.LOCKED;
+        }
+        if (loginThrottle.retryAfterMillis(accountNumber, account.getLoginMark()) > 0) {
+            return PinVerifier.Result.THROTTLED;
+        }
+
+        PinVerifier.Result result = pinVerifier.verify(account, pin);
+        if (result == PinVerifier.Result.MATCH) {
+            account.setLoginMark(loginThrottle.mark(accountNumber));
+            account.clearLoginFailures();
+        } else if (result == PinVerifier.Result.MISMATCH) {
+            loginThrottle.recordFailure(accountNumber, account.getLoginMark());
+            // The sketch may overcount after collisions, so only the account's exact count can lock it
+            int failures = account.recordLoginFailure(System.currentTimeMillis(), loginThrottle.getWindowMillis());
+            if (failures >= LoginThrottle.LOCK_THRESHOLD) {
+                setLocked(account, true);
+                return PinVerifier.Result.LOCKED;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Changes an account's PIN; the old PIN goes through the same lockout, back-off and verifier
+     * pool as a login, and a wrong one counts as a failed login
+     * @return SUCCESS, or INVALID_PIN_FORMAT / SAME_PIN / INCORRECT_PIN / ACCOUNT_LOCKED /
+     *         TRY_AGAIN_LATER / JOURNAL_UNAVAILABLE / NOT_DURABLE
+     */
+    public TransactionResult changePin(Account account, String oldPin, String newPin) {
+        // Checked first, since they need no hashing
+        TransactionResult result = !PinCredential.isWellFormed(newPin) ? TransactionResult.INVALID_PIN_FORMAT
+            : newPin.equals(oldPin) ? TransactionResult.SAME_PIN
+            : null;
+        if (result == null) {
+            switch (verifyPin(account, oldPin)) {
+                case MATCH:
+                    // Derived on the session thread with no lock held; only a caller who knew the PIN gets here
+                    return account.changePin(PinCredential.create(newPin));
+                case MISMATCH:
+                    result = TransactionResult.INCORRECT_PIN;
+                    break;
+                case LOCKED:
+                    result = TransactionResult.ACCOUNT_LOCKED;
+                    break;
+                default:
+                    result = TransactionResult.TRY_AGAIN_LATER;
+                    break;
+            }
+        }
+        AUDIT.log(AsyncLogger.Event.PIN_CHANGE, result, account.getAccountNumber(), 0);
+        return result;
+    }
+
+    /**
+     * Seconds until the account may try another PIN (0 if it may try now)
+     */
+    public long getLoginRetryAfterSeconds(Account account) {
+        long millis = loginThrottle.retryAfterMillis(account.getAccountNumber(), account.getLoginMark());
+        return (millis + 999) / 1000;
+    }
+
+    /**
+     * Lifts a lockout (customer service) and forgives the failures that caused it
+     */
+    public boolean unlockAccount(String accountNumber) {
+        Account account = findAccount(accountNumber);
+        if (account == null || !account.isLocked()) return false;
+        account.setLoginMark(loginThrottle.mark(accountNumber));
+        account.clearLoginFailures();
+        setLocked(account, false);
+        return true;
+    }
+
+    // Journals lock changes so a lockout survives restarts
+    private void setLocked(Account account, boolean locked) {
+        AUDIT.log(locked ? AsyncLogger.Event.ACCOUNT_LOCK : AsyncLogger.Event.ACCOUNT_UNLOCK,
+            TransactionResult.SUCCESS, account.getAccountNumber(), 0);
+        TransactionJournal journal = shardFor(account.getAccountNumber()).getJournal();
+        if (journal == null) {
+            account.setLocked(locked);
+            return;
+        }
+
+        long sequence;
+        journal.beginMutation();
+        try {
+            account.setLocked(locked);
+            sequence = journal.appendAccountLock(account.getAccountNumber(), locked);
+        } finally {
+            journal.endMutation();
+        }
+        journal.awaitDurable(sequence);
     }
 
     /**
-     * Gets bank statistics
+     * One requested movement of funds between two accounts
+     */
+    public static class Transfer {
+        private final String fromAccountNumber;
+        private final String toAccountNumber;
+        private final long amountMinor;
+
+        public Transfer(String fromAccountNumber, String toAccountNumber, double amount) {
+            this.fromAccountNumber = fromAccountNumber;
+            this.toAccountNumber = toAccountNumber;
+            this.amountMinor = Account.toMinorUnits(amount);
+        }
+
+        public String getFromAccountNumber() { return fromAccountNumber; }
+        public String getToAccountNumber() { return toAccountNumber; }
+        public long getAmountMinor() { return amountMinor; }
+        public double getAmount() { return Account.fromMinorUnits(amountMinor); }
+    }
+
+    /**
+     * Moves money between two accounts; either both legs happen or neither does
+     * @return SUCCESS, or UNKNOWN_ACCOUNT / SAME_ACCOUNT / INVALID_AMOUNT / INSUFFICIENT_FUNDS /
+     *         JOURNAL_UNAVAILABLE
+     */
+    public TransactionResult transfer(String fromAccountNumber, String toAccountNumber, double amount) {
+        return transferBatch(List.of(new Transfer(fromAccountNumber, toAccountNumber, amount)))[0];
+    }
+
+    /**
+     * Settles many transfers in order with a single durability wait for the whole batch
+     *
+     * Each leg is a lock-free update: the debit is a CAS that refuses overdrafts and the
+     * credit cannot fail, so no account locks are held and hot accounts never deadlock or
+     * convoy. Both legs go into one journal record under the checkpoint gate, so neither a
+     * snapshot nor a replay can observe half a transfer. A transfer between shards writes that
+     * record to both shards' journals, each replaying its own leg. If a journal refuses the
+     * record, the debit is given back and that transfer fails on its own; the rest of the batch
+     * carries on.
+     * @return per-transfer outcome, SUCCESS where the transfer was settled
+     */
+    public TransactionResult[] transferBatch(List<Transfer> transfers) {
+        TransactionResult[] results = new TransactionResult[transfers.size()];
+        Transaction[] debits = new Transaction[transfers.size()];
+        Transaction[] credits = new Transaction[transfers.size()];
+
+        boolean[] involved = new boolean[shards.length];
+        for (Transfer transfer : transfers) {
+            involved[router.shardFor(transfer.getFromAccountNumber())] = true;
+            involved[router.shardFor(transfer.getToAccountNumber())] = true;
+        }
+        long[] lastSequences = new long[shards.length];
+        beginMutation(involved);
+        try {
+            for (int i = 0; i < transfers.size(); i++) {
+                Transfer transfer = transfers.get(i);
+                BankShard fromShard = shardFor(transfer.getFromAccountNumber());
+                BankShard toShard = shardFor(transfer.getToAccountNumber());
+                Account from = fromShard.findAccount(transfer.getFromAccountNumber());
+                Account to = toShard.findAccount(transfer.getToAccountNumber());
+                long amountMinor = transfer.getAmountMinor();
+                results[i] = from == null || to == null ? TransactionResult.UNKNOWN_ACCOUNT
+                    : from == to ? TransactionResult.SAME_ACCOUNT
+                    : amountMinor <= 0 ? TransactionResult.INVALID_AMOUNT
+                    : from.debitFunds(amountMinor) < 0 ? TransactionResult.INSUFFICIENT_FUNDS
+                    : TransactionResult.SUCCESS;
+                if (results[i] != TransactionResult.SUCCESS) {
+                    continue;
+                }
+                // Both legs share the transfer's id so statements on either side can be matched up
+                long transactionId = Transaction.nextId();
+                long now = Transaction.currentEpochNanos();
+                debits[i] = new Transaction(transactionId, TransactionType.TRANSFER_OUT, amountMinor,
+                    Transaction.Description.TRANSFER_SENT, now);
+                credits[i] = new Transaction(transactionId, TransactionType.TRANSFER_IN, amountMinor,
+                    Transaction.Description.TRANSFER_RECEIVED, now);
+                if (journaled && !journalTransfer(fromShard, toShard, from, to, amountMinor, transactionId,
+                        lastSequences)) {
+                    from.creditFunds(amountMinor);
+                    results[i] = TransactionResult.JOURNAL_UNAVAILABLE;
+                    continue;
+                }
+                // Credit only after the record is appended, so anything spending it is journaled later
+                to.creditFunds(amountMinor);
+                from.countInTotals(TransactionType.TRANSFER_OUT, amountMinor, System.currentTimeMillis());
+                to.countInTotals(TransactionType.TRANSFER_IN, amountMinor, System.currentTimeMillis());
+            }
+        } finally {
+            endMutation(involved);
+        }
+
+        awaitDurable(lastSequences);
+
+        // Like deposits and withdrawals, statements only show transfers once they are durable
+        for (int i = 0; i < transfers.size(); i++) {
+            Transfer transfer = transfers.get(i);
+            if (results[i] == TransactionResult.SUCCESS) {
+                findAccount(transfer.getFromAccountNumber()).recordTransaction(debits[i]);
+                findAccount(transfer.getToAccountNumber()).recordTransaction(credits[i]);
+            }
+            AUDIT.log(AsyncLogger.Event.TRANSFER, results[i], transfer.getFromAccountNumber(),
+                transfer.getToAccountNumber(), transfer.getAmountMinor());
+        }
+        return results;
+    }
+
+    /**
+     * Appends a transfer to its shard journals (caller holds both checkpoint gates)
+     * @return false if a journal refused it; nothing is then left for replay to apply
+     */
+    private boolean journalTransfer(BankShard fromShard, BankShard toShard, Account from, Account to,
+                                    long amountMinor, long transactionId, long[] lastSequences) {
+        long fromSequence;
+        try {
+            fromSequence = fromShard.getJournal().appendTransfer(from.getAccountNumber(), to.getAccountNumber(),
+                amountMinor, transactionId);
+        } catch (RuntimeException e) {
+            return false;
+        }
+        lastSequences[fromShard.getIndex()] = fromSequence;
+        if (toShard == fromShard) {
+            return true;
+        }
+
+        try {
+            lastSequences[toShard.getIndex()] = toShard.getJournal().appendTransfer(from.getAccountNumber(),
+                to.getAccountNumber(), amountMinor, transactionId);
+            return true;
+        } catch (RuntimeException e) {
+            // Recovery would roll the first shard's record forward; journal a reversal after it so they net out
+            try {
+                lastSequences[fromShard.getIndex()] = fromShard.getJournal().appendTransfer(to.getAccountNumber(),
+                    from.getAccountNumber(), amountMinor, Transaction.nextId());
+            } catch (RuntimeException reversalFailure) {
+                e.addSuppressed(reversalFailure);
+            }
+            System.out.println("⚠️ Transfer not journaled: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Gets bank statistics from the running totals, without visiting any account
      */
     public void printBankStats() {
+        int fewest = Integer.MAX_VALUE;
+        int most = 0;
+        for (BankShard shard : shards) {
+            fewest = Math.min(fewest, shard.getAccountCount());
+            most = Math.max(most, shard.getAccountCount());
+        }
         System.out.println("\n🏦 " + bankName + " - System Statistics");
         System.out.println("=" + "=".repeat(40));
-        System.out.println("Total Customers: " + customers.size());
-        System.out.println("Total Accounts: " + accounts.size());
+        System.out.println("Total Customers: " + getCustomerCount());
+        System.out.println("Total Accounts: " + getAccountCount());
+        System.out.println("Shards: " + shards.length + " (" + fewest + "-" + most + " accounts each)");
+        System.out.println("Total Bank Balance: ₹" + formatMinor(getBalanceMinor()));
+        long depositsToday = 0;
+        long withdrawalsToday = 0;
+        for (BankShard shard : shards) {
+            depositsToday += shard.getTotals().getDepositsTodayMinor();
+            withdrawalsToday += shard.getTotals().getWithdrawalsTodayMinor();
+        }
+        System.out.println("Deposits Today: ₹" + formatMinor(depositsToday));
+        System.out.println("Withdrawals Today: ₹" + formatMinor(withdrawalsToday));
+        System.out.println("Transactions: " + getTransactionCount(TransactionType.DEPOSIT) + " deposits, "
+            + getTransactionCount(TransactionType.WITHDRAWAL) + " withdrawals, "
+            + getTransactionCount(TransactionType.TRANSFER_OUT) + " transfers, "
+            + getTransactionCount(TransactionType.PIN_CHANGE) + " PIN changes");
+        pinVerifier.printStats(System.out);
+        System.out.println("=" + "=".repeat(40));
+    }
 
-        double totalBalance = accounts.values().stream()
-            .mapToDouble(Account::getBalance)
-            .sum();
-        System.out.println("Total Bank Balance: ₹" + String.format("%.2f", totalBalance));
+    /**
+     * Audits the running totals against a full scan of every account
+     *
+     * The shards scan in parallel while every shard's checkpoint gate is closed, so no deposit,
+     * withdrawal, transfer or settlement is half-applied while they sum; a mismatch means a
+     * balance changed without being counted. Without a journal there is no gate and the
+     * comparison is only best effort.
+     * @return true if the scanned balance matches the running total
+     */
+    public boolean printAuditStats() throws IOException {
+        long[] scanned = new long[1];
+        long[] running = new long[1];
+        long[] positions = null;
+        if (!journaled) {
+            auditScan(scanned, running);
+        } else {
+            positions = new long[shards.length];
+            long[] cut = positions;
+            withAllShardsPaused((sequences, offsets) -> {
+                System.arraycopy(sequences, 0, cut, 0, sequences.length);
+                auditScan(scanned, running);
+            });
+        }
+
+        boolean consistent = scanned[0] == running[0];
+        System.out.println("\n🔎 " + bankName + " - Balance Audit"
+            + (positions == null ? " (best effort, no journal)"
+                : positions.length == 1 ? " at journal record " + positions[0]
+                : " at journal records " + Arrays.toString(positions)));
+        System.out.println("=" + "=".repeat(40));
+        System.out.println("Accounts Scanned: " + getAccountCount());
+        System.out.println("Scanned Balance: ₹" + formatMinor(scanned[0]));
+        System.out.println("Running Total: ₹" + formatMinor(running[0]));
+        System.out.println(consistent ? "✅ Running totals match the accounts"
+            : "⚠️ Running totals are off by ₹" + formatMinor(running[0] - scanned[0]));
         System.out.println("=" + "=".repeat(40));
+        return consistent;
+    }
+
+    private void auditScan(long[] scanned, long[] running) throws IOException {
+        List<Long> balances = onEveryShard(shard -> {
+            long[] sum = new long[1];
+            shard.forEachAccount(account -> sum[0] += account.getBalanceMinor());
+            return sum[0];
+        });
+        for (long balance : balances) {
+            scanned[0] += balance;
+        }
+        running[0] = getBalanceMinor();
+    }
+
+    private static String formatMinor(long amountMinor) {
+        return String.format("%.2f", Account.fromMinorUnits(amountMinor));
     }
 
     /**
      * Displays available demo accounts for testing
      */
     public void displayDemoAccounts() {
-        System.out.println("\n🎯 DEMO ACCOUNTS FOR TESTING:");
-        System.out.println("=" + "=".repeat(50));
-        System.out.println("Account Number | PIN  | Account Holder    | Balance");
-        System.out.println("-" + "-".repeat(49));
-        System.out.println("1234567890     | 1234 | John Doe         | ₹15,000.00");
-        System.out.println("1234567891     | 5678 | Jane Smith       | ₹25,000.00");
-        System.out.println("1234567892     | 9999 | Mike Johnson     | ₹8,500.00");
-        System.out.println("1234567893     | 0000 | Sarah Wilson     | ₹500.00");
-        System.out.println("=" + "=".repeat(50));
-        System.out.println("💡 Use any of these accounts to test the ATM!");
-        System.out.println();
+        displayDemoAccounts(System.out);
+    }
+
+    /**
+     * Displays available demo accounts on the given terminal output
+     */
+    public void displayDemoAccounts(PrintStream out) {
+        out.println("\n🎯 DEMO ACCOUNTS FOR TESTING:");
+        out.println("=" + "=".repeat(50));
+        out.println("Account Number | PIN  | Account Holder    | Balance");
+        out.println("-" + "-".repeat(49));
+        out.println("1234567890     | 1234 | John Doe         | ₹15,000.00");
+        out.println("1234567894     | 4321 | John Doe (curr.) | ₹40,000.00");
+        out.println("1234567891     | 5678 | Jane Smith       | ₹25,000.00");
+        out.println("1234567892     | 9999 | Mike Johnson     | ₹8,500.00");
+        out.println("1234567893     | 0000 | Sarah Wilson     | ₹500.00");
+        out.println("=" + "=".repeat(50));
+        out.println("💡 Use any of these accounts to test the ATM!");
+        out.println();
+    }
+
+    // Aggregates over the shards
+
+    public int getCustomerCount() {
+        int count = 0;
+        for (BankShard shard : shards) count += shard.getCustomerCount();
+        return count;
+    }
+
+    public int getAccountCount() {
+        int count = 0;
+        for (BankShard shard : shards) count += shard.getAccountCount();
+        return count;
+    }
+
+    public long getBalanceMinor() {
+        long balance = 0;
+        for (BankShard shard : shards) balance += shard.getTotals().getBalanceMinor();
+        return balance;
+    }
+
+    public long getTransactionCount(TransactionType type) {
+        long count = 0;
+        for (BankShard shard : shards) count += shard.getTotals().getTransactionCount(type);
+        return count;
     }
 
     // Getters
     public String getBankName() { return bankName; }
-    public Map<String, Customer> getCustomers() { return customers; }
-    public Map<String, Account> getAccounts() { return accounts; }
-}
\ No newline at end of file
+    public PinVerifier getPinVerifier() { return pinVerifier; }
+    public int getShardCount() { return shards.length; }
+}
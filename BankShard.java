@@ -0,0 +1,291 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * One partition of the bank: the accounts whose numbers hash to it and everything they write to
+ * Demonstrates: Partitioning, Shard-local recovery, Single-threaded shard executors
+ *
+ * A shard has its own account and customer indexes, running totals, journal (with its own buffer
+ * lock, checkpoint gate and flusher thread) and snapshot file, so operations on accounts in
+ * different shards never meet on a lock or a file. Whole-shard work - recovery, snapshot
+ * writing, audit scans - runs on the shard's single executor thread, so shards do it in
+ * parallel. Customers live on the shard their id hashes to; their accounts may live elsewhere.
+ * Accounts are indexed by their number as a long; customers by a 64-bit hash of their id.
+ *
+ * A transfer between shards is journaled in both, and each shard replays only its own leg.
+ * Replay remembers such records so Bank can complete one that a crash left durable in just
+ * one of the two journals.
+ */
+public class BankShard {
+
+    /**
+     * A cross-shard transfer record found while replaying this shard's journal
+     */
+    static final class CrossShardTransfer {
+        final String fromAccountNumber;
+        final String toAccountNumber;
+        final long amountMinor;
+        final long timestamp;
+
+        CrossShardTransfer(String fromAccountNumber, String toAccountNumber, long amountMinor, long timestamp) {
+            this.fromAccountNumber = fromAccountNumber;
+            this.toAccountNumber = toAccountNumber;
+            this.amountMinor = amountMinor;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private final int index;
+    private final ShardRouter router;
+    private final LongHashIndex<Account> accounts = new LongHashIndex<>();
+    // Customers whose id routes here; hashes can collide, so entries are confirmed by id
+    private final LongHashIndex<Customer> customers =
+        new LongHashIndex<>((customer, id) -> customer.getCustomerId().equals(id));
+    private final BankTotals totals = new BankTotals();
+    private final ExecutorService executor;
+    private Path journalPath;
+    private Path snapshotPath;
+    private TransactionJournal journal;
+
+    // Recovery only: customers as this shard's snapshot and journal describe them (with just this
+    // shard's accounts), and cross-shard transfers by transaction id; Bank merges and clears both
+    private final Map<String, Customer> restoredCustomers = new HashMap<>();
+    private final Map<Long, CrossShardTransfer> crossShardTransfers = new HashMap<>();
+    // Largest transaction id in the snapshot or the replayed journal, so new ids start after it
+    private long lastTransactionId;
+
+    BankShard(int index, ShardRouter router) {
+        this.index = index;
+        this.router = router;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "atm-shard-" + index);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    <T> Future<T> submit(Callable<T> task) {
+        return executor.submit(task);
+    }
+
+    boolean owns(String key) {
+        return router.shardFor(key) == index;
+    }
+
+    // Accounts and customers
+
+    Account findAccount(String accountNumber) {
+        long number = Account.parseAccountNumber(accountNumber);
+        return number == Digits.INVALID ? null : accounts.get(number);
+    }
+
+    void addAccount(Account account) {
+        long number = Account.parseAccountNumber(account.getAccountNumber());
+        if (number == Digits.INVALID) {
+            throw new IllegalArgumentException("Account numbers must be " + Account.ACCOUNT_NUMBER_DIGITS
+                + " digits: " + account.getAccountNumber());
+        }
+        accounts.put(number, account);
+    }
+
+    Customer findCustomer(String customerId) {
+        return customers.get(customerKey(customerId), customerId);
+    }
+
+    void addCustomer(Customer customer) {
+        customers.put(customerKey(customer.getCustomerId()), customer.getCustomerId(), customer);
+    }
+
+    /**
+     * Adds the customer unless one with the same id is already here
+     * @return the customer already registered, or null if this one was added
+     */
+    Customer addCustomerIfAbsent(Customer customer) {
+        return customers.putIfAbsent(customerKey(customer.getCustomerId()), customer.getCustomerId(), customer);
+    }
+
+    void forEachAccount(Consumer<Account> action) {
+        accounts.forEach(action);
+    }
+
+    void forEachCustomer(Consumer<Customer> action) {
+        customers.forEach(action);
+    }
+
+    int getAccountCount() { return accounts.size(); }
+    int getCustomerCount() { return customers.size(); }
+
+    private static long customerKey(String customerId) {
+        long key = ShardRouter.hash(customerId);
+        return key == LongHashIndex.EMPTY ? 0 : key;
+    }
+
+    // Recovery (runs on the shard's executor)
+
+    void setFiles(Path journalPath, Path snapshotPath) {
+        this.journalPath = journalPath;
+        this.snapshotPath = snapshotPath;
+    }
+
+    AccountSnapshot.Checkpoint loadSnapshot() throws IOException {
+        AccountSnapshot.Checkpoint checkpoint = AccountSnapshot.load(snapshotPath, restoredCustomers, accounts, totals);
+        lastTransactionId = checkpoint.getLastTransactionId();
+        return checkpoint;
+    }
+
+    // Forgets a snapshot that was only partly loaded, or that doesn't match the other shards'
+    void clearRestored() {
+        accounts.clear();
+        restoredCustomers.clear();
+        totals.clear();
+        lastTransactionId = 0;
+    }
+
+    /**
+     * Replays the journal after the checkpoint and opens it for appending
+     *
+     * Records between the window offset and the checkpoint are already in the snapshot's balances;
+     * they are read again only to refill the daily limits and fraud windows.
+     */
+    void openJournal(long afterSequence, long journalOffset, long windowOffset) throws IOException {
+        // Snapshot balances are counted once here; replayed records then update the totals as they apply
+        accounts.forEach(account -> account.attachTotals(totals));
+        if (windowOffset < journalOffset && Files.exists(journalPath)) {
+            refillWindows(windowOffset, journalOffset);
+        }
+        journal = TransactionJournal.open(journalPath, new Replayer(), afterSequence, journalOffset, windowOffset);
+        accounts.forEach(account -> account.attachJournal(journal));
+    }
+
+    private void refillWindows(long fromOffset, long toOffset) throws IOException {
+        TransactionJournal.RowAdapter windows = new TransactionJournal.RowAdapter() {
+            @Override
+            void onRow(String accountNumber, long timestamp, long transactionId, TransactionType type,
+                       Transaction.Description description, long amountMinor) {
+                Account account = findAccount(accountNumber);
+                if (account != null) account.refillWindows(description, amountMinor, timestamp);
+            }
+        };
+        try (TransactionJournal.Reader reader = TransactionJournal.openReader(journalPath, fromOffset, toOffset)) {
+            while (reader.next(windows)) {
+                // counted in onRow
+            }
+        }
+    }
+
+    Map<String, Customer> getRestoredCustomers() { return restoredCustomers; }
+    Map<Long, CrossShardTransfer> getCrossShardTransfers() { return crossShardTransfers; }
+    long getLastTransactionId() { return lastTransactionId; }
+
+    // Checkpoint gate; a no-op when the bank runs without a journal
+
+    void beginMutation() {
+        if (journal != null) journal.beginMutation();
+    }
+
+    void endMutation() {
+        if (journal != null) journal.endMutation();
+    }
+
+    int getIndex() { return index; }
+    BankTotals getTotals() { return totals; }
+    TransactionJournal getJournal() { return journal; }
+    Path getSnapshotPath() { return snapshotPath; }
+
+    /**
+     * Rebuilds this shard's accounts from its journal
+     */
+    private class Replayer implements TransactionJournal.ReplayHandler {
+
+        // A record for an account the shard doesn't hold means the snapshot and journal don't belong together
+        private Account replayTarget(long sequence, String accountNumber) throws IOException {
+            Account account = findAccount(accountNumber);
+            if (account == null) {
+                throw new IOException("Shard " + index + " journal " + journalPath + " record " + sequence
+                    + " refers to account " + accountNumber + ", which the shard does not hold");
+            }
+            return account;
+        }
+
+        @Override
+        public void onOpenAccount(long sequence, long timestamp, String customerId, String firstName,
+                                  String lastName, String phoneNumber, String email, String accountNumber,
+                                  String accountHolderName, AccountType accountType, long initialBalanceMinor,
+                                  String pinCredential, long openingTransactionId) {
+            lastTransactionId = Math.max(lastTransactionId, openingTransactionId);
+            Customer customer = restoredCustomers.computeIfAbsent(customerId,
+                id -> new Customer(id, firstName, lastName, phoneNumber, email));
+            Account account = new Account(accountNumber, accountHolderName, accountType, initialBalanceMinor,
+                PinCredential.decode(pinCredential), timestamp, openingTransactionId);
+            customer.addAccount(account);
+            addAccount(account);
+            account.attachTotals(totals);
+        }
+
+        @Override
+        public void onDeposit(long sequence, long timestamp, String accountNumber, long amountMinor,
+                              long transactionId) throws IOException {
+            lastTransactionId = Math.max(lastTransactionId, transactionId);
+            replayTarget(sequence, accountNumber).replayDeposit(amountMinor, transactionId, timestamp);
+        }
+
+        @Override
+        public void onWithdrawal(long sequence, long timestamp, String accountNumber, long amountMinor,
+                                 long transactionId) throws IOException {
+            lastTransactionId = Math.max(lastTransactionId, transactionId);
+            replayTarget(sequence, accountNumber).replayWithdrawal(amountMinor, transactionId, timestamp);
+        }
+
+        @Override
+        public void onPinChange(long sequence, long timestamp, String accountNumber, String newPin,
+                                long transactionId) throws IOException {
+            lastTransactionId = Math.max(lastTransactionId, transactionId);
+            replayTarget(sequence, accountNumber).replayPinChange(PinCredential.decode(newPin), transactionId, timestamp);
+        }
+
+        @Override
+        public void onTransfer(long sequence, long timestamp, String fromAccountNumber, String toAccountNumber,
+                               long amountMinor, long transactionId) throws IOException {
+            lastTransactionId = Math.max(lastTransactionId, transactionId);
+            boolean ownsFrom = owns(fromAccountNumber);
+            boolean ownsTo = owns(toAccountNumber);
+            if (ownsFrom) {
+                replayTarget(sequence, fromAccountNumber).replayTransferOut(amountMinor, transactionId, timestamp);
+            }
+            if (ownsTo) {
+                replayTarget(sequence, toAccountNumber).replayTransferIn(amountMinor, transactionId, timestamp);
+            }
+            if (ownsFrom != ownsTo) {
+                crossShardTransfers.put(transactionId,
+                    new CrossShardTransfer(fromAccountNumber, toAccountNumber, amountMinor, timestamp));
+            }
+        }
+
+        @Override
+        public void onSettlementCredit(long sequence, long timestamp, String accountNumber, long amountMinor,
+                                       long transactionId) throws IOException {
+            lastTransactionId = Math.max(lastTransactionId, transactionId);
+            replayTarget(sequence, accountNumber).replaySettlementCredit(amountMinor, transactionId, timestamp);
+        }
+
+        @Override
+        public void onSettlementDebit(long sequence, long timestamp, String accountNumber, long amountMinor,
+                                      long transactionId) throws IOException {
+            lastTransactionId = Math.max(lastTransactionId, transactionId);
+            replayTarget(sequence, accountNumber).replaySettlementDebit(amountMinor, transactionId, timestamp);
+        }
+
+        @Override
+        public void onAccountLock(long sequence, long timestamp, String accountNumber, boolean locked) throws IOException {
+            replayTarget(sequence, accountNumber).setLocked(locked);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bank-wide aggregates maintained incrementally as balances change
+ * Demonstrates: Striped counters (LongAdder), O(1) reporting, Day rollover
+ *
+ * Every balance change reports itself here at the moment it is applied (inside the journal's
+ * mutation gate), so the totals cost O(1) to read and, while a checkpoint holds the gate, match
+ * a full scan exactly. "Today" is the local calendar day; the day counters restart at midnight.
+ */
+public class BankTotals {
+
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    private final ZoneId zone;
+    private final LongAdder balanceMinor = new LongAdder();
+    private final LongAdder depositsTodayMinor = new LongAdder();
+    private final LongAdder withdrawalsTodayMinor = new LongAdder();
+    private final Map<TransactionType, LongAdder> transactionCounts = new EnumMap<>(TransactionType.class);
+    private volatile long today;
+
+    public BankTotals() {
+        this(ZoneId.systemDefault());
+    }
+
+    BankTotals(ZoneId zone) {
+        this.zone = zone;
+        for (TransactionType type : TransactionType.values()) {
+            transactionCounts.put(type, new LongAdder());
+        }
+        this.today = dayOf(System.currentTimeMillis());
+    }
+
+    /**
+     * Counts the balance an account brings with it when it joins the bank
+     */
+    public void accountOpened(long openingBalanceMinor) {
+        balanceMinor.add(openingBalanceMinor);
+    }
+
+    /**
+     * Records one applied transaction; cash in and out also count towards today's totals
+     */
+    public void recorded(TransactionType type, long amountMinor, long epochMillis) {
+        transactionCounts.get(type).increment();
+        switch (type) {
+            case DEPOSIT:
+                balanceMinor.add(amountMinor);
+                if (isToday(epochMillis)) depositsTodayMinor.add(amountMinor);
+                break;
+            case WITHDRAWAL:
+                balanceMinor.add(-amountMinor);
+                if (isToday(epochMillis)) withdrawalsTodayMinor.add(amountMinor);
+                break;
+            case TRANSFER_IN:
+                balanceMinor.add(amountMinor);
+                break;
+            case TRANSFER_OUT:
+                balanceMinor.add(-amountMinor);
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Rolls the day counters over at midnight; older timestamps (replay) don't count as today
+    private boolean isToday(long epochMillis) {
+        long day = dayOf(epochMillis);
+        if (day > today) {
+            synchronized (this) {
+                if (day > today) {
+                    depositsTodayMinor.reset();
+                    withdrawalsTodayMinor.reset();
+                    today = day;
+                }
+            }
+        }
+        return day == today;
+    }
+
+    private long dayOf(long epochMillis) {
+        long offsetMillis = zone.getRules().getOffset(Instant.ofEpochMilli(epochMillis)).getTotalSeconds() * 1000L;
+        return Math.floorDiv(epochMillis + offsetMillis, DAY_MILLIS);
+    }
+
+    // Snapshot support: the day counters and transaction counts can't be rebuilt from balances
+
+    long getDay() { return today; }
+
+    void restore(long day, long depositsToday, long withdrawalsToday, long[] countsByOrdinal) {
+        if (day == dayOf(System.currentTimeMillis())) {
+            today = day;
+            depositsTodayMinor.add(depositsToday);
+            withdrawalsTodayMinor.add(withdrawalsToday);
+        }
+        TransactionType[] types = TransactionType.values();
+        for (int i = 0; i < types.length && i < countsByOrdinal.length; i++) {
+            transactionCounts.get(types[i]).add(countsByOrdinal[i]);
+        }
+    }
+
+    // Forgets a partly loaded snapshot
+    void clear() {
+        balanceMinor.reset();
+        depositsTodayMinor.reset();
+        withdrawalsTodayMinor.reset();
+        for (LongAdder count : transactionCounts.values()) {
+            count.reset();
+        }
+    }
+
+    public long getBalanceMinor() { return balanceMinor.sum(); }
+
+    public long getDepositsTodayMinor() {
+        isToday(System.currentTimeMillis());
+        return depositsTodayMinor.sum();
+    }
+
+    public long getWithdrawalsTodayMinor() {
+        isToday(System.currentTimeMillis());
+        return withdrawalsTodayMinor.sum();
+    }
+
+    public long getTransactionCount(TransactionType type) { return transactionCounts.get(type).sum(); }
+}
@@ -0,0 +1,522 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams end-of-day credit/debit files into the bank in parallel, account-keyed partitions
+ * Demonstrates: Pipelining, Bounded queues, Partitioned parallelism, Group commit
+ *
+ * Usage: java BatchSettlement <input.csv|input.bin> [results.csv] [--partitions N]
+ *
+ * CSV input:    account,type,amount[,anything else]  where type is CREDIT/DEBIT (or C/D)
+ * Binary input: 17-byte records [long account number][byte 'C' or 'D'][long amount in paise]
+ * Results:      line,account,type,amount,status,detail  (one row per input record)
+ *
+ * A reader thread parses and validates rows and routes each to the partition that owns its
+ * account, so every account is updated by exactly one worker, in file order. Workers apply
+ * each chunk's rows shard by shard, under one gate hold and a single fsync wait per shard. All
+ * queues are bounded, so memory stays flat however large the file is. Result rows carry
+ * their input line number and are written in completion order.
+ *
+ * If a journal can't confirm a chunk as durable, its rows have already moved balances, so they
+ * are reported NOT_DURABLE rather than undone, and the run stops: nothing more is read, rows
+ * still queued are reported SKIPPED, and the summary carries the reason.
+ */
+public class BatchSettlement {
+
+    /**
+     * Direction of a settlement row
+     */
+    enum Direction { CREDIT, DEBIT }
+
+    /**
+     * One input row travelling through the pipeline, later carrying its outcome
+     */
+    static final class Entry {
+        final long line;
+        final String accountNumber;
+        final Direction direction;
+        final long amountMinor;
+        String status;
+        String detail;
+        Transaction transaction;
+
+        Entry(long line, String accountNumber, Direction direction, long amountMinor) {
+            this.line = line;
+            this.accountNumber = accountNumber;
+            this.direction = direction;
+            this.amountMinor = amountMinor;
+        }
+
+        void reject(String reason) {
+            status = "REJECTED";
+            detail = reason;
+        }
+    }
+
+    /**
+     * Totals for one settlement run
+     */
+    public static class Summary {
+        private final long rows;
+        private final long applied;
+        private final long rejected;
+        private final long notDurable;
+        private final long skipped;
+        private final String stopReason;
+        private final long elapsedNanos;
+
+        Summary(long rows, long applied, long rejected, long notDurable, long skipped, String stopReason,
+                long elapsedNanos) {
+            this.rows = rows;
+            this.applied = applied;
+            this.rejected = rejected;
+            this.notDurable = notDurable;
+            this.skipped = skipped;
+            this.stopReason = stopReason;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getRows() { return rows; }
+        // Includes the not-durable rows, whose balances moved too
+        public long getApplied() { return applied; }
+        public long getRejected() { return rejected; }
+        public long getNotDurable() { return notDurable; }
+        public long getSkipped() { return skipped; }
+        // Null unless the run stopped early
+        public String getStopReason() { return stopReason; }
+        public boolean isComplete() { return stopReason == null; }
+        public double getRowsPerSecond() { return rows * 1e9 / Math.max(1, elapsedNanos); }
+    }
+
+    // Marks the end of a queue; compared by identity
+    private static final Entry END = new Entry(-1, "", Direction.CREDIT, 0);
+    private static final int QUEUE_CAPACITY = 4096;
+    // Rows applied per journal gate hold and fsync wait
+    private static final int APPLY_CHUNK = 512;
+    private static final int BINARY_RECORD_SIZE = 8 + 1 + 8;
+
+    private final Bank bank;
+    private final int partitions;
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong notDurable = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    // Set once a journal fails to confirm a chunk; readers and workers stop taking new rows
+    private volatile String stopReason;
+
+    public BatchSettlement(Bank bank, int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("At least one partition is required");
+        }
+        this.bank = bank;
+        this.partitions = partitions;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Usage: java BatchSettlement <input.csv|input.bin> [results.csv] [--partitions N]");
+            return;
+        }
+
+        Path input = Paths.get(args[0]);
+        Path results = input.resolveSibling(input.getFileName() + ".results.csv");
+        int partitions = Runtime.getRuntime().availableProcessors();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--partitions") && i + 1 < args.length) {
+                partitions = Integer.parseInt(args[++i]);
+            } else {
+                results = Paths.get(args[i]);
+            }
+        }
+
+        Bank bank = Bank.getInstance("State Bank of Java");
+        System.out.println("📦 Settling " + input + " across " + partitions + " partitions...");
+        Summary summary = new BatchSettlement(bank, partitions).settle(input, results);
+
+        System.out.println(summary.isComplete() ? "✅ Settlement complete"
+            : "❌ Settlement stopped: " + summary.getStopReason());
+        System.out.println("   • Rows: " + summary.getRows() + " (" + summary.getApplied() + " applied, "
+            + summary.getRejected() + " rejected)");
+        if (!summary.isComplete()) {
+            System.out.println("   • Not durable: " + summary.getNotDurable() + " applied but unconfirmed, "
+                + summary.getSkipped() + " skipped; check the journal before rerunning");
+        }
+        System.out.println("   • Throughput: " + String.format("%,.0f", summary.getRowsPerSecond()) + " rows/s");
+        System.out.println("   • Results: " + results);
+        if (!summary.isComplete()) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Applies every row of the input file and writes one result row per input row
+     */
+    public Summary settle(Path input, Path results) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        applied.set(0);
+        rejected.set(0);
+        notDurable.set(0);
+        skipped.set(0);
+        stopReason = null;
+
+        List<BlockingQueue<Entry>> queues = new ArrayList<>(partitions);
+        BlockingQueue<Entry> resultQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        List<Thread> workers = new ArrayList<>(partitions);
+        for (int p = 0; p < partitions; p++) {
+            BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            queues.add(queue);
+            workers.add(startThread("settlement-partition-" + p, () -> applyPartition(queue, resultQueue)));
+        }
+
+        IOException[] writeFailure = new IOException[1];
+        Thread writer = startThread("settlement-results", () -> {
+            try {
+                writeResults(results, resultQueue);
+            } catch (IOException e) {
+                writeFailure[0] = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        long rows;
+        try {
+            rows = input.getFileName().toString().endsWith(".bin")
+                ? readBinary(input, queues, resultQueue)
+                : readCsv(input, queues, resultQueue);
+        } finally {
+            for (BlockingQueue<Entry> queue : queues) {
+                queue.put(END);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            resultQueue.put(END);
+            writer.join();
+        }
+
+        if (writeFailure[0] != null) {
+            throw writeFailure[0];
+        }
+        return new Summary(rows, applied.get(), rejected.get(), notDurable.get(), skipped.get(), stopReason,
+            System.nanoTime() - start);
+    }
+
+    // Reading and validation
+
+    private long readCsv(Path input, List<BlockingQueue<Entry>> queues,
+                         BlockingQueue<Entry> resultQueue) throws IOException, InterruptedException {
+        long rows = 0;
+        long lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String line;
+            while (stopReason == null && (line = reader.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")
+                        || (lineNumber == 1 && trimmed.toLowerCase().startsWith("account"))) {
+                    continue;
+                }
+
+                rows++;
+                String[] fields = trimmed.split(",", 4);
+                if (fields.length < 3) {
+                    Entry entry = new Entry(lineNumber, fields[0].trim(), null, 0);
+                    entry.reject("expected account,type,amount");
+                    route(entry, queues, resultQueue);
+                    continue;
+                }
+
+                String accountNumber = fields[0].trim();
+                Direction direction = parseDirection(fields[1].trim());
+                long amountMinor = parseAmountMinor(fields[2].trim());
+                Entry entry = new Entry(lineNumber, accountNumber, direction, amountMinor);
+                validate(entry);
+                route(entry, queues, resultQueue);
+            }
+        }
+        return rows;
+    }
+
+    private long readBinary(Path input, List<BlockingQueue<Entry>> queues,
+                            BlockingQueue<Entry> resultQueue) throws IOException, InterruptedException {
+        long rows = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(input)))) {
+            while (stopReason == null) {
+                long account;
+                byte type;
+                long amountMinor;
+                try {
+                    account = in.readLong();
+                    type = in.readByte();
+                    amountMinor = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                rows++;
+                Direction direction = type == 'C' ? Direction.CREDIT : type == 'D' ? Direction.DEBIT : null;
+                String accountNumber = account >= 0 && account <= 9_999_999_999L
+                    ? Account.formatAccountNumber(account) : Long.toString(account);
+                Entry entry = new Entry(rows, accountNumber, direction, amountMinor);
+                validate(entry);
+                route(entry, queues, resultQueue);
+            }
+        }
+
+        if (Files.size(input) % BINARY_RECORD_SIZE != 0) {
+            System.out.println("⚠️ Ignored a partial record at the end of " + input);
+        }
+        return rows;
+    }
+
+    private static void validate(Entry entry) {
+        if (Account.parseAccountNumber(entry.accountNumber) == Digits.INVALID) {
+            entry.reject("account number must be 10 digits");
+        } else if (entry.direction == null) {
+            entry.reject("type must be CREDIT or DEBIT");
+        } else if (entry.amountMinor <= 0) {
+            entry.reject("amount must be positive with at most 2 decimals");
+        }
+    }
+
+    // Rejected rows skip the partitions and go straight to the result file
+    private void route(Entry entry, List<BlockingQueue<Entry>> queues,
+                       BlockingQueue<Entry> resultQueue) throws InterruptedException {
+        if (entry.status != null) {
+            rejected.incrementAndGet();
+            resultQueue.put(entry);
+        } else {
+            queues.get(Math.floorMod(entry.accountNumber.hashCode(), partitions)).put(entry);
+        }
+    }
+
+    private static Direction parseDirection(String type) {
+        switch (type.toUpperCase()) {
+            case "CREDIT": case "C": return Direction.CREDIT;
+            case "DEBIT": case "D": return Direction.DEBIT;
+            default: return null;
+        }
+    }
+
+    /**
+     * Parses "1234", "1234.5" or "1234.56" into paise without floating point; -1 if invalid
+     */
+    static long parseAmountMinor(String text) {
+        long rupees = 0;
+        int paise = 0;
+        int decimals = -1;
+        if (text.isEmpty()) return -1;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (c >= '0' && c <= '9') {
+                if (decimals < 0) {
+                    if (rupees > (Long.MAX_VALUE / 100 - 9) / 10) return -1;
+                    rupees = rupees * 10 + (c - '0');
+                } else if (++decimals <= 2) {
+                    paise = paise * 10 + (c - '0');
+                } else {
+                    return -1;
+                }
+            } else {
+                return -1;
+            }
+        }
+        if (decimals == 1) paise *= 10;
+        return rupees * 100 + paise;
+    }
+
+    // Applying
+
+    private void applyPartition(BlockingQueue<Entry> queue, BlockingQueue<Entry> resultQueue) {
+        List<Entry> chunk = new ArrayList<>(APPLY_CHUNK);
+        boolean finished = false;
+        try {
+            while (!finished) {
+                chunk.add(queue.take());
+                queue.drainTo(chunk, APPLY_CHUNK - 1);
+                if (chunk.get(chunk.size() - 1) == END) {
+                    chunk.remove(chunk.size() - 1);
+                    finished = true;
+                }
+
+                applyChunk(chunk);
+                for (Entry entry : chunk) {
+                    resultQueue.put(entry);
+                }
+                chunk.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void applyChunk(List<Entry> chunk) {
+        // Each shard's rows go under that shard's gate and share one fsync of its journal
+        List<List<Entry>> byShard = new ArrayList<>();
+        for (int i = 0; i < bank.getShardCount(); i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (Entry entry : chunk) {
+            byShard.get(bank.shardFor(entry.accountNumber).getIndex()).add(entry);
+        }
+        for (List<Entry> rows : byShard) {
+            if (stopReason != null) {
+                skip(rows);
+            } else if (!rows.isEmpty()) {
+                applyOnShard(rows, bank.shardFor(rows.get(0).accountNumber).getJournal());
+            }
+        }
+
+        // As with ATM operations, statements only show entries once they are durable; an unconfirmed
+        // entry is listed anyway, because its balance already moved
+        for (Entry entry : chunk) {
+            if (entry.transaction != null) {
+                bank.findAccount(entry.accountNumber).recordTransaction(entry.transaction);
+                applied.incrementAndGet();
+                if (entry.status.equals("NOT_DURABLE")) notDurable.incrementAndGet();
+            } else if (!entry.status.equals("SKIPPED")) {
+                rejected.incrementAndGet();
+            }
+        }
+    }
+
+    private void skip(List<Entry> rows) {
+        for (Entry entry : rows) {
+            entry.status = "SKIPPED";
+            entry.detail = "settlement stopped";
+            skipped.incrementAndGet();
+        }
+    }
+
+    private void applyOnShard(List<Entry> chunk, TransactionJournal journal) {
+        long lastSequence = 0;
+        if (journal != null) journal.beginMutation();
+        try {
+            for (Entry entry : chunk) {
+                try {
+                    lastSequence = Math.max(lastSequence, apply(entry, journal));
+                } catch (RuntimeException e) {
+                    entry.status = "FAILED";
+                    entry.detail = e.getMessage();
+                }
+            }
+        } finally {
+            if (journal != null) journal.endMutation();
+        }
+
+        if (lastSequence > 0) {
+            try {
+                journal.awaitDurable(lastSequence);
+            } catch (RuntimeException e) {
+                // The balances and totals already moved, so say so and stop rather than call them failed
+                for (Entry entry : chunk) {
+                    if (entry.transaction != null) {
+                        entry.status = "NOT_DURABLE";
+                        entry.detail = "applied but not confirmed durable: " + e.getMessage();
+                    }
+                }
+                stopReason = "journal sync failed: " + e.getMessage();
+            }
+        }
+    }
+
+    /**
+     * Applies one validated row and returns its journal sequence (0 if refused or unjournaled)
+     */
+    private long apply(Entry entry, TransactionJournal journal) {
+        Account account = bank.findAccount(entry.accountNumber);
+        if (account == null) {
+            entry.reject("unknown account");
+            return 0;
+        }
+
+        long amountMinor = entry.amountMinor;
+        long sequence = 0;
+        long balance;
+        Transaction transaction;
+        if (entry.direction == Direction.CREDIT) {
+            transaction = new Transaction(TransactionType.DEPOSIT, amountMinor,
+                Transaction.Description.SETTLEMENT_CREDIT);
+            if (journal != null) {
+                sequence = journal.appendSettlementCredit(entry.accountNumber, amountMinor, transaction.getId());
+            }
+            balance = account.creditFunds(amountMinor);
+        } else {
+            balance = account.debitFunds(amountMinor);
+            if (balance < 0) {
+                entry.reject("insufficient funds");
+                return 0;
+            }
+            transaction = new Transaction(TransactionType.WITHDRAWAL, amountMinor,
+                Transaction.Description.SETTLEMENT_DEBIT);
+            if (journal != null) {
+                try {
+                    sequence = journal.appendSettlementDebit(entry.accountNumber, amountMinor, transaction.getId());
+                } catch (RuntimeException e) {
+                    account.creditFunds(amountMinor);
+                    throw e;
+                }
+            }
+        }
+
+        account.countInTotals(transaction.getType(), amountMinor, System.currentTimeMillis());
+        entry.status = "APPLIED";
+        entry.detail = "balance " + String.format("%.2f", Account.fromMinorUnits(balance));
+        entry.transaction = transaction;
+        return sequence;
+    }
+
+    // Results
+
+    private static void writeResults(Path results, BlockingQueue<Entry> resultQueue)
+            throws IOException, InterruptedException {
+        try (BufferedWriter writer = Files.newBufferedWriter(results, StandardCharsets.UTF_8)) {
+            writer.write("line,account,type,amount,status,detail");
+            writer.newLine();
+            Entry entry;
+            while ((entry = resultQueue.take()) != END) {
+                writer.write(Long.toString(entry.line));
+                writer.write(',');
+                writer.write(entry.accountNumber);
+                writer.write(',');
+                writer.write(entry.direction == null ? "" : entry.direction.name());
+                writer.write(',');
+                writer.write(entry.amountMinor > 0 ? String.format("%.2f", Account.fromMinorUnits(entry.amountMinor)) : "");
+                writer.write(',');
+                writer.write(entry.status);
+                writer.write(',');
+                writer.write(entry.detail == null ? "" : entry.detail.replace(',', ';'));
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            // Keep draining so the workers never block on a full result queue
+            while (resultQueue.take() != END) {
+                // discard
+            }
+            throw e;
+        }
+    }
+
+    private static Thread startThread(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
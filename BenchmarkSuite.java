@@ -0,0 +1,161 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput benchmarks for the bank and account hot paths
+ * Demonstrates: Performance regression tracking, Contended vs uncontended measurement
+ *
+ * Usage: java BenchmarkSuite [--accounts N] [--threads N] [--warmup S] [--measure S] [--json FILE]
+ *
+ * Runs against an in-memory Bank (no journal) populated with N synthetic accounts.
+ * Progress goes to stderr; results are written as JSON (default bench-results.json).
+ */
+public class BenchmarkSuite {
+
+    private static final long FIRST_ACCOUNT_NUMBER = 9_000_000_000L;
+    private static final String BENCH_PIN = "4321";
+
+    public static void main(String[] args) throws IOException {
+        int accountCount = 100_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        double warmup = 1;
+        double measure = 3;
+        String jsonPath = "bench-results.json";
+
+        for (int i = 0; i < args.length - 1; i += 2) {
+            switch (args[i]) {
+                case "--accounts": accountCount = Integer.parseInt(args[i + 1]); break;
+                case "--threads": threads = Integer.parseInt(args[i + 1]); break;
+                case "--warmup": warmup = Double.parseDouble(args[i + 1]); break;
+                case "--measure": measure = Double.parseDouble(args[i + 1]); break;
+                case "--json": jsonPath = args[i + 1]; break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        if (System.getProperty("atm.journal") == null) {
+            System.setProperty("atm.journal", "none");
+        }
+        // Deposit/withdraw loops would hit the daily cash limits within milliseconds
+        if (System.getProperty("atm.limits.window") == null) {
+            System.setProperty("atm.limits.window", "none");
+        }
+        // ...and the fraud screen's velocity rule; the screen is measured on its own below
+        if (System.getProperty("atm.fraud") == null) {
+            System.setProperty("atm.fraud", "none");
+        }
+
+        // Domain methods still print receipts; keep them out of the measurements
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        PrintStream discard = System.out;
+
+        Bank bank = Bank.getInstance("Benchmark Bank");
+        String[] accountNumbers = populate(bank, accountCount);
+        Account[] perThread = new Account[threads];
+        for (int t = 0; t < threads; t++) {
+            perThread[t] = bank.findAccount(accountNumbers[t % accountNumbers.length]);
+        }
+        Account hot = bank.findAccount(accountNumbers[0]);
+
+        System.err.println("⏱️ ATM benchmark suite: " + accountCount + " accounts, up to " + threads + " threads");
+        MicroBenchmark bench = new MicroBenchmark(warmup, measure);
+
+        // Lookups and authentication
+        bench.run("Bank.findAccount", 1,
+            t -> bank.findAccount(randomAccount(accountNumbers)).getBalanceMinor());
+        bench.run("Bank.findAccount", threads,
+            t -> bank.findAccount(randomAccount(accountNumbers)).getBalanceMinor());
+        bench.run("Account number check regex baseline", 1,
+            t -> randomAccount(accountNumbers).matches("\\d{10}") ? 1 : 0);
+        bench.run("Account number check Digits.parse", 1,
+            t -> Account.parseAccountNumber(randomAccount(accountNumbers)));
+        bench.run("Bank.validateAccountAndPin", threads,
+            t -> bank.validateAccountAndPin(randomAccount(accountNumbers), BENCH_PIN) ? 1 : 0);
+
+        // Balance updates: each thread on its own account, then everyone on one hot account
+        bench.run("Account.deposit+withdraw uncontended", 1,
+            t -> depositThenWithdraw(perThread[t]));
+        bench.run("Account.deposit+withdraw uncontended", threads,
+            t -> depositThenWithdraw(perThread[t]));
+        bench.run("Account.deposit+withdraw contended", threads,
+            t -> depositThenWithdraw(hot));
+
+        // Pre-authorization rules alone: spread over all accounts, then every thread on one account's profile
+        FraudScreen screen = FraudScreen.standard();
+        bench.run("FraudScreen.authorize", threads,
+            t -> screen.authorize(randomAccount(accountNumbers), 50_000) != FraudScreen.DECLINED ? 1 : 0);
+        bench.run("FraudScreen.authorize one account", threads,
+            t -> screen.authorize(accountNumbers[0], 50_000) != FraudScreen.DECLINED ? 1 : 0);
+
+        // Transfers where a few merchant/payroll accounts receive most of the traffic
+        String[] hotAccounts = { accountNumbers[0], accountNumbers[1], accountNumbers[2], accountNumbers[3] };
+        bench.run("Bank.transfer to hot accounts", threads,
+            t -> bank.transfer(randomAccount(accountNumbers), randomAccount(hotAccounts), 1).isSuccess() ? 1 : 0);
+        bench.run("Bank.transferBatch x1000 to hot accounts", threads, t -> {
+            List<Bank.Transfer> batch = new ArrayList<>(1000);
+            for (int i = 0; i < 1000; i++) {
+                batch.add(new Bank.Transfer(randomAccount(accountNumbers), randomAccount(hotAccounts), 1));
+            }
+            return bank.transferBatch(batch).length;
+        });
+
+        // Record construction and rendering
+        bench.run("Transaction construction", 1,
+            t -> new Transaction(TransactionType.DEPOSIT, 10_000, Transaction.Description.ATM_DEPOSIT).getId());
+        bench.run("Account.printMiniStatement", 1, t -> {
+            perThread[t].printMiniStatement(discard);
+            return 1;
+        });
+        bench.run("Bank.printBankStats", 1, t -> {
+            bank.printBankStats();
+            return 1;
+        });
+
+        // Transaction id generation against a plain shared counter
+        AtomicLong counter = new AtomicLong();
+        TransactionIdGenerator baseline = counter::incrementAndGet;
+        TransactionIdGenerator snowflake = new SnowflakeIdGenerator(1);
+        bench.run("IdGenerator AtomicLong baseline", threads, t -> baseline.nextId());
+        bench.run("IdGenerator Snowflake", threads, t -> snowflake.nextId());
+
+        bench.writeJson(Paths.get(jsonPath), "atm-core");
+        System.setOut(console);
+        System.err.println("📄 Results written to " + jsonPath);
+    }
+
+    /**
+     * Creates one customer per account with a recognisable benchmark PIN and balance
+     */
+    private static String[] populate(Bank bank, int accountCount) {
+        String[] accountNumbers = new String[accountCount];
+        // Hashing a PIN takes milliseconds, so every synthetic account shares one credential
+        PinCredential credential = PinCredential.create(BENCH_PIN);
+        for (int i = 0; i < accountCount; i++) {
+            String accountNumber = Long.toString(FIRST_ACCOUNT_NUMBER + i);
+            Customer customer = new Customer(String.format("BENCH%07d", i), "Bench", "User" + i,
+                "9000000000", "bench" + i + "@example.com");
+            customer.addAccount(new Account(accountNumber, "Bench User " + i, AccountType.SAVINGS,
+                Account.toMinorUnits(1_000_000.0), credential, System.currentTimeMillis(), Transaction.nextId()));
+            bank.addCustomer(customer);
+            accountNumbers[i] = accountNumber;
+        }
+        return accountNumbers;
+    }
+
+    private static String randomAccount(String[] accountNumbers) {
+        return accountNumbers[ThreadLocalRandom.current().nextInt(accountNumbers.length)];
+    }
+
+    private static long depositThenWithdraw(Account account) {
+        account.deposit(100);
+        account.withdraw(100);
+        return account.getBalanceMinor();
+    }
+}
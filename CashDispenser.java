@@ -0,0 +1,191 @@
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cash cassettes of an ATM and the note mix it pays out
+ * Demonstrates: Bounded search, Memoization, Reserve/release resource handling
+ *
+ * Notes leave the cassettes when they are reserved, before the account is debited, and are
+ * put back if the debit is refused. So a customer is told "cannot dispense" without being
+ * charged, and terminals sharing the cassettes are never promised the same notes. A payout is
+ * the fewest notes the cassettes can make, at most MAX_NOTES (the presenter's capacity). The
+ * full-cassette mix for each amount is memoized, so fast-cash presets are normally reserved
+ * without any search.
+ *
+ * Settings: -Datm.cassettes=2000:100,500:400,200:300,100:500 (denomination:notes)
+ */
+public class CashDispenser {
+
+    // Rupee denominations, largest first; index i of every count array refers to DENOMINATIONS[i]
+    static final int[] DENOMINATIONS = { 2000, 500, 200, 100 };
+    static final int MAX_NOTES = 40;
+    private static final String DEFAULT_CASSETTES = "2000:100,500:400,200:300,100:500";
+    private static final long MINOR_PER_HUNDRED = 100_00L;
+
+    /**
+     * Notes taken out of the cassettes for one withdrawal
+     */
+    public static final class Reservation {
+        private final long amountMinor;
+        private final int[] notes;
+
+        private Reservation(long amountMinor, int[] notes) {
+            this.amountMinor = amountMinor;
+            this.notes = notes;
+        }
+
+        public long getAmountMinor() { return amountMinor; }
+        public int getNotes(int denomination) { return notes[indexOf(denomination)]; }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < DENOMINATIONS.length; i++) {
+                if (notes[i] == 0) continue;
+                if (text.length() > 0) text.append(", ");
+                text.append(notes[i]).append(" × ₹").append(DENOMINATIONS[i]);
+            }
+            return text.toString();
+        }
+    }
+
+    // Guarded by this
+    private final int[] available;
+    // Fewest-notes mix per amount (in hundreds) with full cassettes, or NO_MIX if none exists
+    private final ConcurrentMap<Integer, int[]> bestMixes = new ConcurrentHashMap<>();
+    private static final int[] NO_MIX = new int[0];
+
+    public CashDispenser(int[] notesPerDenomination) {
+        if (notesPerDenomination.length != DENOMINATIONS.length) {
+            throw new IllegalArgumentException("Expected " + DENOMINATIONS.length + " cassette counts");
+        }
+        this.available = notesPerDenomination.clone();
+    }
+
+    public static CashDispenser fromSystemProperties() {
+        int[] notes = new int[DENOMINATIONS.length];
+        for (String cassette : System.getProperty("atm.cassettes", DEFAULT_CASSETTES).split(",")) {
+            String[] parts = cassette.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Cassettes look like denomination:notes: " + cassette);
+            }
+            notes[indexOf(Integer.parseInt(parts[0].trim()))] += Integer.parseInt(parts[1].trim());
+        }
+        return new CashDispenser(notes);
+    }
+
+    /**
+     * Works out the fast-cash mixes up front so the common withdrawals never search
+     */
+    public void precompute(double... amounts) {
+        for (double amount : amounts) {
+            long amountMinor = Account.toMinorUnits(amount);
+            if (amountMinor > 0 && amountMinor % MINOR_PER_HUNDRED == 0) {
+                bestMix((int) (amountMinor / MINOR_PER_HUNDRED));
+            }
+        }
+    }
+
+    /**
+     * Sets aside notes for the amount
+     * @return the reserved notes, or null if these cassettes can't pay the amount out
+     */
+    public Reservation reserve(long amountMinor) {
+        if (amountMinor <= 0 || amountMinor % MINOR_PER_HUNDRED != 0
+                || amountMinor / MINOR_PER_HUNDRED > (long) MAX_NOTES * DENOMINATIONS[0] / 100) {
+            return null;
+        }
+        int hundreds = (int) (amountMinor / MINOR_PER_HUNDRED);
+        int[] best = bestMix(hundreds);
+        if (best == NO_MIX) return null;
+
+        synchronized (this) {
+            // Usually the cassettes still hold the ideal mix; otherwise search within what's left
+            int[] notes = fits(best) ? best : search(hundreds, available);
+            if (notes == null) return null;
+            for (int i = 0; i < notes.length; i++) {
+                available[i] -= notes[i];
+            }
+            return new Reservation(amountMinor, notes.clone());
+        }
+    }
+
+    /**
+     * Puts reserved notes back, e.g. when the account debit was refused
+     */
+    public synchronized void release(Reservation reservation) {
+        for (int i = 0; i < available.length; i++) {
+            available[i] += reservation.notes[i];
+        }
+    }
+
+    private boolean fits(int[] notes) {
+        for (int i = 0; i < notes.length; i++) {
+            if (notes[i] > available[i]) return false;
+        }
+        return true;
+    }
+
+    private int[] bestMix(int hundreds) {
+        int[] best = bestMixes.get(hundreds);
+        if (best == null) {
+            int[] unlimited = new int[DENOMINATIONS.length];
+            Arrays.fill(unlimited, MAX_NOTES);
+            best = search(hundreds, unlimited);
+            bestMixes.putIfAbsent(hundreds, best == null ? NO_MIX : best);
+        }
+        return best == null ? NO_MIX : best;
+    }
+
+    /**
+     * Fewest notes (at most MAX_NOTES) that make the amount from the given cassette counts
+     *
+     * Tries every count of ₹2000 and ₹500 notes; for what remains, as many ₹200 as fit and
+     * then ₹100 is always best. The note cap bounds the search at about MAX_NOTES² steps.
+     */
+    static int[] search(int hundreds, int[] cassettes) {
+        int[] best = null;
+        int bestCount = MAX_NOTES + 1;
+        for (int big = Math.min(cassettes[0], hundreds / 20); big >= 0; big--) {
+            if (big >= bestCount) continue;
+            int afterBig = hundreds - big * 20;
+            for (int mid = Math.min(cassettes[1], afterBig / 5); mid >= 0; mid--) {
+                int afterMid = afterBig - mid * 5;
+                int small = Math.min(cassettes[2], afterMid / 2);
+                int single = afterMid - small * 2;
+                int count = big + mid + small + single;
+                if (single <= cassettes[3] && count < bestCount) {
+                    best = new int[] { big, mid, small, single };
+                    bestCount = count;
+                }
+            }
+        }
+        return best;
+    }
+
+    private static int indexOf(int denomination) {
+        for (int i = 0; i < DENOMINATIONS.length; i++) {
+            if (DENOMINATIONS[i] == denomination) return i;
+        }
+        throw new IllegalArgumentException("Unsupported denomination ₹" + denomination);
+    }
+
+    /**
+     * Prints how many notes are left in each cassette
+     */
+    public synchronized void printStatus(PrintStream out) {
+        long totalMinor = 0;
+        StringBuilder levels = new StringBuilder();
+        for (int i = 0; i < DENOMINATIONS.length; i++) {
+            if (i > 0) levels.append(", ");
+            levels.append("₹").append(DENOMINATIONS[i]).append(" × ").append(available[i]);
+            totalMinor += (long) available[i] * DENOMINATIONS[i] * 100;
+        }
+        out.println("🏧 Cash in cassettes: ₹" + String.format("%.2f", Account.fromMinorUnits(totalMinor))
+            + " (" + levels + ")");
+    }
+
+    public synchronized int getAvailable(int denomination) { return available[indexOf(denomination)]; }
+}
@@ -0,0 +1,142 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Multi-threaded conservation-of-money stress check
+ * Demonstrates: Invariant checking under contention, Concurrent stress testing
+ *
+ * Usage: java ConservationCheck [--accounts N] [--threads N] [--ops N] [--balance RUPEES]
+ *
+ * Threads hammer a few accounts with a random mix of deposits, withdrawals and transfers while
+ * a watcher keeps sampling balances. Only successful operations are counted. At the end the sum
+ * of the accounts' balances (and the bank's running total) must equal the starting money plus
+ * deposits minus withdrawals, since transfers only move money, and no balance may ever have been
+ * seen below zero. Exits with status 1 if either invariant is broken.
+ */
+public class ConservationCheck {
+
+    private static final long FIRST_ACCOUNT_NUMBER = 7_000_000_000L;
+
+    public static void main(String[] args) throws InterruptedException {
+        int accountCount = 4;
+        int threads = 16;
+        int opsPerThread = 200_000;
+        double initialBalance = 10_000.0;
+
+        for (int i = 0; i < args.length - 1; i += 2) {
+            switch (args[i]) {
+                case "--accounts": accountCount = Integer.parseInt(args[i + 1]); break;
+                case "--threads": threads = Integer.parseInt(args[i + 1]); break;
+                case "--ops": opsPerThread = Integer.parseInt(args[i + 1]); break;
+                case "--balance": initialBalance = Double.parseDouble(args[i + 1]); break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        // Only the balance invariants are under test; limits and fraud rules would refuse most operations
+        if (System.getProperty("atm.journal") == null) {
+            System.setProperty("atm.journal", "none");
+        }
+        if (System.getProperty("atm.limits.window") == null) {
+            System.setProperty("atm.limits.window", "none");
+        }
+        if (System.getProperty("atm.fraud") == null) {
+            System.setProperty("atm.fraud", "none");
+        }
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Bank bank = Bank.getInstance("Conservation Check Bank");
+        Account[] accounts = new Account[accountCount];
+        PinCredential credential = PinCredential.create("1357");
+        for (int i = 0; i < accountCount; i++) {
+            String accountNumber = Long.toString(FIRST_ACCOUNT_NUMBER + i);
+            Customer customer = new Customer(String.format("CHECK%07d", i), "Check", "User" + i,
+                "9000000000", "check" + i + "@example.com");
+            customer.addAccount(new Account(accountNumber, "Check User " + i, AccountType.SAVINGS,
+                Account.toMinorUnits(initialBalance), credential, System.currentTimeMillis(), Transaction.nextId()));
+            bank.addCustomer(customer);
+            accounts[i] = bank.findAccount(accountNumber);
+        }
+        System.setOut(console);
+
+        long initialMinor = sumOf(accounts);
+        long bankInitialMinor = bank.getBalanceMinor();
+        LongAdder depositedMinor = new LongAdder();
+        LongAdder withdrawnMinor = new LongAdder();
+        LongAdder operations = new LongAdder();
+        AtomicBoolean negativeSeen = new AtomicBoolean();
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        System.err.println(String.format("🧪 %d threads x %,d mixed operations on %d accounts", threads,
+            opsPerThread, accountCount));
+        Thread watcher = new Thread(() -> {
+            while (running.get()) {
+                for (Account account : accounts) {
+                    if (account.getBalanceMinor() < 0) negativeSeen.set(true);
+                }
+            }
+        }, "conservation-watcher");
+        watcher.start();
+
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int ops = opsPerThread;
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int n = 0; n < ops; n++) {
+                    Account account = accounts[random.nextInt(accounts.length)];
+                    int rupees = 100 * (1 + random.nextInt(50));
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            if (account.deposit(rupees).isSuccess()) depositedMinor.add(Account.toMinorUnits(rupees));
+                            break;
+                        case 1:
+                            if (account.withdraw(rupees).isSuccess()) withdrawnMinor.add(Account.toMinorUnits(rupees));
+                            break;
+                        default:
+                            Account other = accounts[random.nextInt(accounts.length)];
+                            bank.transfer(account.getAccountNumber(), other.getAccountNumber(), rupees);
+                            break;
+                    }
+                    if (account.getBalanceMinor() < 0) negativeSeen.set(true);
+                    operations.increment();
+                }
+                done.countDown();
+            }, "conservation-" + t).start();
+        }
+        done.await();
+        running.set(false);
+        watcher.join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long expectedMinor = initialMinor + depositedMinor.sum() - withdrawnMinor.sum();
+        long actualMinor = sumOf(accounts);
+        long bankExpectedMinor = bankInitialMinor + depositedMinor.sum() - withdrawnMinor.sum();
+        boolean conserved = actualMinor == expectedMinor && bank.getBalanceMinor() == bankExpectedMinor;
+
+        System.out.println(String.format("Operations: %,d in %.1fs (%,.0f/s)", operations.sum(), seconds,
+            operations.sum() / seconds));
+        System.out.println(String.format("Expected: ₹%.2f  Actual: ₹%.2f  Bank total: ₹%.2f (expected ₹%.2f)",
+            Account.fromMinorUnits(expectedMinor), Account.fromMinorUnits(actualMinor),
+            Account.fromMinorUnits(bank.getBalanceMinor()), Account.fromMinorUnits(bankExpectedMinor)));
+        System.out.println((conserved ? "✅" : "❌") + " Money conserved: " + conserved);
+        System.out.println((negativeSeen.get() ? "❌" : "✅") + " Negative balance seen: " + negativeSeen.get());
+        if (!conserved || negativeSeen.get()) {
+            System.exit(1);
+        }
+    }
+
+    private static long sumOf(Account[] accounts) {
+        long total = 0;
+        for (Account account : accounts) {
+            total += account.getBalanceMinor();
+        }
+        return total;
+    }
+}
@@ -1,9 +1,16 @@
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 /**
  * Represents a bank customer with multiple accounts
- * Demonstrates: Composition, Collections usage, Business logic
+ * Demonstrates: Composition, Collections usage, Business logic, Bidirectional indexes
+ *
+ * Accounts are indexed by number for O(1) lookup and also held as a list sorted by type and
+ * number, ready to display. Both are replaced copy-on-write under the customer's lock, so ATM
+ * sessions read them without locking. Adding an account also points it back at this customer
+ * and removes it from the customer that held it before.
  */
 public class Customer {
     private String customerId;
@@ -11,7 +18,14 @@ public class Customer {
     private String lastName;
     private String phoneNumber;
     private String email;
-    private List<Account> accounts;
+    private volatile List<Account> accounts;
+    // Replaced wholesale when an account leaves, since the index never removes entries
+    private volatile LongHashIndex<Account> accountsByNumber = new LongHashIndex<>();
+
+    // How a customer's accounts are listed: savings before current, then by account number
+    private static final Comparator<Account> LISTING_ORDER = Comparator
+        .comparing(Account::getAccountType)
+        .thenComparing(Account::getAccountNumber);
 
     public Customer(String customerId, String firstName, String lastName, String phoneNumber, String email) {
         this.customerId = customerId;
@@ -19,26 +33,84 @@ public class Customer {
         this.lastName = lastName;
         this.phoneNumber = phoneNumber;
         this.email = email;
-        this.accounts = new ArrayList<>();
+        this.accounts = Collections.emptyList();
     }
 
     /**
-     * Adds an account to the customer
+     * Adds an account to the customer, taking it over from any customer that held it before:
+     * the account leaves that customer's list and index before it joins this one
      */
     public void addAccount(Account account) {
-        accounts.add(account);
+        long number = Account.parseAccountNumber(account.getAccountNumber());
+        if (number == Digits.INVALID) {
+            throw new IllegalArgumentException("Account numbers must be " + Account.ACCOUNT_NUMBER_DIGITS
+                + " digits: " + account.getAccountNumber());
+        }
+
+        // Released before taking this customer's lock, so two customers never hold each other's
+        Customer previous = account.getCustomer();
+        if (previous != null && previous != this) {
+            previous.release(number, account);
+        }
+
+        synchronized (this) {
+            List<Account> updated = new ArrayList<>(accounts);
+            Account replaced = accountsByNumber.put(number, account);
+            if (replaced != null) {
+                updated.remove(replaced);
+            }
+            updated.add(account);
+            updated.sort(LISTING_ORDER);
+            accounts = Collections.unmodifiableList(updated);
+            account.setCustomer(this);
+        }
+    }
+
+    // Drops the account if this customer still holds that very instance under its number
+    private synchronized void release(long number, Account account) {
+        if (accountsByNumber.get(number) != account) return;
+        List<Account> updated = new ArrayList<>(accounts);
+        updated.remove(account);
+        LongHashIndex<Account> index = new LongHashIndex<>();
+        for (Account kept : updated) {
+            index.put(Account.parseAccountNumber(kept.getAccountNumber()), kept);
+        }
+        accountsByNumber = index;
+        accounts = Collections.unmodifiableList(updated);
     }
 
     /**
      * Finds account by account number
      */
     public Account findAccount(String accountNumber) {
+        long number = Account.parseAccountNumber(accountNumber);
+        return number == Digits.INVALID ? null : accountsByNumber.get(number);
+    }
+
+    /**
+     * Sum of the balances of all the customer's accounts, in paise
+     */
+    public long getTotalBalanceMinor() {
+        long total = 0;
         for (Account account : accounts) {
-            if (account.getAccountNumber().equals(accountNumber)) {
-                return account;
-            }
+            total += account.getBalanceMinor();
+        }
+        return total;
+    }
+
+    /**
+     * The same customer holding only some of its accounts, e.g. one shard's share for a snapshot;
+     * the accounts keep pointing at this customer
+     */
+    Customer withAccounts(List<Account> subset) {
+        Customer view = new Customer(customerId, firstName, lastName, phoneNumber, email);
+        List<Account> sorted = new ArrayList<>(subset);
+        sorted.sort(LISTING_ORDER);
+        for (Account account : sorted) {
+            view.accountsByNumber.put(Account.parseAccountNumber(account.getAccountNumber()), account);
         }
-        return null;
+        view.accounts = Collections.unmodifiableList(sorted);
+        return view;
     }
 
     /**
@@ -54,10 +126,19 @@ public class Customer {
     public String getLastName() { return lastName; }
     public String getPhoneNumber() { return phoneNumber; }
     public String getEmail() { return email; }
+    // Sorted by type, then number; a read-only copy that later additions don't change
     public List<Account> getAccounts() { return accounts; }
 
-    public void setPhoneNumber(String phoneNumber) { this.phoneNumber = phoneNumber; }
-    public void setEmail(String email) { this.email = email; }
+    // Checked against the snapshot's field widths, as Bank.addCustomer checks the rest
+    public void setPhoneNumber(String phoneNumber) {
+        AccountSnapshot.checkFits("Phone number", phoneNumber, AccountSnapshot.PHONE_WIDTH);
+        this.phoneNumber = phoneNumber;
+    }
+
+    public void setEmail(String email) {
+        AccountSnapshot.checkFits("Email", email, AccountSnapshot.EMAIL_WIDTH);
+        this.email = email;
+    }
 
     @Override
     public String toString() {
@@ -0,0 +1,248 @@
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-account daily cash limits tracked in small time-bucketed counters
+ * Demonstrates: Sliding windows, Ring buffers, Fine-grained locking, Idle-state reclamation
+ *
+ * Each account gets one counter per limit kind, created on first use. A counter is a ring of
+ * per-bucket totals plus a running sum, so checking and charging a limit is O(1): expired
+ * buckets are zeroed as the clock moves past them. The default window is a rolling 24 hours
+ * in hourly buckets; -Datm.limits.window=calendar resets at local midnight instead, and
+ * "none" disables the limits. Counters whose window has drained are swept out periodically,
+ * so idle accounts cost no memory.
+ */
+public class DailyLimits {
+
+    /**
+     * Kinds of cash movement that have their own daily limit
+     */
+    public enum Kind { WITHDRAWAL, DEPOSIT }
+
+    /**
+     * Returned by tryConsume when the amount would exceed the limit
+     */
+    public static final long REFUSED = -1;
+
+    private static final String WINDOW_PROPERTY = "atm.limits.window";
+    private static final long HOUR_MILLIS = 3_600_000L;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+    // Furthest back any window reaches; a restart replays this much journal to refill the counters
+    static final long MAX_WINDOW_MILLIS = DAY_MILLIS;
+
+    private final boolean enabled;
+    private final long bucketMillis;
+    private final int bucketCount;
+    // Shifts bucket boundaries, e.g. so calendar-day buckets start at local midnight
+    private final long alignMillis;
+    private final LongSupplier clock;
+    private final Map<Kind, ConcurrentHashMap<String, Counter>> counters = new EnumMap<>(Kind.class);
+    private final AtomicLong nextSweepBucket = new AtomicLong();
+
+    DailyLimits(boolean enabled, long bucketMillis, int bucketCount, long alignMillis, LongSupplier clock) {
+        this.enabled = enabled;
+        this.bucketMillis = bucketMillis;
+        this.bucketCount = bucketCount;
+        this.alignMillis = alignMillis;
+        this.clock = clock;
+        for (Kind kind : Kind.values()) {
+            counters.put(kind, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Limits over the last 24 hours, in hourly buckets
+     */
+    public static DailyLimits rolling24Hours() {
+        return new DailyLimits(true, HOUR_MILLIS, 24, 0, System::currentTimeMillis);
+    }
+
+    /**
+     * Limits that reset at midnight in the given zone (offset taken at creation time)
+     */
+    public static DailyLimits calendarDay(ZoneId zone) {
+        long offsetMillis = zone.getRules().getOffset(Instant.now()).getTotalSeconds() * 1000L;
+        return new DailyLimits(true, DAY_MILLIS, 1, offsetMillis, System::currentTimeMillis);
+    }
+
+    public static DailyLimits disabled() {
+        return new DailyLimits(false, DAY_MILLIS, 1, 0, System::currentTimeMillis);
+    }
+
+    /**
+     * Chooses the window from -Datm.limits.window=rolling|calendar|none (default rolling)
+     */
+    public static DailyLimits fromSystemProperties() {
+        String window = System.getProperty(WINDOW_PROPERTY, "rolling");
+        switch (window.toLowerCase()) {
+            case "rolling": return rolling24Hours();
+            case "calendar": return calendarDay(ZoneId.systemDefault());
+            case "none": return disabled();
+            default: throw new IllegalArgumentException("Unknown " + WINDOW_PROPERTY + ": " + window);
+        }
+    }
+
+    /**
+     * Charges the amount against the account's limit if it fits
+     * @return a bucket token to pass to release, or REFUSED if the limit would be exceeded
+     */
+    public long tryConsume(Kind kind, String accountNumber, long amountMinor, long limitMinor) {
+        if (!enabled) return 0;
+        if (limitMinor > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Daily limit too large for bucket counters: " + limitMinor);
+        }
+
+        long bucket = currentBucket();
+        sweepIfDue(bucket);
+        ConcurrentHashMap<String, Counter> byAccount = counters.get(kind);
+        while (true) {
+            Counter counter = byAccount.computeIfAbsent(accountNumber, key -> new Counter(bucketCount));
+            synchronized (counter) {
+                if (counter.retired) continue; // swept concurrently; use its replacement
+                counter.advance(bucket);
+                if (counter.total + amountMinor > limitMinor) {
+                    return REFUSED;
+                }
+                counter.add(bucket, amountMinor);
+                return bucket;
+            }
+        }
+    }
+
+    /**
+     * Gives back an amount charged by tryConsume when the operation did not go ahead
+     */
+    public void release(Kind kind, String accountNumber, long amountMinor, long bucketToken) {
+        if (!enabled) return;
+        Counter counter = counters.get(kind).get(accountNumber);
+        if (counter == null) return;
+        synchronized (counter) {
+            counter.remove(bucketToken, amountMinor);
+        }
+    }
+
+    /**
+     * Counts a past movement (journal replay, snapshot history) if it is still inside the window
+     */
+    public void recordHistorical(Kind kind, String accountNumber, long amountMinor, long timestampMillis) {
+        if (!enabled) return;
+        long bucket = bucketOf(timestampMillis);
+        if (bucket <= currentBucket() - bucketCount) return;
+
+        ConcurrentHashMap<String, Counter> byAccount = counters.get(kind);
+        while (true) {
+            Counter counter = byAccount.computeIfAbsent(accountNumber, key -> new Counter(bucketCount));
+            synchronized (counter) {
+                if (counter.retired) continue;
+                counter.advance(bucket);
+                counter.add(bucket, amountMinor);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Amount charged against the account's limit in the current window
+     */
+    public long used(Kind kind, String accountNumber) {
+        if (!enabled) return 0;
+        Counter counter = counters.get(kind).get(accountNumber);
+        if (counter == null) return 0;
+        synchronized (counter) {
+            counter.advance(currentBucket());
+            return counter.total;
+        }
+    }
+
+    public boolean isEnabled() { return enabled; }
+
+    /**
+     * Number of live counters across all kinds (idle accounts are swept out)
+     */
+    public int getTrackedCounters() {
+        int total = 0;
+        for (ConcurrentHashMap<String, Counter> byAccount : counters.values()) {
+            total += byAccount.size();
+        }
+        return total;
+    }
+
+    private long currentBucket() {
+        return bucketOf(clock.getAsLong());
+    }
+
+    private long bucketOf(long timestampMillis) {
+        return Math.floorDiv(timestampMillis + alignMillis, bucketMillis);
+    }
+
+    // At most one sweep per bucket, run by whichever caller first notices the new bucket
+    private void sweepIfDue(long bucket) {
+        long due = nextSweepBucket.get();
+        if (bucket < due || !nextSweepBucket.compareAndSet(due, bucket + 1)) return;
+
+        for (ConcurrentHashMap<String, Counter> byAccount : counters.values()) {
+            for (Map.Entry<String, Counter> entry : byAccount.entrySet()) {
+                Counter counter = entry.getValue();
+                synchronized (counter) {
+                    counter.advance(bucket);
+                    if (counter.total == 0) {
+                        counter.retired = true;
+                        byAccount.remove(entry.getKey(), counter);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Ring of per-bucket totals; guarded by its own monitor
+     */
+    private static final class Counter {
+        private final int[] buckets;
+        private long newestBucket = Long.MIN_VALUE;
+        private long total;
+        private boolean retired;
+
+        Counter(int bucketCount) {
+            this.buckets = new int[bucketCount];
+        }
+
+        // Zeroes every bucket that has slid out of the window since the last call
+        void advance(long bucket) {
+            if (bucket <= newestBucket) return;
+            if (newestBucket == Long.MIN_VALUE || bucket - newestBucket >= buckets.length) {
+                Arrays.fill(buckets, 0);
+                total = 0;
+            } else {
+                for (long b = newestBucket + 1; b <= bucket; b++) {
+                    int index = (int) Math.floorMod(b, (long) buckets.length);
+                    total -= buckets[index];
+                    buckets[index] = 0;
+                }
+            }
+            newestBucket = bucket;
+        }
+
+        void add(long bucket, long amountMinor) {
+            if (bucket <= newestBucket - buckets.length) return;
+            int index = (int) Math.floorMod(bucket, (long) buckets.length);
+            long added = Math.min(amountMinor, Integer.MAX_VALUE - (long) buckets[index]);
+            buckets[index] += (int) added;
+            total += added;
+        }
+
+        void remove(long bucket, long amountMinor) {
+            if (bucket <= newestBucket - buckets.length || bucket > newestBucket) return;
+            int index = (int) Math.floorMod(bucket, (long) buckets.length);
+            long removed = Math.min(amountMinor, buckets[index]);
+            buckets[index] -= (int) removed;
+            total -= removed;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Fixed-width decimal digit strings (account numbers, PINs) read and written without regexes
+ * Demonstrates: Allocation-free parsing, Primitive encodings
+ *
+ * One pass over the characters both validates and converts, with no Pattern, substring or
+ * boxing, so checking what a customer typed costs a few nanoseconds. Only ASCII digits are
+ * accepted, as with the \d regexes this replaces.
+ */
+public final class Digits {
+
+    public static final long INVALID = -1;
+
+    private Digits() {
+    }
+
+    /**
+     * Reads exactly width ASCII digits as a number
+     * @return the value, or INVALID if the text is any other length or contains a non-digit
+     */
+    public static long parse(CharSequence text, int width) {
+        if (text == null || text.length() != width || width > 18) {
+            return INVALID;
+        }
+        long value = 0;
+        for (int i = 0; i < width; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * True if the text is exactly width ASCII digits
+     */
+    public static boolean matches(CharSequence text, int width) {
+        return parse(text, width) != INVALID;
+    }
+
+    /**
+     * Writes a non-negative value as exactly width digits, zero-padded on the left
+     */
+    public static String format(long value, int width) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value " + value);
+        }
+        char[] digits = new char[width];
+        for (int i = width - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        if (value != 0) {
+            throw new IllegalArgumentException("Value has more than " + width + " digits");
+        }
+        return new String(digits);
+    }
+}
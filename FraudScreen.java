@@ -0,0 +1,371 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pre-authorization risk rules every ATM withdrawal passes before the account is debited
+ * Demonstrates: Pluggable rule chains, Sliding windows in primitive rings, Fixed-point moving averages
+ *
+ * Each account has one Profile of a few primitives: a ring of its latest withdrawal times, an
+ * exponentially weighted moving average of the amounts, and when its PIN last changed. Profiles
+ * are found through a LongHashIndex keyed by account number, so a check allocates nothing. A
+ * withdrawal locks only its own profile, asks each rule in turn and, if none objects, holds a
+ * place in the ring before the lock is released, so two terminals racing on one account can't
+ * both slip under a velocity rule. Like a DailyLimits charge, the hold is released if the debit
+ * doesn't happen (e.g. for lack of funds); only a confirmed withdrawal moves the average.
+ *
+ * A snapshot keeps each profile's average and count; withdrawal times and PIN changes come back
+ * from the journal's last day on restart, so no rule may look further back than that.
+ *
+ * The standard rules decline more than 5 withdrawals in 10 minutes, an amount over 5 times the
+ * account's moving average (once it has 5 withdrawals behind it), and ₹10,000 or more within
+ * 15 minutes of a PIN change. Settings: -Datm.fraud=standard|none, -Datm.fraud.velocity=COUNT/MINUTES,
+ * -Datm.fraud.amountFactor, -Datm.fraud.pinChangeMinutes.
+ */
+public class FraudScreen {
+
+    /**
+     * One check on a withdrawal about to be made; it reads the profile and never changes it
+     */
+    public interface Rule {
+        // Short lower-case name used in metrics and stats
+        String getName();
+
+        boolean declines(Profile profile, long amountMinor, long nowMillis);
+    }
+
+    /**
+     * What the screen remembers about one account; guarded by its own monitor
+     */
+    public static final class Profile {
+        // Withdrawal times, newest at head; 0 marks a slot not used yet. One spare slot keeps the
+        // oldest time a hold pushed out, so releasing the hold doesn't lose it
+        private final long[] withdrawalTimes = new long[HISTORY + 1];
+        private int head = -1;
+        private long averageMinor;
+        private int withdrawals;
+        private long lastPinChangeMillis;
+
+        /**
+         * Withdrawals at or after the given time, up to the HISTORY most recent
+         */
+        public int countWithdrawalsSince(long sinceMillis) {
+            int count = 0;
+            for (int i = 0; i < HISTORY && head >= 0; i++) {
+                long at = withdrawalTimes[slot(i)];
+                if (at == 0 || at < sinceMillis) break;
+                count++;
+            }
+            return count;
+        }
+
+        // Moving average of withdrawal amounts; each new one has a weight of 1/8
+        public long getAverageMinor() { return averageMinor; }
+        public int getWithdrawals() { return withdrawals; }
+        // 0 if the PIN hasn't changed since the screen started tracking the account
+        public long getLastPinChangeMillis() { return lastPinChangeMillis; }
+
+        void recordTime(long atMillis) {
+            head = (head + 1) % withdrawalTimes.length;
+            withdrawalTimes[head] = atMillis;
+        }
+
+        // Takes back a time recorded by recordTime; older times move up to fill its slot
+        void removeTime(long atMillis) {
+            for (int i = 0; i < withdrawalTimes.length && head >= 0; i++) {
+                if (withdrawalTimes[slot(i)] != atMillis) continue;
+                for (int j = i; j < withdrawalTimes.length - 1; j++) {
+                    withdrawalTimes[slot(j)] = withdrawalTimes[slot(j + 1)];
+                }
+                withdrawalTimes[slot(withdrawalTimes.length - 1)] = 0;
+                return;
+            }
+        }
+
+        void recordAmount(long amountMinor) {
+            averageMinor = withdrawals == 0 ? amountMinor : averageMinor + ((amountMinor - averageMinor) >> 3);
+            if (withdrawals < Integer.MAX_VALUE) withdrawals++;
+        }
+
+        void restoreAverage(long averageMinor, int withdrawals) {
+            this.averageMinor = averageMinor;
+            this.withdrawals = withdrawals;
+        }
+
+        // Ring slot of the i-th newest time
+        private int slot(int i) {
+            return Math.floorMod(head - i, withdrawalTimes.length);
+        }
+
+        void recordPinChange(long atMillis) {
+            lastPinChangeMillis = Math.max(lastPinChangeMillis, atMillis);
+        }
+    }
+
+    // Withdrawal times kept per account, which bounds what a velocity rule can count
+    static final int HISTORY = 8;
+
+    /**
+     * Returned by authorize when a rule declines the withdrawal
+     */
+    public static final long DECLINED = -1;
+
+    private static final String RULES_PROPERTY = "atm.fraud";
+    private static final long MINUTE_MILLIS = 60_000L;
+
+    // One histogram and per-rule counters for the whole process, however often the screen is replaced
+    private static final LatencyHistogram LATENCY = new LatencyHistogram();
+    private static final Metrics.Timer SCREEN_TIME = Metrics.global().timer("atm_fraud_screen_seconds", "",
+        "Time withdrawals spend in the fraud screen", LATENCY);
+    private static final Metrics.Counter CHECKED = Metrics.global().counter("atm_fraud_checks_total", "",
+        "Withdrawals passed through the fraud screen");
+
+    private final Rule[] rules;
+    private final Metrics.Counter[] declined;
+    private final LongHashIndex<Profile> profiles = new LongHashIndex<>();
+
+    public FraudScreen(List<Rule> rules) {
+        this.rules = rules.toArray(new Rule[0]);
+        this.declined = new Metrics.Counter[this.rules.length];
+        for (int i = 0; i < this.rules.length; i++) {
+            declined[i] = Metrics.global().counter("atm_fraud_declines_total",
+                "rule=\"" + this.rules[i].getName() + "\"", "Withdrawals declined by a fraud screen rule");
+        }
+    }
+
+    /**
+     * The velocity, unusual-amount and PIN-change rules with their default settings
+     */
+    public static FraudScreen standard() {
+        return new FraudScreen(Arrays.asList(velocity(5, 10 * MINUTE_MILLIS), unusualAmount(5, 5, 5_000_00L),
+            pinChangeThenWithdraw(15 * MINUTE_MILLIS, 10_000_00L)));
+    }
+
+    public static FraudScreen disabled() {
+        return new FraudScreen(new ArrayList<>());
+    }
+
+    /**
+     * Chooses the rules from -Datm.fraud=standard|none (default standard) and their settings
+     */
+    public static FraudScreen fromSystemProperties() {
+        String mode = System.getProperty(RULES_PROPERTY, "standard");
+        switch (mode.toLowerCase()) {
+            case "standard": break;
+            case "none": return disabled();
+            default: throw new IllegalArgumentException("Unknown " + RULES_PROPERTY + ": " + mode);
+        }
+
+        String velocity = System.getProperty(RULES_PROPERTY + ".velocity", "5/10");
+        String[] parts = velocity.split("/");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException(RULES_PROPERTY + ".velocity looks like COUNT/MINUTES: " + velocity);
+        }
+        return new FraudScreen(Arrays.asList(
+            velocity(Integer.parseInt(parts[0].trim()), Long.parseLong(parts[1].trim()) * MINUTE_MILLIS),
+            unusualAmount(Integer.getInteger(RULES_PROPERTY + ".amountFactor", 5), 5, 5_000_00L),
+            pinChangeThenWithdraw(Long.getLong(RULES_PROPERTY + ".pinChangeMinutes", 15) * MINUTE_MILLIS,
+                10_000_00L)));
+    }
+
+    // Standard rules
+
+    /**
+     * Declines a withdrawal when the account already made maxWithdrawals in the last windowMillis
+     */
+    public static Rule velocity(int maxWithdrawals, long windowMillis) {
+        if (maxWithdrawals < 1 || maxWithdrawals > HISTORY) {
+            throw new IllegalArgumentException("Velocity rules count 1 to " + HISTORY + " withdrawals: "
+                + maxWithdrawals);
+        }
+        checkWindow(windowMillis);
+        return new Rule() {
+            @Override
+            public String getName() { return "velocity"; }
+
+            @Override
+            public boolean declines(Profile profile, long amountMinor, long nowMillis) {
+                return profile.countWithdrawalsSince(nowMillis - windowMillis) >= maxWithdrawals;
+            }
+        };
+    }
+
+    /**
+     * Declines an amount over factor times the account's moving average, once the average rests
+     * on minHistory withdrawals; amounts under floorMinor always pass
+     */
+    public static Rule unusualAmount(int factor, int minHistory, long floorMinor) {
+        return new Rule() {
+            @Override
+            public String getName() { return "amount"; }
+
+            @Override
+            public boolean declines(Profile profile, long amountMinor, long nowMillis) {
+                return amountMinor >= floorMinor && profile.getWithdrawals() >= minHistory
+                    && amountMinor > factor * profile.getAverageMinor();
+            }
+        };
+    }
+
+    /**
+     * Declines amounts of minAmountMinor or more within windowMillis of a PIN change, the usual
+     * pattern when a card and its PIN have been taken over
+     */
+    public static Rule pinChangeThenWithdraw(long windowMillis, long minAmountMinor) {
+        checkWindow(windowMillis);
+        return new Rule() {
+            @Override
+            public String getName() { return "pin_change"; }
+
+            @Override
+            public boolean declines(Profile profile, long amountMinor, long nowMillis) {
+                long changedAt = profile.getLastPinChangeMillis();
+                return amountMinor >= minAmountMinor && changedAt != 0 && nowMillis - changedAt < windowMillis;
+            }
+        };
+    }
+
+    // A restart only restores what happened within the daily limits' window
+    private static void checkWindow(long windowMillis) {
+        if (windowMillis <= 0 || windowMillis > DailyLimits.MAX_WINDOW_MILLIS) {
+            throw new IllegalArgumentException("Fraud rule windows must be positive and at most "
+                + DailyLimits.MAX_WINDOW_MILLIS / MINUTE_MILLIS + " minutes: " + windowMillis / MINUTE_MILLIS);
+        }
+    }
+
+    // Screening
+
+    /**
+     * Runs the rules on a withdrawal and, if none declines it, holds its place in the account's
+     * velocity window until confirm or release
+     * @return a hold token for confirm or release, or DECLINED
+     */
+    public long authorize(String accountNumber, long amountMinor) {
+        if (rules.length == 0) return 0;
+        long start = System.nanoTime();
+        try {
+            Profile profile = profileOf(accountNumber);
+            if (profile == null) return 0;
+            long now = System.currentTimeMillis();
+            synchronized (profile) {
+                for (int i = 0; i < rules.length; i++) {
+                    if (rules[i].declines(profile, amountMinor, now)) {
+                        declined[i].increment();
+                        return DECLINED;
+                    }
+                }
+                profile.recordTime(now);
+                return now;
+            }
+        } finally {
+            CHECKED.increment();
+            SCREEN_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * The authorized withdrawal went through; its amount now counts towards the moving average
+     */
+    public void confirm(String accountNumber, long amountMinor, long holdToken) {
+        if (holdToken <= 0) return;
+        Profile profile = profileOf(accountNumber);
+        if (profile == null) return;
+        synchronized (profile) {
+            profile.recordAmount(amountMinor);
+        }
+    }
+
+    /**
+     * The authorized withdrawal did not happen; it no longer counts against the velocity window
+     */
+    public void release(String accountNumber, long holdToken) {
+        if (holdToken <= 0) return;
+        Profile profile = profileOf(accountNumber);
+        if (profile == null) return;
+        synchronized (profile) {
+            profile.removeTime(holdToken);
+        }
+    }
+
+    public void recordPinChange(String accountNumber, long atMillis) {
+        if (rules.length == 0) return;
+        Profile profile = profileOf(accountNumber);
+        if (profile == null) return;
+        synchronized (profile) {
+            profile.recordPinChange(atMillis);
+        }
+    }
+
+    /**
+     * Counts a past withdrawal so windows survive a restart; the amount too unless the snapshot's
+     * average already includes it
+     */
+    public void recordHistoricalWithdrawal(String accountNumber, long amountMinor, long atMillis,
+                                           boolean inAverage) {
+        if (rules.length == 0) return;
+        Profile profile = profileOf(accountNumber);
+        if (profile == null) return;
+        synchronized (profile) {
+            profile.recordTime(atMillis);
+            if (!inAverage) profile.recordAmount(amountMinor);
+        }
+    }
+
+    /**
+     * Puts back a moving average saved in a snapshot
+     */
+    public void restoreAverage(String accountNumber, long averageMinor, int withdrawals) {
+        if (rules.length == 0 || withdrawals == 0) return;
+        Profile profile = profileOf(accountNumber);
+        if (profile == null) return;
+        synchronized (profile) {
+            profile.restoreAverage(averageMinor, withdrawals);
+        }
+    }
+
+    /**
+     * The account's profile, or null if the screen hasn't seen it (or has no rules)
+     */
+    public Profile findProfile(String accountNumber) {
+        long number = Account.parseAccountNumber(accountNumber);
+        return number == Digits.INVALID || rules.length == 0 ? null : profiles.get(number);
+    }
+
+    // Null for a number that can't be a key; such accounts are never registered with a Bank
+    private Profile profileOf(String accountNumber) {
+        long number = Account.parseAccountNumber(accountNumber);
+        if (number == Digits.INVALID) return null;
+        Profile profile = profiles.get(number);
+        if (profile == null) {
+            Profile created = new Profile();
+            profile = profiles.putIfAbsent(number, created);
+            if (profile == null) profile = created;
+        }
+        return profile;
+    }
+
+    public boolean isEnabled() { return rules.length > 0; }
+    public int getTrackedAccounts() { return profiles.size(); }
+
+    /**
+     * Withdrawals declined so far by the rule with this name, across every screen in the process
+     */
+    public long getDeclined(String ruleName) {
+        for (int i = 0; i < rules.length; i++) {
+            if (rules[i].getName().equals(ruleName)) return declined[i].getValue();
+        }
+        return 0;
+    }
+
+    public void printStats(PrintStream out) {
+        StringBuilder line = new StringBuilder("Fraud Screen: ").append(CHECKED.getValue()).append(" checks");
+        for (int i = 0; i < rules.length; i++) {
+            line.append(i == 0 ? ", declined " : ", ").append(rules[i].getName()).append(' ')
+                .append(declined[i].getValue());
+        }
+        line.append(String.format(", p50 %.1f µs, p99 %.1f µs, max %.1f µs", LATENCY.getValueAtPercentile(50) / 1e3,
+            LATENCY.getValueAtPercentile(99) / 1e3, LATENCY.getMax() / 1e3));
+        out.println(line);
+    }
+}
@@ -0,0 +1,106 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent log-linear latency histogram with bounded relative error
+ * Demonstrates: Lock-free recording, Bit manipulation, Percentile estimation
+ *
+ * Values below 128 are counted exactly. Larger values fall into buckets whose width is
+ * 1/64th of their magnitude, so every reported percentile is within ~1.6% of the true
+ * value. Recording is a handful of atomic increments and never allocates, which makes it
+ * safe to call on hot paths from many threads (HdrHistogram-style, without the dependency).
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;      // 128 exact values
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;       // 64 buckets per power of two
+    private static final int MAX_SHIFT = 64 - SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + MAX_SHIFT * SUB_BUCKET_HALF;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalValue = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * Records one observation (typically nanoseconds); negative values count as zero
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(indexOf(value));
+        totalCount.incrementAndGet();
+        totalValue.addAndGet(value);
+
+        long max = maxValue.get();
+        while (value > max && !maxValue.compareAndSet(max, value)) {
+            max = maxValue.get();
+        }
+    }
+
+    /**
+     * Records the time elapsed since a System.nanoTime() start stamp
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        long subBucket = value >>> shift; // in [64, 128)
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (int) (subBucket - SUB_BUCKET_HALF);
+    }
+
+    private static long highestValueIn(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int offset = index - SUB_BUCKET_COUNT;
+        int shift = offset / SUB_BUCKET_HALF + 1;
+        long subBucket = offset % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Value at the given percentile (0-100), reported as the upper edge of its bucket
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = totalCount.get();
+        if (total == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValueIn(i), maxValue.get());
+            }
+        }
+        return maxValue.get();
+    }
+
+    public long getCount() { return totalCount.get(); }
+    public long getMax() { return maxValue.get(); }
+    // Sum of all recorded values
+    public long getTotal() { return totalValue.get(); }
+
+    public double getMean() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) totalValue.get() / count;
+    }
+
+    /**
+     * Clears all recorded values (not atomic with respect to concurrent recording)
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalValue.set(0);
+        maxValue.set(0);
+    }
+}
@@ -0,0 +1,286 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop synthetic ATM traffic generator for capacity planning
+ * Demonstrates: Open-loop load modelling, Poisson arrivals, Latency percentiles
+ *
+ * Usage: java LoadGenerator [--customers N] [--rate SESSIONS_PER_SEC] [--duration SECONDS]
+ *                           [--think-ms MEAN] [--ops-per-session N] [--workers N]
+ *                           [--mix balance=40,fastcash=25,deposit=15,pin=5,statement=15]
+ *
+ * Sessions arrive as a Poisson process at the requested rate regardless of how fast the
+ * bank answers (open loop), so overload shows up as growing latency, not as a silently
+ * reduced arrival rate. Each session logs in and performs a few operations drawn from the
+ * mix, pausing for an exponentially distributed think time between them. Login latency is
+ * measured from the session's scheduled arrival, so queueing delay is included.
+ */
+public class LoadGenerator {
+
+    /**
+     * Operations a synthetic customer can perform
+     */
+    enum Operation { LOGIN, BALANCE, FAST_CASH, DEPOSIT, PIN_CHANGE, MINI_STATEMENT }
+
+    // Quick withdrawal presets offered by the ATM menu
+    private static final double[] FAST_CASH_AMOUNTS = { 500, 1000, 2000, 5000, 10000 };
+    private static final long FIRST_ACCOUNT_NUMBER = 8_000_000_000L;
+    private static final double INITIAL_BALANCE = 200_000.0;
+    // Hashing a PIN takes milliseconds, so synthetic customers draw from a few pre-hashed PINs
+    private static final int DISTINCT_PINS = 20;
+
+    private final Bank bank;
+    private final String[] accountNumbers;
+    // Current PIN per synthetic account, so PIN changes keep later logins valid
+    private final AtomicReferenceArray<String> pins;
+    private final Operation[] mixTable;
+    private final double meanThinkMillis;
+    private final int opsPerSession;
+    private final PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+
+    private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, AtomicLong> failures = new EnumMap<>(Operation.class);
+
+    LoadGenerator(Bank bank, int customers, Map<Operation, Integer> mix, double meanThinkMillis, int opsPerSession) {
+        this.bank = bank;
+        this.accountNumbers = new String[customers];
+        this.pins = new AtomicReferenceArray<>(customers);
+        this.mixTable = buildMixTable(mix);
+        this.meanThinkMillis = meanThinkMillis;
+        this.opsPerSession = opsPerSession;
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+            failures.put(operation, new AtomicLong());
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int customers = 10_000;
+        double rate = 500;
+        int durationSeconds = 30;
+        double thinkMillis = 200;
+        int opsPerSession = 3;
+        int workers = 256;
+        String mixSpec = "balance=40,fastcash=25,deposit=15,pin=5,statement=15";
+
+        for (int i = 0; i < args.length - 1; i += 2) {
+            switch (args[i]) {
+                case "--customers": customers = Integer.parseInt(args[i + 1]); break;
+                case "--rate": rate = Double.parseDouble(args[i + 1]); break;
+                case "--duration": durationSeconds = Integer.parseInt(args[i + 1]); break;
+                case "--think-ms": thinkMillis = Double.parseDouble(args[i + 1]); break;
+                case "--ops-per-session": opsPerSession = Integer.parseInt(args[i + 1]); break;
+                case "--workers": workers = Integer.parseInt(args[i + 1]); break;
+                case "--mix": mixSpec = args[i + 1]; break;
+                default: throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        if (System.getProperty("atm.journal") == null) {
+            System.setProperty("atm.journal", "none");
+        }
+
+        // Bank start-up and the audit console sink write to stdout; progress goes to stderr, the report to the real stdout
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        Bank bank = Bank.getInstance("Load Test Bank");
+        LoadGenerator generator = new LoadGenerator(bank, customers, parseMix(mixSpec), thinkMillis, opsPerSession);
+        System.err.println("👥 Creating " + customers + " synthetic customers...");
+        generator.createCustomers();
+
+        System.err.println(String.format("🚦 Driving %.0f sessions/s for %ds (mix %s, think %.0fms, %d workers)",
+            rate, durationSeconds, mixSpec, thinkMillis, workers));
+        long sessions = generator.drive(rate, durationSeconds, workers);
+
+        System.setOut(console);
+        generator.printReport(sessions, durationSeconds);
+    }
+
+    /**
+     * Creates the synthetic customers through the normal Bank.addCustomer path
+     */
+    void createCustomers() {
+        PinCredential[] credentials = new PinCredential[DISTINCT_PINS];
+        for (int p = 0; p < DISTINCT_PINS; p++) {
+            credentials[p] = PinCredential.create(String.format("%04d", p));
+        }
+
+        for (int i = 0; i < accountNumbers.length; i++) {
+            String accountNumber = Long.toString(FIRST_ACCOUNT_NUMBER + i);
+            String pin = String.format("%04d", i % DISTINCT_PINS);
+            Customer customer = new Customer(String.format("LOAD%07d", i), "Load", "Customer" + i,
+                "9000000000", "load" + i + "@example.com");
+            customer.addAccount(new Account(accountNumber, "Load Customer " + i, AccountType.SAVINGS,
+                Account.toMinorUnits(INITIAL_BALANCE), credentials[i % DISTINCT_PINS], System.currentTimeMillis(),
+                Transaction.nextId()));
+            bank.addCustomer(customer);
+            accountNumbers[i] = accountNumber;
+            pins.set(i, pin);
+        }
+    }
+
+    /**
+     * Schedules Poisson arrivals for the given duration and waits for all sessions to finish
+     */
+    long drive(double sessionsPerSecond, int durationSeconds, int workers) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "load-session");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        double meanGapNanos = 1e9 / sessionsPerSecond;
+        long scheduled = start;
+        long sessions = 0;
+
+        while (scheduled < end) {
+            long now = System.nanoTime();
+            if (scheduled > now) {
+                LockSupport.parkNanos(scheduled - now);
+            }
+            long intendedStart = scheduled;
+            pool.execute(() -> runSession(intendedStart));
+            sessions++;
+            scheduled += (long) exponential(meanGapNanos);
+        }
+
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+        return sessions;
+    }
+
+    private void runSession(long intendedStart) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int customer = random.nextInt(accountNumbers.length);
+        String accountNumber = accountNumbers[customer];
+
+        // Login latency is measured from the scheduled arrival to include queueing delay
+        Account account = bank.findAccount(accountNumber);
+        boolean authenticated = account != null && bank.validateAccountAndPin(accountNumber, pins.get(customer));
+        finish(Operation.LOGIN, intendedStart, authenticated);
+        if (!authenticated) return;
+
+        for (int i = 0; i < opsPerSession; i++) {
+            think();
+            Operation operation = mixTable[random.nextInt(mixTable.length)];
+            long start = System.nanoTime();
+            finish(operation, start, perform(operation, account, customer, random));
+        }
+    }
+
+    private boolean perform(Operation operation, Account account, int customer, ThreadLocalRandom random) {
+        switch (operation) {
+            case BALANCE:
+                return account.getBalance() >= 0;
+            case FAST_CASH:
+                return account.withdraw(FAST_CASH_AMOUNTS[random.nextInt(FAST_CASH_AMOUNTS.length)]).isSuccess();
+            case DEPOSIT:
+                return account.deposit(100 * (1 + random.nextInt(100))).isSuccess();
+            case PIN_CHANGE:
+                String oldPin = pins.get(customer);
+                String newPin = String.format("%04d", random.nextInt(10_000));
+                if (newPin.equals(oldPin) || !bank.changePin(account, oldPin, newPin).isSuccess()) return false;
+                pins.compareAndSet(customer, oldPin, newPin);
+                return true;
+            case MINI_STATEMENT:
+                account.printMiniStatement(discard);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void finish(Operation operation, long startNanos, boolean succeeded) {
+        latencies.get(operation).recordSince(startNanos);
+        if (!succeeded) {
+            failures.get(operation).incrementAndGet();
+        }
+    }
+
+    private void think() {
+        if (meanThinkMillis <= 0) return;
+        LockSupport.parkNanos((long) exponential(meanThinkMillis * 1e6));
+    }
+
+    private static double exponential(double mean) {
+        return -mean * Math.log(1 - ThreadLocalRandom.current().nextDouble());
+    }
+
+    void printReport(long sessions, int durationSeconds) {
+        System.out.println("\n📊 LOAD TEST RESULTS");
+        System.out.println("=" + "=".repeat(86));
+        System.out.println(String.format("Sessions: %,d (%.1f/s offered)", sessions, (double) sessions / durationSeconds));
+        System.out.println(String.format("%-15s %10s %8s %10s %10s %10s %10s %10s",
+            "Operation", "Count", "Failed", "p50 µs", "p90 µs", "p99 µs", "p99.9 µs", "max µs"));
+        System.out.println("-" + "-".repeat(86));
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = latencies.get(operation);
+            if (histogram.getCount() == 0) continue;
+            System.out.println(String.format("%-15s %,10d %,8d %,10.1f %,10.1f %,10.1f %,10.1f %,10.1f",
+                operation, histogram.getCount(), failures.get(operation).get(),
+                histogram.getValueAtPercentile(50) / 1e3, histogram.getValueAtPercentile(90) / 1e3,
+                histogram.getValueAtPercentile(99) / 1e3, histogram.getValueAtPercentile(99.9) / 1e3,
+                histogram.getMax() / 1e3));
+        }
+        System.out.println("=" + "=".repeat(86));
+        bank.getPinVerifier().printStats(System.out);
+        Account.getFraudScreen().printStats(System.out);
+        System.out.println("Failed = refused by the bank (e.g. insufficient funds, fraud screen), not errors.");
+    }
+
+    /**
+     * Parses "balance=40,fastcash=25,..." into operation weights
+     */
+    static Map<Operation, Integer> parseMix(String spec) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String part : spec.split(",")) {
+            String[] keyValue = part.trim().split("=");
+            if (keyValue.length != 2) {
+                throw new IllegalArgumentException("Mix entries look like name=weight: " + part);
+            }
+            mix.put(operationNamed(keyValue[0].trim()), Integer.parseInt(keyValue[1].trim()));
+        }
+        return mix;
+    }
+
+    private static Operation operationNamed(String name) {
+        switch (name.toLowerCase()) {
+            case "balance": return Operation.BALANCE;
+            case "fastcash": return Operation.FAST_CASH;
+            case "deposit": return Operation.DEPOSIT;
+            case "pin": return Operation.PIN_CHANGE;
+            case "statement": return Operation.MINI_STATEMENT;
+            default: throw new IllegalArgumentException("Unknown operation in mix: " + name);
+        }
+    }
+
+    // One slot per weight unit, so picking an operation is a single random index
+    private static Operation[] buildMixTable(Map<Operation, Integer> mix) {
+        int total = 0;
+        for (int weight : mix.values()) total += weight;
+        if (total <= 0) {
+            throw new IllegalArgumentException("Operation mix must have a positive total weight");
+        }
+
+        Operation[] table = new Operation[total];
+        int next = 0;
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                table[next++] = entry.getKey();
+            }
+        }
+        return table;
+    }
+}
@@ -0,0 +1,169 @@
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Shared failed-login tracker with exponential back-off, in fixed memory
+ * Demonstrates: Count-min sketches, Time-windowed counting, Lock-free updates
+ *
+ * Failures are counted in a count-min sketch (DEPTH rows of WIDTH counters, keyed by account
+ * number with a per-process random seed). Two generations are kept and the older one is
+ * dropped every window, so a key's estimate covers the last one to two windows. A second
+ * sketch keeps the latest failure time per key. Estimates can only err upwards, so hash
+ * collisions may slow an innocent key down but never let an attacker through early. Memory
+ * is the same whether ten or ten million account numbers are being guessed. Because an
+ * estimate can be too high, it only drives the back-off; locking an account outright is
+ * decided by the exact count the Bank keeps on each Account.
+ *
+ * A Mark records a key's counts at a point in time (a successful login, an unlock), so
+ * earlier failures stop counting against it.
+ */
+public class LoginThrottle {
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 1 << 14;
+
+    // Failures allowed before back-off starts (estimated), and before the account is locked outright (exact)
+    static final int FREE_ATTEMPTS = 3;
+    static final int LOCK_THRESHOLD = 6;
+    private static final long BASE_DELAY_MILLIS = 2_000;
+    private static final long MAX_DELAY_MILLIS = 5 * 60_000;
+    private static final long DEFAULT_WINDOW_MILLIS = 15 * 60_000;
+
+    /**
+     * A key's failure counts at the moment it was last cleared
+     */
+    static final class Mark {
+        private final long epoch;
+        private final int current;
+        private final int previous;
+
+        Mark(long epoch, int current, int previous) {
+            this.epoch = epoch;
+            this.current = current;
+            this.previous = previous;
+        }
+    }
+
+    private final long windowMillis;
+    private final LongSupplier clock;
+    private final long[] seeds = new long[DEPTH];
+
+    // Rotated together under this object's monitor; read without locking
+    private volatile AtomicIntegerArray current = new AtomicIntegerArray(DEPTH * WIDTH);
+    private volatile AtomicIntegerArray previous = new AtomicIntegerArray(DEPTH * WIDTH);
+    private volatile long epoch;
+    private volatile long windowEnd;
+    private final AtomicLongArray lastFailure = new AtomicLongArray(DEPTH * WIDTH);
+
+    public LoginThrottle() {
+        this(Long.getLong("atm.login.windowMillis", DEFAULT_WINDOW_MILLIS), System::currentTimeMillis);
+    }
+
+    LoginThrottle(long windowMillis, LongSupplier clock) {
+        this.windowMillis = windowMillis;
+        this.clock = clock;
+        this.windowEnd = clock.getAsLong() + windowMillis;
+        SecureRandom random = new SecureRandom();
+        for (int row = 0; row < DEPTH; row++) {
+            seeds[row] = random.nextLong();
+        }
+    }
+
+    long getWindowMillis() { return windowMillis; }
+
+    /**
+     * Counts one failed attempt and returns the key's failures since its mark
+     */
+    public int recordFailure(String key, Mark mark) {
+        long now = clock.getAsLong();
+        rotateIfDue(now);
+        AtomicIntegerArray counts = current;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(key, row);
+            counts.incrementAndGet(index);
+            long seen;
+            do {
+                seen = lastFailure.get(index);
+            } while (seen < now && !lastFailure.compareAndSet(index, seen, now));
+        }
+        return failures(key, mark);
+    }
+
+    /**
+     * Estimated failures for the key in the current window(s), less those before its mark
+     */
+    public int failures(String key, Mark mark) {
+        rotateIfDue(clock.getAsLong());
+        int currentCount = estimate(current, key);
+        int previousCount = estimate(previous, key);
+        if (mark == null) {
+            return currentCount + previousCount;
+        }
+        long age = epoch - mark.epoch;
+        if (age == 0) {
+            return Math.max(0, currentCount - mark.current) + Math.max(0, previousCount - mark.previous);
+        }
+        if (age == 1) {
+            // What was current at the mark is now the previous generation
+            return currentCount + Math.max(0, previousCount - mark.current);
+        }
+        return currentCount + previousCount;
+    }
+
+    /**
+     * Milliseconds the key must wait before its next attempt; 0 if it may try now
+     */
+    public long retryAfterMillis(String key, Mark mark) {
+        int failures = failures(key, mark);
+        if (failures < FREE_ATTEMPTS) return 0;
+
+        int doublings = Math.min(failures - FREE_ATTEMPTS, 20);
+        long delay = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << doublings);
+        long last = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            last = Math.min(last, lastFailure.get(index(key, row)));
+        }
+        return Math.max(0, last + delay - clock.getAsLong());
+    }
+
+    /**
+     * Captures the key's current counts so failures before now are forgiven
+     */
+    public Mark mark(String key) {
+        rotateIfDue(clock.getAsLong());
+        return new Mark(epoch, estimate(current, key), estimate(previous, key));
+    }
+
+    private int estimate(AtomicIntegerArray counts, String key) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, counts.get(index(key, row)));
+        }
+        return min;
+    }
+
+    private void rotateIfDue(long now) {
+        if (now < windowEnd) return;
+        synchronized (this) {
+            if (now < windowEnd) return;
+            long elapsedWindows = (now - windowEnd) / windowMillis + 1;
+            previous = elapsedWindows == 1 ? current : new AtomicIntegerArray(DEPTH * WIDTH);
+            current = new AtomicIntegerArray(DEPTH * WIDTH);
+            epoch += elapsedWindows;
+            windowEnd += elapsedWindows * windowMillis;
+        }
+    }
+
+    // FNV-1a with a different random seed per row, so keys that collide in one row rarely collide in all
+    private int index(String key, int row) {
+        long hash = 0xcbf29ce484222325L ^ seeds[row];
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 32;
+        return row * WIDTH + (int) (hash & (WIDTH - 1));
+    }
+}
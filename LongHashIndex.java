@@ -0,0 +1,198 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Open-addressing hash index from primitive long keys to values
+ * Demonstrates: Open addressing, Linear probing, Lock-free reads with release/acquire publication
+ *
+ * Keys and values live in two parallel arrays probed linearly from the key's mixed hash, so a
+ * lookup allocates nothing and usually touches one cache line in each array. At the maximum
+ * load of 2/3 an entry costs about 12 bytes of key plus 6-12 bytes of reference, against a
+ * HashMap node (32 bytes), its String key (~56 bytes) and the key's array - which matters at
+ * tens of millions of accounts.
+ *
+ * Writers are serialized and readers never lock. An insert stores the value and then releases
+ * the key, so a reader that acquires the key also sees the value; growth fills a new table and
+ * publishes it in one volatile write. Entries are never removed one by one (accounts are never
+ * closed), which keeps probing free of tombstones.
+ *
+ * Keys need not be unique if the index is given an Identity, e.g. when keyed by a 64-bit hash
+ * of a string id: entries sharing a key are then told apart by comparing the id.
+ */
+public final class LongHashIndex<V> {
+
+    /**
+     * Tells apart values whose keys collide
+     */
+    public interface Identity<V> {
+        boolean matches(V value, Object id);
+    }
+
+    // Marks a free slot; never a valid key
+    public static final long EMPTY = Long.MIN_VALUE;
+    private static final int MIN_CAPACITY = 16;
+    private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    private static final class Table {
+        final long[] keys;
+        final Object[] values;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+            mask = capacity - 1;
+            Arrays.fill(keys, EMPTY);
+        }
+    }
+
+    // Null when keys are exact
+    private final Identity<V> identity;
+    private volatile Table table;
+    private volatile int size;
+
+    public LongHashIndex() {
+        this(null);
+    }
+
+    public LongHashIndex(Identity<V> identity) {
+        this.identity = identity;
+        this.table = new Table(MIN_CAPACITY);
+    }
+
+    public V get(long key) {
+        return get(key, null);
+    }
+
+    /**
+     * Finds the value stored under the key (and, with an Identity, matching the id)
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key, Object id) {
+        Table current = table;
+        for (int slot = slotOf(key, current.mask); ; slot = (slot + 1) & current.mask) {
+            long stored = (long) KEYS.getAcquire(current.keys, slot);
+            if (stored == EMPTY) {
+                return null;
+            }
+            if (stored == key) {
+                V value = (V) VALUES.getAcquire(current.values, slot);
+                if (identity == null || identity.matches(value, id)) {
+                    return value;
+                }
+            }
+        }
+    }
+
+    public V put(long key, V value) {
+        return put(key, null, value, true);
+    }
+
+    /**
+     * Stores the value, replacing the one with the same key (and id, with an Identity)
+     * @return the replaced value, or null
+     */
+    public V put(long key, Object id, V value) {
+        return put(key, id, value, true);
+    }
+
+    public V putIfAbsent(long key, V value) {
+        return put(key, null, value, false);
+    }
+
+    /**
+     * Stores the value unless one with the same key (and id) is already there
+     * @return the value already stored, or null if this one was added
+     */
+    public V putIfAbsent(long key, Object id, V value) {
+        return put(key, id, value, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized V put(long key, Object id, V value, boolean replace) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Key " + EMPTY + " is reserved");
+        }
+        if (value == null) {
+            throw new NullPointerException("Null values are not supported");
+        }
+        Table current = table;
+        int slot = slotOf(key, current.mask);
+        for (long stored; (stored = current.keys[slot]) != EMPTY; slot = (slot + 1) & current.mask) {
+            if (stored == key) {
+                V existing = (V) current.values[slot];
+                if (identity == null || identity.matches(existing, id)) {
+                    if (replace) {
+                        VALUES.setRelease(current.values, slot, value);
+                    }
+                    return existing;
+                }
+            }
+        }
+
+        if ((size + 1) * 3L > (current.mask + 1) * 2L) {
+            current = grow(current);
+            slot = slotOf(key, current.mask);
+            while (current.keys[slot] != EMPTY) {
+                slot = (slot + 1) & current.mask;
+            }
+        }
+        current.values[slot] = value;
+        KEYS.setRelease(current.keys, slot, key);
+        size = size + 1;
+        return null;
+    }
+
+    // Copies every entry into a table twice the size, then publishes it
+    private Table grow(Table old) {
+        Table grown = new Table((old.mask + 1) * 2);
+        for (int i = 0; i <= old.mask; i++) {
+            long key = old.keys[i];
+            if (key == EMPTY) continue;
+            int slot = slotOf(key, grown.mask);
+            while (grown.keys[slot] != EMPTY) {
+                slot = (slot + 1) & grown.mask;
+            }
+            grown.keys[slot] = key;
+            grown.values[slot] = old.values[i];
+        }
+        table = grown;
+        return grown;
+    }
+
+    /**
+     * Drops every entry (e.g. a partly loaded snapshot)
+     */
+    public synchronized void clear() {
+        table = new Table(MIN_CAPACITY);
+        size = 0;
+    }
+
+    /**
+     * Visits every value in slot order; entries added meanwhile may or may not be seen
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super V> action) {
+        Table current = table;
+        for (int slot = 0; slot <= current.mask; slot++) {
+            if ((long) KEYS.getAcquire(current.keys, slot) != EMPTY) {
+                action.accept((V) VALUES.getAcquire(current.values, slot));
+            }
+        }
+    }
+
+    public int size() { return size; }
+
+    // MurmurHash3 finalizer, so runs of sequential account numbers don't pile up into long probe chains
+    private static int slotOf(long key, int mask) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+}
@@ -0,0 +1,225 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide registry of operational counters, timers and gauges
+ * Demonstrates: Allocation-free instrumentation, JMX MXBeans, Prometheus text exposition
+ *
+ * Metrics are created once (typically into static fields) and then recorded with a LongAdder
+ * increment or a LatencyHistogram update, neither of which allocates, so measuring a hot path
+ * doesn't disturb it. Every metric is also registered as an MXBean under "atm:type=...", and
+ * writePrometheus renders the whole registry for the /metrics endpoint of MetricsServer.
+ * Timers record nanoseconds and are exported as Prometheus summaries in seconds.
+ *
+ * Labels are written Prometheus-style, e.g. operation="withdraw"; a name and label set
+ * registered twice returns the existing metric.
+ */
+public final class Metrics {
+
+    private static final Metrics GLOBAL = new Metrics();
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    public interface CounterMXBean {
+        long getValue();
+    }
+
+    public interface TimerMXBean {
+        long getCount();
+        double getMeanMillis();
+        double getP50Millis();
+        double getP99Millis();
+        double getMaxMillis();
+    }
+
+    public interface GaugeMXBean {
+        double getValue();
+    }
+
+    // Common shape of everything in the registry; only exposition goes through it
+    private abstract static class Metric {
+        final String name;
+        final String labels;
+        final String help;
+
+        Metric(String name, String labels, String help) {
+            this.name = name;
+            this.labels = labels;
+            this.help = help;
+        }
+
+        abstract String type();
+        abstract void write(StringBuilder out);
+
+        String series(String suffix, String extraLabel) {
+            String all = labels.isEmpty() ? extraLabel : extraLabel.isEmpty() ? labels : labels + "," + extraLabel;
+            return name + suffix + (all.isEmpty() ? "" : "{" + all + "}");
+        }
+    }
+
+    /**
+     * Monotonic count of events
+     */
+    public static final class Counter extends Metric implements CounterMXBean {
+        private final LongAdder value = new LongAdder();
+
+        private Counter(String name, String labels, String help) {
+            super(name, labels, help);
+        }
+
+        public void increment() { value.increment(); }
+        public void add(long amount) { value.add(amount); }
+        @Override public long getValue() { return value.sum(); }
+
+        @Override String type() { return "counter"; }
+
+        @Override
+        void write(StringBuilder out) {
+            out.append(series("", "")).append(' ').append(getValue()).append('\n');
+        }
+    }
+
+    /**
+     * Latency distribution in nanoseconds
+     */
+    public static final class Timer extends Metric implements TimerMXBean {
+        private final LatencyHistogram histogram;
+
+        private Timer(String name, String labels, String help, LatencyHistogram histogram) {
+            super(name, labels, help);
+            this.histogram = histogram;
+        }
+
+        public void record(long nanos) { histogram.record(nanos); }
+        public void recordSince(long startNanos) { histogram.recordSince(startNanos); }
+
+        @Override public long getCount() { return histogram.getCount(); }
+        @Override public double getMeanMillis() { return histogram.getMean() / 1e6; }
+        @Override public double getP50Millis() { return histogram.getValueAtPercentile(50) / 1e6; }
+        @Override public double getP99Millis() { return histogram.getValueAtPercentile(99) / 1e6; }
+        @Override public double getMaxMillis() { return histogram.getMax() / 1e6; }
+
+        @Override String type() { return "summary"; }
+
+        @Override
+        void write(StringBuilder out) {
+            for (double quantile : QUANTILES) {
+                out.append(series("", "quantile=\"" + quantile + "\"")).append(' ')
+                    .append(seconds(histogram.getValueAtPercentile(quantile * 100))).append('\n');
+            }
+            out.append(series("_sum", "")).append(' ').append(seconds(histogram.getTotal())).append('\n');
+            out.append(series("_count", "")).append(' ').append(histogram.getCount()).append('\n');
+        }
+    }
+
+    /**
+     * Current value read on demand, e.g. a queue depth or a balance
+     */
+    public static final class Gauge extends Metric implements GaugeMXBean {
+        private final DoubleSupplier value;
+
+        private Gauge(String name, String labels, String help, DoubleSupplier value) {
+            super(name, labels, help);
+            this.value = value;
+        }
+
+        @Override public double getValue() { return value.getAsDouble(); }
+
+        @Override String type() { return "gauge"; }
+
+        @Override
+        void write(StringBuilder out) {
+            out.append(series("", "")).append(' ').append(getValue()).append('\n');
+        }
+    }
+
+    // Guarded by this; registration order is exposition order
+    private final List<Metric> metrics = new ArrayList<>();
+    private final MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+
+    public static Metrics global() {
+        return GLOBAL;
+    }
+
+    public Counter counter(String name, String labels, String help) {
+        return register(new Counter(name, labels, help));
+    }
+
+    public Timer timer(String name, String labels, String help) {
+        return timer(name, labels, help, new LatencyHistogram());
+    }
+
+    /**
+     * Exports a histogram that is already being recorded elsewhere (e.g. PinVerifier's)
+     */
+    public Timer timer(String name, String labels, String help, LatencyHistogram histogram) {
+        return register(new Timer(name, labels, help, histogram));
+    }
+
+    public Gauge gauge(String name, String labels, String help, DoubleSupplier value) {
+        return register(new Gauge(name, labels, help, value));
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized <M extends Metric> M register(M metric) {
+        for (Metric existing : metrics) {
+            if (existing.name.equals(metric.name) && existing.labels.equals(metric.labels)) {
+                if (existing.getClass() != metric.getClass()) {
+                    throw new IllegalArgumentException(metric.name + " is already registered as a " + existing.type());
+                }
+                return (M) existing;
+            }
+        }
+        metrics.add(metric);
+        registerMBean(metric);
+        return metric;
+    }
+
+    private void registerMBean(Metric metric) {
+        StringBuilder objectName = new StringBuilder("atm:type=")
+            .append(metric.getClass().getSimpleName()).append(",name=").append(metric.name);
+        if (!metric.labels.isEmpty()) {
+            objectName.append(',').append(metric.labels.replace("\"", ""));
+        }
+        try {
+            mbeanServer.registerMBean(metric, new ObjectName(objectName.toString()));
+        } catch (JMException e) {
+            // Still exported over HTTP; JMX is a convenience
+            System.out.println("⚠️ Metric " + objectName + " not registered with JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Renders every metric in the Prometheus text exposition format (version 0.0.4)
+     */
+    public String writePrometheus() {
+        List<Metric> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(metrics);
+        }
+
+        StringBuilder out = new StringBuilder(8192);
+        List<String> described = new ArrayList<>();
+        for (Metric metric : snapshot) {
+            if (described.contains(metric.name)) continue;
+            described.add(metric.name);
+            out.append("# HELP ").append(metric.name).append(' ').append(metric.help).append('\n');
+            out.append("# TYPE ").append(metric.name).append(' ').append(metric.type()).append('\n');
+            // Series sharing a name must be written together, whatever order they were registered in
+            for (Metric series : snapshot) {
+                if (series.name.equals(metric.name)) series.write(out);
+            }
+        }
+        return out.toString();
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+}
@@ -0,0 +1,74 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP endpoint serving the metrics registry to Prometheus
+ * Demonstrates: Embedded HTTP server (com.sun.net.httpserver), Pull-based monitoring
+ *
+ * Listens on the loopback interface only; GET /metrics returns the text exposition format.
+ * Started by ATMSimulator when -Datm.metrics.port is set (0 picks a free port).
+ */
+public class MetricsServer implements AutoCloseable {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final Metrics metrics;
+    private final HttpServer server;
+
+    public MetricsServer(Metrics metrics, int port) throws IOException {
+        this.metrics = metrics;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", this::serve);
+        server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "atm-metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+    }
+
+    /**
+     * Starts the endpoint if -Datm.metrics.port is set
+     * @return the running server, or null when metrics export over HTTP is off
+     */
+    public static MetricsServer startFromSystemProperties() {
+        Integer port = Integer.getInteger("atm.metrics.port");
+        if (port == null) return null;
+        try {
+            MetricsServer started = new MetricsServer(Metrics.global(), port);
+            System.out.println("📈 Metrics at http://localhost:" + started.getPort() + "/metrics");
+            return started;
+        } catch (IOException e) {
+            System.out.println("⚠️ Metrics endpoint not started: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        try (HttpExchange request = exchange) {
+            if (!request.getRequestMethod().equals("GET")) {
+                request.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = metrics.writePrometheus().getBytes(StandardCharsets.UTF_8);
+            request.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            request.sendResponseHeaders(200, body.length);
+            try (OutputStream out = request.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    public int getPort() { return server.getAddress().getPort(); }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
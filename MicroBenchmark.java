@@ -0,0 +1,132 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Minimal throughput benchmark harness with JSON results
+ * Demonstrates: Warmup/measurement phases, Dead-code elimination guards, Result reporting
+ *
+ * Each benchmark runs its operation in a tight loop on N threads for a fixed time after a
+ * warmup phase. Operations return a long that is folded into a sink so the JIT cannot
+ * discard the work. The operation receives the calling thread's index (0..threads-1).
+ */
+public class MicroBenchmark {
+
+    /**
+     * Outcome of one benchmark run
+     */
+    public static class Result {
+        private final String name;
+        private final int threads;
+        private final long operations;
+        private final double seconds;
+
+        Result(String name, int threads, long operations, double seconds) {
+            this.name = name;
+            this.threads = threads;
+            this.operations = operations;
+            this.seconds = seconds;
+        }
+
+        public String getName() { return name; }
+        public int getThreads() { return threads; }
+        public double getOpsPerSecond() { return operations / seconds; }
+        // Average latency seen by one thread for one operation
+        public double getNanosPerOp() { return seconds * 1e9 * threads / operations; }
+    }
+
+    private final double warmupSeconds;
+    private final double measureSeconds;
+    private final List<Result> results = new ArrayList<>();
+
+    public MicroBenchmark(double warmupSeconds, double measureSeconds) {
+        this.warmupSeconds = warmupSeconds;
+        this.measureSeconds = measureSeconds;
+    }
+
+    /**
+     * Warms up, measures and records one benchmark
+     */
+    public Result run(String name, int threads, IntToLongFunction operation) {
+        try {
+            measure(threads, warmupSeconds, operation);
+            long[] counted = measure(threads, measureSeconds, operation);
+            Result result = new Result(name, threads, counted[0], counted[1] / 1e9);
+            results.add(result);
+            System.err.println(String.format("   • %-40s %2d thr %,15.0f ops/s %,12.1f ns/op",
+                name, threads, result.getOpsPerSecond(), result.getNanosPerOp()));
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Benchmark interrupted: " + name, e);
+        }
+    }
+
+    private long[] measure(int threads, double seconds, IntToLongFunction operation) throws InterruptedException {
+        LongAdder operations = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long duration = (long) (seconds * 1e9);
+        Thread[] workers = new Thread[threads];
+
+        for (int t = 0; t < threads; t++) {
+            int threadIndex = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long deadline = System.nanoTime() + duration;
+                long count = 0;
+                long sink = 0;
+                // Only read the clock every 64 operations to keep timer cost out of the result
+                while ((count & 63) != 0 || System.nanoTime() < deadline) {
+                    sink ^= operation.applyAsLong(threadIndex);
+                    count++;
+                }
+                operations.add(count + (sink == Long.MIN_VALUE ? 1 : 0));
+            }, "bench-" + t);
+            workers[t].start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return new long[] { operations.sum(), System.nanoTime() - begin };
+    }
+
+    public List<Result> getResults() { return results; }
+
+    /**
+     * Writes all recorded results as JSON so runs can be compared across releases
+     */
+    public void writeJson(Path path, String suite) throws IOException {
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("{\n");
+            out.write("  \"suite\": \"" + suite + "\",\n");
+            out.write("  \"timestamp\": " + System.currentTimeMillis() + ",\n");
+            out.write("  \"javaVersion\": \"" + System.getProperty("java.version") + "\",\n");
+            out.write("  \"availableProcessors\": " + Runtime.getRuntime().availableProcessors() + ",\n");
+            out.write("  \"warmupSeconds\": " + warmupSeconds + ",\n");
+            out.write("  \"measureSeconds\": " + measureSeconds + ",\n");
+            out.write("  \"results\": [\n");
+            for (int i = 0; i < results.size(); i++) {
+                Result result = results.get(i);
+                out.write(String.format("    {\"name\": \"%s\", \"threads\": %d, \"opsPerSecond\": %.1f, \"nanosPerOp\": %.2f}%s%n",
+                    result.getName(), result.getThreads(), result.getOpsPerSecond(), result.getNanosPerOp(),
+                    i < results.size() - 1 ? "," : ""));
+            }
+            out.write("  ]\n");
+            out.write("}\n");
+        }
+    }
+}
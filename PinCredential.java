@@ -0,0 +1,124 @@
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted, deliberately slow PIN hash (PBKDF2-HMAC-SHA256)
+ * Demonstrates: Key derivation, Constant-time comparison, Immutable value objects
+ *
+ * Only the salt, iteration count and derived hash are kept, never the PIN itself. The work
+ * factor comes from -Datm.pin.iterations (default 100,000); each credential remembers its own
+ * count, so raising it later only affects PINs set afterwards.
+ */
+public final class PinCredential {
+
+    static final int SALT_BYTES = 16;
+    static final int HASH_BYTES = 32;
+    // Fixed-width binary form used by snapshots: iterations, salt, hash
+    static final int ENCODED_SIZE = 4 + SALT_BYTES + HASH_BYTES;
+    static final int PIN_DIGITS = 4;
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    // Text form used by the journal: pbkdf2-sha256$iterations$salt$hash (Base64)
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final int DEFAULT_ITERATIONS = Integer.getInteger("atm.pin.iterations", 100_000);
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final int iterations;
+    private final byte[] salt;
+    private final byte[] hash;
+
+    private PinCredential(int iterations, byte[] salt, byte[] hash) {
+        this.iterations = iterations;
+        this.salt = salt;
+        this.hash = hash;
+    }
+
+    /**
+     * True if the text has the shape of a PIN (exactly four digits), checked without a regex
+     */
+    public static boolean isWellFormed(CharSequence pin) {
+        return Digits.matches(pin, PIN_DIGITS);
+    }
+
+    /**
+     * Hashes a new PIN with a fresh random salt
+     */
+    public static PinCredential create(String pin) {
+        return create(pin, DEFAULT_ITERATIONS);
+    }
+
+    public static PinCredential create(String pin, int iterations) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        return new PinCredential(iterations, salt, derive(pin, salt, iterations));
+    }
+
+    /**
+     * Checks a PIN by re-deriving its hash; the comparison takes the same time wherever it differs
+     */
+    public boolean matches(String pin) {
+        return MessageDigest.isEqual(hash, derive(pin, salt, iterations));
+    }
+
+    private static byte[] derive(String pin, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(pin.toCharArray(), salt, iterations, HASH_BYTES * 8);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    // Journal (text) form
+
+    String encode() {
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(hash);
+    }
+
+    /**
+     * Parses the journal form; a bare PIN from a journal written before hashing is hashed now
+     */
+    static PinCredential decode(String encoded) {
+        if (!encoded.startsWith(PREFIX)) {
+            return create(encoded);
+        }
+        String[] parts = encoded.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Malformed PIN credential");
+        }
+        Base64.Decoder base64 = Base64.getDecoder();
+        return new PinCredential(Integer.parseInt(parts[0]), base64.decode(parts[1]), base64.decode(parts[2]));
+    }
+
+    // Snapshot (binary) form
+
+    void writeTo(ByteBuffer buffer) {
+        buffer.putInt(iterations);
+        buffer.put(salt);
+        buffer.put(hash);
+    }
+
+    static PinCredential readFrom(ByteBuffer buffer) {
+        int iterations = buffer.getInt();
+        byte[] salt = new byte[SALT_BYTES];
+        byte[] hash = new byte[HASH_BYTES];
+        buffer.get(salt);
+        buffer.get(hash);
+        return new PinCredential(iterations, salt, hash);
+    }
+
+    public int getIterations() { return iterations; }
+
+    @Override
+    public String toString() {
+        return "PinCredential{iterations=" + iterations + "}";
+    }
+}
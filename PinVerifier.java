@@ -0,0 +1,134 @@
+import java.io.PrintStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs slow PIN hash checks on a small dedicated pool with a bounded queue
+ * Demonstrates: Bulkheads, Back-pressure, Bounded executors, Latency metrics
+ *
+ * Each check burns milliseconds of CPU, so logins get their own few threads (by default half
+ * the cores) instead of running on session threads; a login burst queues up here rather than
+ * starving deposits and withdrawals. Callers wait up to a short admission timeout for a queue
+ * slot and are told the ATM is busy if none frees up.
+ *
+ * Settings: -Datm.pin.workers, -Datm.pin.queue (default 256), -Datm.pin.admitMillis (default 2000)
+ */
+public class PinVerifier implements AutoCloseable {
+
+    /**
+     * Outcome of a PIN check; LOCKED and THROTTLED are decided by Bank before any hashing
+     */
+    public enum Result { MATCH, MISMATCH, BUSY, LOCKED, THROTTLED }
+
+    private final ThreadPoolExecutor executor;
+    // One permit per running or queued check, so the executor's queue can never overflow
+    private final Semaphore admission;
+    private final long admitMillis;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong matches = new AtomicLong();
+    private final AtomicLong mismatches = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final long startedAt = System.nanoTime();
+
+    public PinVerifier(int workers, int queueCapacity, long admitMillis) {
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "atm-pin-verifier-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.admission = new Semaphore(workers + queueCapacity);
+        this.admitMillis = admitMillis;
+    }
+
+    public static PinVerifier fromSystemProperties() {
+        int workers = Integer.getInteger("atm.pin.workers",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        return new PinVerifier(workers, Integer.getInteger("atm.pin.queue", 256),
+            Long.getLong("atm.pin.admitMillis", 2000));
+    }
+
+    /**
+     * Checks the PIN on the verifier pool and waits for the answer
+     */
+    public Result verify(Account account, String pin) {
+        long start = System.nanoTime();
+        try {
+            if (!admission.tryAcquire(admitMillis, TimeUnit.MILLISECONDS)) {
+                rejected.incrementAndGet();
+                return Result.BUSY;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.BUSY;
+        }
+
+        // Whoever claims the check first owns its permit: the task gives it back when it finishes,
+        // or a caller that stops waiting before the task starts gives it back instead
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<Boolean> check;
+        try {
+            check = executor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return false;
+                }
+                try {
+                    return account.validatePin(pin);
+                } finally {
+                    admission.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            admission.release();
+            rejected.incrementAndGet();
+            return Result.BUSY;
+        }
+
+        try {
+            boolean matched = check.get();
+            latency.recordSince(start);
+            (matched ? matches : mismatches).incrementAndGet();
+            return matched ? Result.MATCH : Result.MISMATCH;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (claimed.compareAndSet(false, true)) {
+                executor.remove((Runnable) check);
+                admission.release();
+            }
+            return Result.BUSY;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("PIN check failed", e.getCause());
+        }
+    }
+
+    /**
+     * Prints throughput and latency of PIN checks so far
+     */
+    public void printStats(PrintStream out) {
+        long verified = latency.getCount();
+        double seconds = (System.nanoTime() - startedAt) / 1e9;
+        out.println("PIN Checks: " + verified + " (" + mismatches.get() + " wrong, " + rejected.get() + " busy), "
+            + String.format("%.1f/s, p50 %.1f ms, p99 %.1f ms", verified / Math.max(seconds, 1e-9),
+                latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(99) / 1e6));
+    }
+
+    public LatencyHistogram getLatency() { return latency; }
+    public long getMatches() { return matches.get(); }
+    public long getMismatches() { return mismatches.get(); }
+    public long getRejected() { return rejected.get(); }
+    public int getQueued() { return executor.getQueue().size(); }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,75 @@
+import java.util.Arrays;
+
+/**
+ * Consistent-hash ring that maps account numbers and customer ids onto bank shards
+ * Demonstrates: Consistent hashing, Virtual nodes, Binary search
+ *
+ * Every shard owns VIRTUAL_NODES points on a 64-bit ring and a key belongs to the shard of
+ * the first point at or after the key's hash. Many points per shard keep the shards evenly
+ * sized, and adding a shard only takes over the keys that now land on its points (about 1/N
+ * of them) instead of reshuffling everything. The hash is defined here rather than borrowed
+ * from String.hashCode because journals on disk are laid out by it and must route the same
+ * way on every start.
+ */
+public class ShardRouter {
+
+    static final int VIRTUAL_NODES = 128;
+
+    private final int shardCount;
+    // Ring positions in ascending order, and the shard owning each one
+    private final long[] points;
+    private final int[] owners;
+
+    public ShardRouter(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("A bank needs at least one shard: " + shardCount);
+        }
+        this.shardCount = shardCount;
+
+        long[][] ring = new long[shardCount * VIRTUAL_NODES][];
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int node = 0; node < VIRTUAL_NODES; node++) {
+                ring[shard * VIRTUAL_NODES + node] = new long[] { mix(((long) shard << 32) | node), shard };
+            }
+        }
+        Arrays.sort(ring, (a, b) -> Long.compare(a[0], b[0]));
+
+        this.points = new long[ring.length];
+        this.owners = new int[ring.length];
+        for (int i = 0; i < ring.length; i++) {
+            points[i] = ring[i][0];
+            owners[i] = (int) ring[i][1];
+        }
+    }
+
+    /**
+     * Index of the shard that owns the key
+     */
+    public int shardFor(CharSequence key) {
+        if (shardCount == 1) return 0;
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) index = -index - 1;
+        return owners[index == points.length ? 0 : index];
+    }
+
+    // FNV-1a over the characters, then a MurmurHash3 finalizer: account numbers differ only in a few digits
+    static long hash(CharSequence key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    public int getShardCount() { return shardCount; }
+}
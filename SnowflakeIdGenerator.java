@@ -0,0 +1,99 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free, time-ordered id generator that is unique across restarts and ATM nodes
+ * Demonstrates: Bit packing, Compare-and-swap, Distributed id design
+ *
+ * Id layout (63 bits, always positive):
+ *   41 bits  milliseconds since 2025-01-01T00:00:00Z (good for ~69 years)
+ *   10 bits  node id (0-1023), one per ATM node
+ *   12 bits  sequence within the millisecond
+ *
+ * The last issued (millisecond, sequence) pair lives in one AtomicLong. When a millisecond's
+ * 4096 sequence numbers run out, the increment carries into the next millisecond instead of
+ * spinning, so ids stay strictly increasing per node. Borrowing from the future is capped at
+ * MAX_LEAD_MILLIS: if the clock falls further behind the last id, because it stepped back or
+ * because a restart resumed after a burst, callers wait for it to catch up instead.
+ *
+ * The bank persists getLastIssuedId with every checkpoint and hands the largest id it recovers
+ * to advancePast on startup, so a restarted node never reissues an id.
+ */
+public class SnowflakeIdGenerator implements TransactionIdGenerator {
+
+    static final long CUSTOM_EPOCH_MILLIS = 1735689600000L; // 2025-01-01T00:00:00Z
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    // How far ahead of the clock ids may run before nextId waits
+    static final long MAX_LEAD_MILLIS = 50;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeBits;
+    // (millisecond << SEQUENCE_BITS) | sequence of the last id handed out
+    private final AtomicLong lastState = new AtomicLong();
+
+    public SnowflakeIdGenerator(long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeBits = nodeId << SEQUENCE_BITS;
+    }
+
+    /**
+     * Creates a generator for the node id in -Datm.node.id (default 0)
+     */
+    public static SnowflakeIdGenerator forConfiguredNode() {
+        return new SnowflakeIdGenerator(Long.getLong("atm.node.id", 0));
+    }
+
+    @Override
+    public long nextId() {
+        while (true) {
+            long previous = lastState.get();
+            long nowMillis = System.currentTimeMillis() - CUSTOM_EPOCH_MILLIS;
+            long lead = (previous >>> SEQUENCE_BITS) - nowMillis;
+            if (lead > MAX_LEAD_MILLIS) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(lead - MAX_LEAD_MILLIS));
+                continue;
+            }
+            long nowState = nowMillis << SEQUENCE_BITS;
+            long next = nowState > previous ? nowState : previous + 1;
+            if (lastState.compareAndSet(previous, next)) {
+                return idOf(next);
+            }
+        }
+    }
+
+    @Override
+    public long getLastIssuedId() {
+        long state = lastState.get();
+        return state == 0 ? 0 : idOf(state);
+    }
+
+    @Override
+    public void advancePast(long id) {
+        if (id <= 0) return;
+        long state = ((id >>> (NODE_BITS + SEQUENCE_BITS)) << SEQUENCE_BITS) | (id & SEQUENCE_MASK);
+        lastState.accumulateAndGet(state, Math::max);
+    }
+
+    private long idOf(long state) {
+        return ((state >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (state & SEQUENCE_MASK);
+    }
+
+    /**
+     * Extracts the node that issued an id
+     */
+    public static long nodeOf(long id) {
+        return (id >>> SEQUENCE_BITS) & MAX_NODE_ID;
+    }
+
+    /**
+     * Extracts the wall-clock millisecond an id was issued in
+     */
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + CUSTOM_EPOCH_MILLIS;
+    }
+}
@@ -0,0 +1,341 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.List;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Forward-only cursor over one account's transactions in a time range, oldest first
+ * Demonstrates: Cursors, Streaming, Resumable pagination, Bounded memory
+ *
+ * Rows come from the transaction store's per-account index, BATCH_ROWS at a time, and are
+ * exposed through getters that the next call overwrites, so memory stays flat however many rows
+ * the range holds and only the partitions the range overlaps are touched. The store is brought
+ * up to date with the journals when the cursor opens. Each row carries the balance after it; the
+ * balance at the start of the range is the sum of the account's earlier rows in the store.
+ *
+ * A Bookmark taken after any row lets a later cursor continue from there without rescanning,
+ * which is how a statement is served page by page. Its token names the account and period and
+ * is signed with HMAC-SHA256 (key from -Datm.statement.key, else random per process), so a
+ * client can't edit the balance or position in it or use it on another account.
+ */
+public final class StatementCursor implements AutoCloseable {
+
+    /**
+     * Where a cursor stopped: the account and period, the time of the last row read and how many
+     * rows at that time were read, then the balance and row count there
+     */
+    public static final class Bookmark {
+        private final String accountNumber;
+        private final long fromMillis;
+        private final long toMillis;
+        private final long timestampMillis;
+        private final long rowsAtTimestamp;
+        private final long balanceMinor;
+        private final long rows;
+
+        private Bookmark(String accountNumber, long fromMillis, long toMillis, long timestampMillis,
+                         long rowsAtTimestamp, long balanceMinor, long rows) {
+            this.accountNumber = accountNumber;
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+            this.timestampMillis = timestampMillis;
+            this.rowsAtTimestamp = rowsAtTimestamp;
+            this.balanceMinor = balanceMinor;
+            this.rows = rows;
+        }
+
+        /**
+         * Reads a bookmark written by toString, e.g. one handed to a client as a page token
+         * @throws IllegalArgumentException if the token is malformed or its signature doesn't match
+         */
+        public static Bookmark parse(String token) {
+            int signatureAt = token.lastIndexOf(':');
+            String[] parts = token.split(":");
+            if (parts.length != 8 || !MessageDigest.isEqual(sign(token.substring(0, signatureAt)),
+                    token.substring(signatureAt + 1).getBytes(StandardCharsets.US_ASCII))) {
+                throw new IllegalArgumentException("Invalid statement bookmark: " + token);
+            }
+            try {
+                Bookmark bookmark = new Bookmark(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]),
+                    Long.parseLong(parts[3]), Long.parseLong(parts[4]), Long.parseLong(parts[5]),
+                    Long.parseLong(parts[6]));
+                if (bookmark.rowsAtTimestamp < 0 || bookmark.rows < bookmark.rowsAtTimestamp) {
+                    throw new IllegalArgumentException("Invalid statement bookmark: " + token);
+                }
+                return bookmark;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid statement bookmark: " + token, e);
+            }
+        }
+
+        // The account and period it was taken on; a cursor only resumes from a bookmark that matches
+        boolean matches(String accountNumber, long fromMillis, long toMillis) {
+            return this.accountNumber.equals(accountNumber) && this.fromMillis == fromMillis
+                && this.toMillis == toMillis && timestampMillis >= fromMillis && timestampMillis <= toMillis;
+        }
+
+        @Override
+        public String toString() {
+            String fields = accountNumber + ":" + fromMillis + ":" + toMillis + ":" + timestampMillis + ":"
+                + rowsAtTimestamp + ":" + balanceMinor + ":" + rows;
+            return fields + ":" + new String(sign(fields), StandardCharsets.US_ASCII);
+        }
+    }
+
+    // Rows fetched from the store per call
+    static final int BATCH_ROWS = 256;
+    private static final String KEY_PROPERTY = "atm.statement.key";
+    // Signs bookmarks; a random key means bookmarks don't outlive the process
+    private static final SecretKeySpec BOOKMARK_KEY = bookmarkKey();
+
+    private final Account account;
+    private final long fromMillis;
+    private final long toMillis;
+    // Exactly one source: the transaction store, or (for a bank without a journal) the in-memory recent history
+    private final TransactionStore store;
+    private final List<Transaction> recent;
+    private int recentIndex;
+
+    // Rows fetched but not yet returned, and where the next fetch starts
+    private final Batch batch = new Batch();
+    private long lastTimestampMillis;
+    private long rowsAtLastTimestamp;
+
+    private long balanceMinor;
+    private long openingBalanceMinor;
+    private boolean inRange;
+    private long rows;
+
+    // Current row
+    private long transactionId;
+    private long timestampMillis;
+    private TransactionType type;
+    private Transaction.Description description;
+    private long amountMinor;
+
+    private StatementCursor(Account account, long fromMillis, long toMillis, TransactionStore store,
+                            List<Transaction> recent, long balanceMinor, long rows, boolean inRange) {
+        this.account = account;
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        this.store = store;
+        this.recent = recent;
+        this.lastTimestampMillis = fromMillis;
+        this.balanceMinor = balanceMinor;
+        this.openingBalanceMinor = balanceMinor;
+        this.rows = rows;
+        this.inRange = inRange;
+    }
+
+    /**
+     * Cursor over the account's rows in the store, from the start of the range or from where a
+     * bookmark left off
+     */
+    static StatementCursor open(Account account, TransactionStore store, long fromMillis, long toMillis,
+                                Bookmark resumeAt) throws IOException {
+        if (resumeAt != null && !resumeAt.matches(account.getAccountNumber(), fromMillis, toMillis)) {
+            throw new IllegalArgumentException("Statement bookmark is for another account or period");
+        }
+        store.refresh();
+        long number = Account.parseAccountNumber(account.getAccountNumber());
+        if (resumeAt == null) {
+            long[] opening = new long[1];
+            store.visitAccount(number, Long.MIN_VALUE, fromMillis, Long.MAX_VALUE,
+                (timestamp, id, accountNumber, type, description, amount) -> opening[0] += signed(type, amount));
+            return new StatementCursor(account, fromMillis, toMillis, store, null, opening[0], 0, false);
+        }
+        StatementCursor cursor = new StatementCursor(account, fromMillis, toMillis, store, null,
+            resumeAt.balanceMinor, resumeAt.rows, resumeAt.rows > 0);
+        cursor.lastTimestampMillis = resumeAt.timestampMillis;
+        cursor.rowsAtLastTimestamp = resumeAt.rowsAtTimestamp;
+        return cursor;
+    }
+
+    /**
+     * Cursor over the transactions still in memory, for a bank running without a journal;
+     * balances are counted back from the balance when it opens
+     */
+    static StatementCursor ofRecentHistory(Account account, long fromMillis, long toMillis) {
+        List<Transaction> recent = account.getTransactionHistory();
+        long balanceMinor = account.getBalanceMinor();
+        for (Transaction transaction : recent) {
+            balanceMinor -= signed(transaction.getType(), transaction.getAmountMinor());
+        }
+        return new StatementCursor(account, fromMillis, toMillis, null, recent, balanceMinor, 0, false);
+    }
+
+    /**
+     * Moves to the next transaction in range
+     * @return false once the range is exhausted
+     */
+    public boolean next() {
+        while (advance()) {
+            if (timestampMillis >= toMillis) {
+                // After the range; journal clocks can step back, so keep looking rather than stop
+                continue;
+            }
+            long before = balanceMinor;
+            balanceMinor += signed(type, amountMinor);
+            if (timestampMillis >= fromMillis) {
+                if (!inRange) {
+                    openingBalanceMinor = before;
+                    inRange = true;
+                }
+                rows++;
+                return true;
+            }
+        }
+        if (!inRange) {
+            // No rows in range: opening and closing balance are both the balance at its start
+            openingBalanceMinor = balanceMinor;
+            inRange = true;
+        }
+        return false;
+    }
+
+    // Loads the next transaction of this account from the source into the row fields
+    private boolean advance() {
+        if (store == null) {
+            if (recentIndex == recent.size()) return false;
+            Transaction transaction = recent.get(recentIndex++);
+            transactionId = transaction.getId();
+            timestampMillis = transaction.getTimestampNanos() / 1_000_000L;
+            type = transaction.getType();
+            description = transaction.getDescriptionCode();
+            amountMinor = transaction.getAmountMinor();
+            return true;
+        }
+        if (batch.next == batch.size) {
+            if (batch.exhausted) return false;
+            batch.fill();
+            if (batch.size == 0) return false;
+        }
+        int row = batch.next++;
+        transactionId = batch.transactionIds[row];
+        timestampMillis = batch.timestamps[row];
+        type = batch.types[row];
+        description = batch.descriptions[row];
+        amountMinor = batch.amounts[row];
+        if (timestampMillis == lastTimestampMillis) {
+            rowsAtLastTimestamp++;
+        } else {
+            lastTimestampMillis = timestampMillis;
+            rowsAtLastTimestamp = 1;
+        }
+        return true;
+    }
+
+    private static SecretKeySpec bookmarkKey() {
+        String configured = System.getProperty(KEY_PROPERTY);
+        byte[] key;
+        if (configured != null && !configured.isEmpty()) {
+            key = configured.getBytes(StandardCharsets.UTF_8);
+        } else {
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+        }
+        return new SecretKeySpec(key, "HmacSHA256");
+    }
+
+    // URL-safe Base64 of the HMAC, as ASCII bytes for a constant-time comparison
+    private static byte[] sign(String fields) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(BOOKMARK_KEY);
+            byte[] signature = mac.doFinal(fields.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encode(signature);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 unavailable", e);
+        }
+    }
+
+    private static long signed(TransactionType type, long amountMinor) {
+        switch (type.getSymbol()) {
+            case '+': return amountMinor;
+            case '-': return -amountMinor;
+            default: return 0;
+        }
+    }
+
+    /**
+     * Position after the current row; a cursor opened with it continues with the next row
+     */
+    public Bookmark getBookmark() {
+        if (store == null) {
+            throw new UnsupportedOperationException("Bookmarks need the transaction journal");
+        }
+        return new Bookmark(account.getAccountNumber(), fromMillis, toMillis, lastTimestampMillis, rowsAtLastTimestamp,
+            balanceMinor, rows);
+    }
+
+    @Override
+    public void close() {
+        // Nothing is held open between batches
+    }
+
+    public Account getAccount() { return account; }
+    public long getFromMillis() { return fromMillis; }
+    public long getToMillis() { return toMillis; }
+    // Balance before the first row in range; known once next() has been called
+    public long getOpeningBalanceMinor() { return openingBalanceMinor; }
+    // Rows returned so far, counting those before a bookmark this cursor resumed from
+    public long getRowNumber() { return rows; }
+
+    public long getTransactionId() { return transactionId; }
+    public long getTimestampMillis() { return timestampMillis; }
+    public TransactionType getType() { return type; }
+    public Transaction.Description getDescription() { return description; }
+    public long getAmountMinor() { return amountMinor; }
+    // Credits positive, debits negative
+    public long getSignedAmountMinor() { return signed(type, amountMinor); }
+    public long getBalanceAfterMinor() { return balanceMinor; }
+
+    /**
+     * The next rows of this account in the store, after the ones already returned
+     *
+     * Rows sharing a timestamp keep their order in the store, so a fetch starts at the time of the
+     * last row returned and skips the rows at that time already returned.
+     */
+    private class Batch implements TransactionStore.RowVisitor {
+        final long[] timestamps = new long[BATCH_ROWS];
+        final long[] transactionIds = new long[BATCH_ROWS];
+        final long[] amounts = new long[BATCH_ROWS];
+        final TransactionType[] types = new TransactionType[BATCH_ROWS];
+        final Transaction.Description[] descriptions = new Transaction.Description[BATCH_ROWS];
+        int size;
+        int next;
+        boolean exhausted;
+        private long toSkip;
+
+        void fill() {
+            size = 0;
+            next = 0;
+            toSkip = rowsAtLastTimestamp;
+            long number = Account.parseAccountNumber(account.getAccountNumber());
+            long visited = store.visitAccount(number, lastTimestampMillis, toMillis, toSkip + BATCH_ROWS, this);
+            exhausted = visited < toSkip + BATCH_ROWS;
+        }
+
+        @Override
+        public void visit(long timestamp, long id, long accountNumber, TransactionType type,
+                          Transaction.Description description, long amount) {
+            if (toSkip > 0 && timestamp == lastTimestampMillis) {
+                toSkip--;
+                return;
+            }
+            toSkip = 0;
+            if (size == BATCH_ROWS) return; // fewer rows at the skipped time than expected; fetched again next time
+            timestamps[size] = timestamp;
+            transactionIds[size] = id;
+            types[size] = type;
+            descriptions[size] = description;
+            amounts[size] = amount;
+            size++;
+        }
+    }
+}
@@ -1,42 +1,126 @@
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
 
 /**
  * Represents a banking transaction
  * Demonstrates: Encapsulation, Data integrity, Immutable objects
+ *
+ * Stored compactly as primitives and enums; the id string, Date and formatted line are
+ * only built when a statement is rendered.
  */
 public class Transaction {
-    private final String transactionId;
-    private final String type;
-    private final double amount;
-    private final Date timestamp;
-    private final String description;
-    private static int transactionCounter = 1000;
-
-    public Transaction(String type, double amount, String description) {
-        this.transactionId = "TXN" + (++transactionCounter);
+
+    /**
+     * Fixed set of transaction descriptions, stored as a one-byte code
+     */
+    public enum Description {
+        ACCOUNT_OPENING(1, "Account opened with initial deposit", "Opening deposit"),
+        ATM_DEPOSIT(2, "Cash deposit via ATM", "ATM deposit"),
+        ATM_WITHDRAWAL(3, "Cash withdrawal via ATM", "ATM withdrawal"),
+        PIN_CHANGED(4, "PIN changed successfully", "PIN changed"),
+        TRANSFER_SENT(5, "Transfer to another account", "Transfer out"),
+        TRANSFER_RECEIVED(6, "Transfer from another account", "Transfer in"),
+        SETTLEMENT_CREDIT(7, "Bulk credit from settlement file", "Settlement credit"),
+        SETTLEMENT_DEBIT(8, "Bulk debit from settlement file", "Settlement debit");
+
+        private final byte code;
+        private final String text;
+        // For narrow layouts such as printed statements; at most 19 characters
+        private final String shortText;
+
+        Description(int code, String text, String shortText) {
+            this.code = (byte) code;
+            this.text = text;
+            this.shortText = shortText;
+        }
+
+        public byte getCode() { return code; }
+        public String getText() { return text; }
+        public String getShortText() { return shortText; }
+
+        public static Description fromCode(byte code) {
+            for (Description description : values()) {
+                if (description.code == code) return description;
+            }
+            throw new IllegalArgumentException("Unknown transaction description code: " + code);
+        }
+    }
+
+    private static final DateTimeFormatter STATEMENT_TIME =
+        DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private final long transactionId;
+    private final TransactionType type;
+    private final long amountMinor;
+    private final long timestampNanos;
+    private final Description description;
+
+    // Pluggable so tests, benchmarks or a central id service can replace it
+    private static volatile TransactionIdGenerator idGenerator = SnowflakeIdGenerator.forConfiguredNode();
+
+    public Transaction(TransactionType type, long amountMinor, Description description) {
+        this(nextId(), type, amountMinor, description, currentEpochNanos());
+    }
+
+    // Restores a transaction with a known id and time (journal replay, snapshots)
+    Transaction(long transactionId, TransactionType type, long amountMinor, Description description,
+                long timestampNanos) {
+        this.transactionId = transactionId;
         this.type = type;
-        this.amount = amount;
-        this.timestamp = new Date();
+        this.amountMinor = amountMinor;
+        this.timestampNanos = timestampNanos;
         this.description = description;
     }
 
+    static long nextId() {
+        return idGenerator.nextId();
+    }
+
+    public static void setIdGenerator(TransactionIdGenerator generator) {
+        idGenerator = generator;
+    }
+
+    // Checkpoints persist the last id issued; recovery moves the generator past the largest one it finds
+    static long lastIssuedId() {
+        return idGenerator.getLastIssuedId();
+    }
+
+    static void advanceIdsPast(long id) {
+        idGenerator.advancePast(id);
+    }
+
+    // Read from the wall clock each time (as currentTimeMillis is), so transaction times follow NTP
+    // corrections and agree with journal records, daily windows and statement ranges
+    static long currentEpochNanos() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    static long millisToEpochNanos(long epochMillis) {
+        return epochMillis * 1_000_000L;
+    }
+
     // Getters (No setters to maintain immutability)
-    public String getTransactionId() { return transactionId; }
-    public String getType() { return type; }
-    public double getAmount() { return amount; }
-    public Date getTimestamp() { return timestamp; }
-    public String getDescription() { return description; }
+    public long getId() { return transactionId; }
+    public String getTransactionId() { return "TXN" + transactionId; }
+    public TransactionType getType() { return type; }
+    public long getAmountMinor() { return amountMinor; }
+    public double getAmount() { return Account.fromMinorUnits(amountMinor); }
+    public long getTimestampNanos() { return timestampNanos; }
+    public Date getTimestamp() { return new Date(timestampNanos / 1_000_000L); }
+    public Description getDescriptionCode() { return description; }
+    public String getDescription() { return description.getText(); }
 
     @Override
     public String toString() {
-        SimpleDateFormat sdf = new SimpleDateFormat("dd-MM-yyyy HH:mm:ss");
-        String symbol = type.equals("DEPOSIT") ? "+" : type.equals("WITHDRAWAL") ? "-" : " ";
-        return String.format("%-12s | %s | %s₹%-8.2f | %s", 
-            transactionId, 
-            sdf.format(timestamp), 
-            symbol,
-            amount, 
-            description);
-    }
-}
\ No newline at end of file
+        Instant at = Instant.ofEpochSecond(timestampNanos / 1_000_000_000L, timestampNanos % 1_000_000_000L);
+        return String.format("%-22s | %s | %s₹%-8.2f | %s", 
+            getTransactionId(), 
+            STATEMENT_TIME.format(at), 
+            type.getSymbol(),
+            getAmount(), 
+            description.getText());
+    }
+}
@@ -0,0 +1,67 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-size ring of an account's most recent transactions
+ * Demonstrates: Circular buffers, Bounded memory, Thread safety
+ *
+ * Only the newest entries stay on the heap; older ones are overwritten here and remain
+ * available from the transaction journal, so memory per account never grows with age.
+ */
+public class TransactionHistory {
+
+    // Recent entries kept per account; the mini statement shows the last 5 of these
+    static final int DEFAULT_CAPACITY = Integer.getInteger("atm.history.capacity", 16);
+
+    private final Transaction[] ring;
+    private long totalCount;
+
+    public TransactionHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TransactionHistory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("History capacity must be positive: " + capacity);
+        }
+        this.ring = new Transaction[capacity];
+    }
+
+    /**
+     * Records a transaction, overwriting the oldest entry once the ring is full
+     */
+    public synchronized void add(Transaction transaction) {
+        ring[(int) (totalCount % ring.length)] = transaction;
+        totalCount++;
+    }
+
+    /**
+     * Returns up to the last n transactions, oldest first
+     */
+    public synchronized List<Transaction> recent(int n) {
+        int count = (int) Math.min(Math.min(n, ring.length), totalCount);
+        List<Transaction> result = new ArrayList<>(count);
+        for (long i = totalCount - count; i < totalCount; i++) {
+            result.add(ring[(int) (i % ring.length)]);
+        }
+        return result;
+    }
+
+    /**
+     * Number of transactions currently held in memory
+     */
+    public synchronized int size() {
+        return (int) Math.min(totalCount, ring.length);
+    }
+
+    /**
+     * Number of transactions ever recorded, including those no longer held in memory
+     */
+    public synchronized long getTotalCount() {
+        return totalCount;
+    }
+
+    public int getCapacity() {
+        return ring.length;
+    }
+}
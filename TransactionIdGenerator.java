@@ -0,0 +1,23 @@
+/**
+ * Source of unique transaction ids
+ * Demonstrates: Strategy pattern, Functional interfaces
+ */
+@FunctionalInterface
+public interface TransactionIdGenerator {
+
+    /**
+     * Returns a new id, never repeating for the lifetime of the generator
+     */
+    long nextId();
+
+    /**
+     * Largest id handed out so far, or 0 if the generator can't tell; persisted with checkpoints
+     */
+    default long getLastIssuedId() { return 0; }
+
+    /**
+     * Never hands out this id, or any id before it, again; called on startup with the last id persisted
+     */
+    default void advancePast(long id) {
+    }
+}
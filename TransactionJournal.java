@@ -0,0 +1,840 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary write-ahead journal for account events
+ * Demonstrates: Durability, Group commit, Producer-consumer threading, Binary I/O
+ *
+ * Record layout: [int bodyLength][body][int crc32(body)]
+ * Body layout:   [byte type][long sequence][long timestampMillis][type-specific payload]
+ * PINs are only ever journaled as encoded PinCredential hashes, never in clear.
+ *
+ * Appenders only copy their record into an in-memory buffer. A single flusher thread
+ * writes everything that accumulated and issues one fsync for the whole batch, so
+ * callers waiting in awaitDurable share the cost of each fsync (group commit).
+ *
+ * State changes and their journal appends happen between beginMutation and endMutation.
+ * A checkpoint takes the other side of that gate, so a snapshot sees every mutation up to
+ * the journal position it records and none after it.
+ *
+ * The journal also remembers where each of the last few hours' records begin, so a checkpoint
+ * can note where a trailing window of records starts (offsetSince) and a restart can rebuild
+ * windowed state, such as daily limits, from just that stretch of the file.
+ */
+public class TransactionJournal implements AutoCloseable {
+
+    /**
+     * Kinds of journaled events
+     */
+    public enum RecordType {
+        OPEN_ACCOUNT(1), DEPOSIT(2), WITHDRAWAL(3), PIN_CHANGE(4), TRANSFER(5),
+        SETTLEMENT_CREDIT(6), SETTLEMENT_DEBIT(7), ACCOUNT_LOCK(8);
+
+        private final byte code;
+
+        RecordType(int code) { this.code = (byte) code; }
+
+        static RecordType fromCode(byte code) {
+            for (RecordType type : values()) {
+                if (type.code == code) return type;
+            }
+            throw new IllegalArgumentException("Unknown journal record type: " + code);
+        }
+    }
+
+    /**
+     * Writes a checkpoint of in-memory state while mutations are paused
+     */
+    public interface CheckpointWriter {
+        void write(long sequence, long journalOffset) throws IOException;
+    }
+
+    /**
+     * Receives journal records in sequence order while the journal is replayed at startup; a
+     * handler throws IOException for a record it can't apply, which stops the replay
+     */
+    public interface ReplayHandler {
+        void onOpenAccount(long sequence, long timestamp, String customerId, String firstName,
+                           String lastName, String phoneNumber, String email, String accountNumber,
+                           String accountHolderName, AccountType accountType, long initialBalanceMinor,
+                           String pinCredential, long openingTransactionId) throws IOException;
+
+        void onDeposit(long sequence, long timestamp, String accountNumber, long amountMinor, long transactionId)
+            throws IOException;
+
+        void onWithdrawal(long sequence, long timestamp, String accountNumber, long amountMinor, long transactionId)
+            throws IOException;
+
+        void onPinChange(long sequence, long timestamp, String accountNumber, String newPinCredential,
+                         long transactionId) throws IOException;
+
+        void onTransfer(long sequence, long timestamp, String fromAccountNumber, String toAccountNumber,
+                        long amountMinor, long transactionId) throws IOException;
+
+        void onSettlementCredit(long sequence, long timestamp, String accountNumber, long amountMinor,
+                                long transactionId) throws IOException;
+
+        void onSettlementDebit(long sequence, long timestamp, String accountNumber, long amountMinor,
+                               long transactionId) throws IOException;
+
+        void onAccountLock(long sequence, long timestamp, String accountNumber, boolean locked)
+            throws IOException;
+    }
+
+    /**
+     * Turns records into the per-account transaction rows that replay adds to account histories
+     *
+     * A transfer yields a row for each of its two accounts; lock records yield none.
+     */
+    abstract static class RowAdapter implements ReplayHandler {
+
+        abstract void onRow(String accountNumber, long timestamp, long transactionId, TransactionType type,
+                            Transaction.Description description, long amountMinor);
+
+        @Override
+        public void onOpenAccount(long sequence, long timestamp, String customerId, String firstName,
+                                  String lastName, String phoneNumber, String email, String accountNumber,
+                                  String accountHolderName, AccountType accountType, long initialBalanceMinor,
+                                  String pinCredential, long openingTransactionId) {
+            if (initialBalanceMinor > 0) {
+                onRow(accountNumber, timestamp, openingTransactionId, TransactionType.DEPOSIT,
+                    Transaction.Description.ACCOUNT_OPENING, initialBalanceMinor);
+            }
+        }
+
+        @Override
+        public void onDeposit(long sequence, long timestamp, String accountNumber, long amountMinor,
+                              long transactionId) {
+            onRow(accountNumber, timestamp, transactionId, TransactionType.DEPOSIT,
+                Transaction.Description.ATM_DEPOSIT, amountMinor);
+        }
+
+        @Override
+        public void onWithdrawal(long sequence, long timestamp, String accountNumber, long amountMinor,
+                                 long transactionId) {
+            onRow(accountNumber, timestamp, transactionId, TransactionType.WITHDRAWAL,
+                Transaction.Description.ATM_WITHDRAWAL, amountMinor);
+        }
+
+        @Override
+        public void onPinChange(long sequence, long timestamp, String accountNumber, String newPinCredential,
+                                long transactionId) {
+            onRow(accountNumber, timestamp, transactionId, TransactionType.PIN_CHANGE,
+                Transaction.Description.PIN_CHANGED, 0);
+        }
+
+        @Override
+        public void onTransfer(long sequence, long timestamp, String fromAccountNumber, String toAccountNumber,
+                               long amountMinor, long transactionId) {
+            onRow(fromAccountNumber, timestamp, transactionId, TransactionType.TRANSFER_OUT,
+                Transaction.Description.TRANSFER_SENT, amountMinor);
+            onRow(toAccountNumber, timestamp, transactionId, TransactionType.TRANSFER_IN,
+                Transaction.Description.TRANSFER_RECEIVED, amountMinor);
+        }
+
+        @Override
+        public void onSettlementCredit(long sequence, long timestamp, String accountNumber, long amountMinor,
+                                       long transactionId) {
+            onRow(accountNumber, timestamp, transactionId, TransactionType.DEPOSIT,
+                Transaction.Description.SETTLEMENT_CREDIT, amountMinor);
+        }
+
+        @Override
+        public void onSettlementDebit(long sequence, long timestamp, String accountNumber, long amountMinor,
+                                      long transactionId) {
+            onRow(accountNumber, timestamp, transactionId, TransactionType.WITHDRAWAL,
+                Transaction.Description.SETTLEMENT_DEBIT, amountMinor);
+        }
+
+        @Override
+        public void onAccountLock(long sequence, long timestamp, String accountNumber, boolean locked) {
+        }
+    }
+
+    /**
+     * Offset of the first record of each recent hour; guarded by the journal lock once open
+     */
+    private static final class HourStarts {
+        private final long[] hours = new long[TRACKED_HOURS];
+        private final long[] offsets = new long[TRACKED_HOURS];
+        // Covers every record the ring never saw: all records this recent start at or after it
+        private long seedOffset;
+        private long firstHour = Long.MAX_VALUE;
+
+        HourStarts(long seedOffset) {
+            this.seedOffset = seedOffset;
+            Arrays.fill(hours, Long.MIN_VALUE);
+        }
+
+        void note(long offset, long timestampMillis) {
+            long hour = Math.floorDiv(timestampMillis, HOUR_MILLIS);
+            int slot = (int) Math.floorMod(hour, (long) TRACKED_HOURS);
+            if (hours[slot] != hour) {
+                hours[slot] = hour;
+                offsets[slot] = offset;
+            }
+            firstHour = Math.min(firstHour, hour);
+        }
+
+        long offsetSince(long sinceMillis, long endOffset) {
+            long sinceHour = Math.floorDiv(sinceMillis, HOUR_MILLIS);
+            // Records before the first one seen may fall inside the window; only the seed covers them
+            if (firstHour >= sinceHour) {
+                return Math.min(seedOffset, endOffset);
+            }
+            long offset = endOffset;
+            for (int i = 0; i < TRACKED_HOURS; i++) {
+                if (hours[i] >= sinceHour) offset = Math.min(offset, offsets[i]);
+            }
+            return offset;
+        }
+    }
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final long HOUR_MILLIS = 3_600_000L;
+    // Hours of record offsets kept, enough for a day-long window and the hour it started in
+    private static final int TRACKED_HOURS = 26;
+
+    // Operational metrics; recording them never allocates
+    private static final Metrics.Timer LOCK_WAIT = Metrics.global().timer("atm_journal_lock_wait_seconds", "",
+        "Time appenders waited for the journal buffer lock");
+    private static final Metrics.Timer GATE_WAIT = Metrics.global().timer("atm_checkpoint_gate_wait_seconds", "",
+        "Time mutations waited to enter the checkpoint gate");
+    private static final Metrics.Timer FLUSH = Metrics.global().timer("atm_journal_flush_seconds", "",
+        "Write plus fsync time of each group commit");
+    private static final Metrics.Timer DURABLE_WAIT = Metrics.global().timer("atm_journal_durable_wait_seconds", "",
+        "Time callers waited for their record to be fsynced");
+    private static final Metrics.Counter RECORDS = Metrics.global().counter("atm_journal_records_total", "",
+        "Records appended to the journal");
+    private static final Metrics.Counter BYTES = Metrics.global().counter("atm_journal_bytes_total", "",
+        "Bytes appended to the journal");
+    private static final int HEADER_SIZE = 1 + 8 + 8;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition dataAvailable = lock.newCondition();
+    private final Condition batchDurable = lock.newCondition();
+    private final Thread flusher;
+    private final CRC32 crc = new CRC32();
+    private final ReentrantReadWriteLock checkpointGate = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private ByteBuffer flushing = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private int recordStart;
+    private long lastSequence;
+    private long appendedBytes;
+    private long durableSequence;
+    // File length up to the end of the last fsynced record; readers never look past it
+    private long durableBytes;
+    private long syncCount;
+    private boolean closed;
+    private IOException failure;
+    private final HourStarts hourStarts;
+
+    private TransactionJournal(Path path, long lastSequence, long appendedBytes, HourStarts hourStarts)
+            throws IOException {
+        this.path = path;
+        this.hourStarts = hourStarts;
+        this.lastSequence = lastSequence;
+        this.appendedBytes = appendedBytes;
+        this.durableSequence = lastSequence;
+        this.durableBytes = appendedBytes;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+        this.flusher = new Thread(this::flushLoop, "atm-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Replays an existing journal through the handler and opens it for appending
+     */
+    public static TransactionJournal open(Path path, ReplayHandler handler) throws IOException {
+        return open(path, handler, 0, 0, 0);
+    }
+
+    /**
+     * Replays only the records after a checkpoint, starting at the journal offset it recorded;
+     * windowOffset is the checkpoint's offsetSince, so later checkpoints can still cover records
+     * from before the restart
+     */
+    public static TransactionJournal open(Path path, ReplayHandler handler, long afterSequence,
+                                          long startOffset, long windowOffset) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        long lastSequence = afterSequence;
+        long validLength = 0;
+        HourStarts hourStarts = new HourStarts(Math.min(windowOffset, startOffset));
+        if (Files.exists(path)) {
+            long[] position = replay(path, handler, afterSequence, startOffset, hourStarts);
+            lastSequence = Math.max(afterSequence, position[0]);
+            validLength = position[1];
+        }
+        return new TransactionJournal(path, lastSequence, validLength, hourStarts);
+    }
+
+    // Checkpoint gate
+
+    /**
+     * Marks the start of a state change that will be journaled; pair with endMutation
+     */
+    public void beginMutation() {
+        long start = System.nanoTime();
+        checkpointGate.readLock().lock();
+        GATE_WAIT.recordSince(start);
+    }
+
+    public void endMutation() {
+        checkpointGate.readLock().unlock();
+    }
+
+    /**
+     * Pauses mutations and hands the writer the last sequence and journal offset it covers
+     */
+    public void checkpoint(CheckpointWriter writer) throws IOException {
+        checkpointGate.writeLock().lock();
+        try {
+            long sequence;
+            long offset;
+            lock.lock();
+            try {
+                sequence = lastSequence;
+                offset = appendedBytes;
+            } finally {
+                lock.unlock();
+            }
+            writer.write(sequence, offset);
+        } finally {
+            checkpointGate.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Offset from which every record written at or after sinceMillis can be found; it may be
+     * earlier than needed, never later
+     */
+    public long offsetSince(long sinceMillis) {
+        lock.lock();
+        try {
+            return hourStarts.offsetSince(sinceMillis, appendedBytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Appending
+
+    public long appendOpenAccount(String customerId, String firstName, String lastName, String phoneNumber,
+                                  String email, String accountNumber, String accountHolderName,
+                                  AccountType accountType, long initialBalanceMinor, String pinCredential,
+                                  long openingTransactionId) {
+        byte[][] fields = {
+            utf8(customerId), utf8(firstName), utf8(lastName), utf8(phoneNumber), utf8(email),
+            utf8(accountNumber), utf8(accountHolderName), utf8(pinCredential)
+        };
+        int payloadSize = 8 + 8 + 1;
+        for (byte[] field : fields) payloadSize += 2 + field.length;
+
+        lockForAppend();
+        try {
+            ByteBuffer buffer = beginRecord(RecordType.OPEN_ACCOUNT, payloadSize);
+            for (int i = 0; i < 7; i++) putString(buffer, fields[i]);
+            buffer.putLong(initialBalanceMinor);
+            putString(buffer, fields[7]);
+            buffer.putLong(openingTransactionId);
+            buffer.put(accountType.getCode());
+            return endRecord(buffer);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long appendDeposit(String accountNumber, long amountMinor, long transactionId) {
+        return appendAmount(RecordType.DEPOSIT, accountNumber, amountMinor, transactionId);
+    }
+
+    public long appendWithdrawal(String accountNumber, long amountMinor, long transactionId) {
+        return appendAmount(RecordType.WITHDRAWAL, accountNumber, amountMinor, transactionId);
+    }
+
+    public long appendSettlementCredit(String accountNumber, long amountMinor, long transactionId) {
+        return appendAmount(RecordType.SETTLEMENT_CREDIT, accountNumber, amountMinor, transactionId);
+    }
+
+    public long appendSettlementDebit(String accountNumber, long amountMinor, long transactionId) {
+        return appendAmount(RecordType.SETTLEMENT_DEBIT, accountNumber, amountMinor, transactionId);
+    }
+
+    public long appendPinChange(String accountNumber, String newPinCredential, long transactionId) {
+        byte[] account = utf8(accountNumber);
+        byte[] pin = utf8(newPinCredential);
+
+        lockForAppend();
+        try {
+            ByteBuffer buffer = beginRecord(RecordType.PIN_CHANGE, 2 + account.length + 2 + pin.length + 8);
+            putString(buffer, account);
+            putString(buffer, pin);
+            buffer.putLong(transactionId);
+            return endRecord(buffer);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Journals both legs of a transfer as one record, so replay can never apply only half of it
+     */
+    public long appendTransfer(String fromAccountNumber, String toAccountNumber, long amountMinor,
+                               long transactionId) {
+        byte[] from = utf8(fromAccountNumber);
+        byte[] to = utf8(toAccountNumber);
+
+        lockForAppend();
+        try {
+            ByteBuffer buffer = beginRecord(RecordType.TRANSFER, 2 + from.length + 2 + to.length + 8 + 8);
+            putString(buffer, from);
+            putString(buffer, to);
+            buffer.putLong(amountMinor);
+            buffer.putLong(transactionId);
+            return endRecord(buffer);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records an account being locked after repeated wrong PINs, or unlocked again
+     */
+    public long appendAccountLock(String accountNumber, boolean locked) {
+        byte[] account = utf8(accountNumber);
+
+        lockForAppend();
+        try {
+            ByteBuffer buffer = beginRecord(RecordType.ACCOUNT_LOCK, 2 + account.length + 1);
+            putString(buffer, account);
+            buffer.put((byte) (locked ? 1 : 0));
+            return endRecord(buffer);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long appendAmount(RecordType type, String accountNumber, long amountMinor, long transactionId) {
+        byte[] account = utf8(accountNumber);
+
+        lockForAppend();
+        try {
+            ByteBuffer buffer = beginRecord(type, 2 + account.length + 8 + 8);
+            putString(buffer, account);
+            buffer.putLong(amountMinor);
+            buffer.putLong(transactionId);
+            return endRecord(buffer);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Uncontended acquisitions are recorded as a zero wait, so the count covers every append
+    private void lockForAppend() {
+        if (lock.tryLock()) {
+            LOCK_WAIT.record(0);
+            return;
+        }
+        long start = System.nanoTime();
+        lock.lock();
+        LOCK_WAIT.recordSince(start);
+    }
+
+    /**
+     * Blocks until the record with the given sequence number has been fsynced
+     */
+    public void awaitDurable(long sequence) {
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            while (durableSequence < sequence && failure == null) {
+                batchDurable.awaitUninterruptibly();
+            }
+            if (durableSequence < sequence) {
+                throw new UncheckedIOException("Transaction journal unavailable", failure);
+            }
+        } finally {
+            lock.unlock();
+            DURABLE_WAIT.recordSince(start);
+        }
+    }
+
+    // Record encoding (caller holds lock)
+
+    private ByteBuffer beginRecord(RecordType type, int payloadSize) {
+        if (closed) {
+            throw new IllegalStateException("Transaction journal is closed");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Transaction journal unavailable", failure);
+        }
+
+        int recordSize = 4 + HEADER_SIZE + payloadSize + 4;
+        if (pending.remaining() < recordSize) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + recordSize));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+
+        long now = System.currentTimeMillis();
+        hourStarts.note(appendedBytes, now);
+        recordStart = pending.position();
+        pending.putInt(HEADER_SIZE + payloadSize);
+        pending.put(type.code);
+        pending.putLong(++lastSequence);
+        pending.putLong(now);
+        return pending;
+    }
+
+    private long endRecord(ByteBuffer buffer) {
+        int bodyLength = buffer.getInt(recordStart);
+        crc.reset();
+        crc.update(buffer.array(), recordStart + 4, bodyLength);
+        buffer.putInt((int) crc.getValue());
+        appendedBytes += 4 + bodyLength + 4;
+        RECORDS.increment();
+        BYTES.add(4 + bodyLength + 4);
+        dataAvailable.signal();
+        return lastSequence;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        buffer.putShort((short) value.length);
+        buffer.put(value);
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Group commit
+
+    private void flushLoop() {
+        while (true) {
+            long batchSequence;
+            long batchEnd;
+            lock.lock();
+            try {
+                while (pending.position() == 0 && !closed) {
+                    dataAvailable.awaitUninterruptibly();
+                }
+                if (pending.position() == 0) {
+                    return;
+                }
+                ByteBuffer swap = flushing;
+                flushing = pending;
+                pending = swap;
+                batchSequence = lastSequence;
+                batchEnd = appendedBytes;
+            } finally {
+                lock.unlock();
+            }
+
+            long flushStart = System.nanoTime();
+            try {
+                flushing.flip();
+                while (flushing.hasRemaining()) {
+                    channel.write(flushing);
+                }
+                channel.force(false);
+                flushing.clear();
+                FLUSH.recordSince(flushStart);
+            } catch (IOException e) {
+                lock.lock();
+                try {
+                    failure = e;
+                    batchDurable.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+
+            lock.lock();
+            try {
+                durableSequence = batchSequence;
+                durableBytes = batchEnd;
+                syncCount++;
+                batchDurable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Reading
+
+    /**
+     * Opens a reader over the records fsynced so far, from a record boundary (0 for the start)
+     */
+    public Reader openReader(long startOffset) throws IOException {
+        long end;
+        lock.lock();
+        try {
+            end = durableBytes;
+        } finally {
+            lock.unlock();
+        }
+        return new Reader(path, Math.min(startOffset, end), end);
+    }
+
+    /**
+     * Opens a reader over part of a journal that is not open, e.g. before it is replayed
+     */
+    static Reader openReader(Path path, long startOffset, long endOffset) throws IOException {
+        long end = Math.min(endOffset, Files.size(path));
+        return new Reader(path, Math.min(startOffset, end), end);
+    }
+
+    /**
+     * Reads journal records front to back, one at a time, on its own file handle
+     *
+     * It takes none of the journal's locks, so appends carry on while a long scan runs, and it
+     * holds only a stream buffer and the largest record seen so far. It stops at the end offset
+     * it was opened with, so records appended meanwhile are not seen.
+     */
+    public static final class Reader implements AutoCloseable {
+        private final DataInputStream in;
+        private final long endOffset;
+        private final CRC32 checksum = new CRC32();
+        private byte[] body = new byte[256];
+        private long offset;
+
+        private Reader(Path path, long startOffset, long endOffset) throws IOException {
+            InputStream file = Files.newInputStream(path);
+            try {
+                file.skipNBytes(startOffset);
+            } catch (IOException e) {
+                file.close();
+                throw e;
+            }
+            this.in = new DataInputStream(new BufferedInputStream(file, INITIAL_BUFFER_SIZE));
+            this.offset = startOffset;
+            this.endOffset = endOffset;
+        }
+
+        /**
+         * Hands the next record to the handler
+         * @return false at the end offset, or at a record that fails its checksum
+         */
+        public boolean next(ReplayHandler handler) throws IOException {
+            if (offset + 4 > endOffset) {
+                return false;
+            }
+            int bodyLength = in.readInt();
+            if (bodyLength < HEADER_SIZE || offset + 4 + bodyLength + 4 > endOffset) {
+                return false;
+            }
+            if (body.length < bodyLength) {
+                body = new byte[Math.max(bodyLength, body.length * 2)];
+            }
+            in.readFully(body, 0, bodyLength);
+            int storedCrc = in.readInt();
+            checksum.reset();
+            checksum.update(body, 0, bodyLength);
+            if ((int) checksum.getValue() != storedCrc) {
+                return false;
+            }
+            offset += 4 + bodyLength + 4;
+            dispatch(ByteBuffer.wrap(body, 0, bodyLength), handler);
+            return true;
+        }
+
+        // Journal offset of the next record
+        public long getOffset() { return offset; }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    // Replay
+
+    /**
+     * Replays records after afterSequence and returns {lastSequence, validLength}
+     */
+    private static long[] replay(Path path, ReplayHandler handler, long afterSequence,
+                                 long startOffset, HourStarts hourStarts) throws IOException {
+        long fileSize = Files.size(path);
+        if (startOffset > fileSize) {
+            // Journal is shorter than the checkpoint expected; fall back to a full scan
+            startOffset = 0;
+        }
+
+        long lastSequence = 0;
+        long validLength = startOffset;
+        CRC32 checksum = new CRC32();
+
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            in.skipNBytes(startOffset);
+            boolean first = true;
+            while (true) {
+                int bodyLength;
+                byte[] body;
+                int storedCrc;
+                try {
+                    bodyLength = in.readInt();
+                    // A torn or corrupt length marks the end of valid data, not an allocation to attempt
+                    if (bodyLength < HEADER_SIZE || validLength + 4 + (long) bodyLength + 4 > fileSize) break;
+                    body = new byte[bodyLength];
+                    in.readFully(body);
+                    storedCrc = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                checksum.reset();
+                checksum.update(body);
+                if ((int) checksum.getValue() != storedCrc) break;
+
+                ByteBuffer record = ByteBuffer.wrap(body);
+                long sequence = record.getLong(1);
+                if (first && startOffset > 0 && sequence != afterSequence + 1) {
+                    // The offset doesn't line up with the checkpoint; rescan from the beginning
+                    hourStarts.seedOffset = 0;
+                    return replay(path, handler, afterSequence, 0, hourStarts);
+                }
+                first = false;
+                hourStarts.note(validLength, record.getLong(1 + 8));
+
+                if (sequence > afterSequence) {
+                    dispatch(record, handler);
+                }
+                lastSequence = sequence;
+                validLength += 4 + bodyLength + 4;
+            }
+        }
+
+        // Drop a torn tail left by a crash mid-write so new records follow the last good one
+        if (fileSize > validLength) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+            }
+        }
+        return new long[] { lastSequence, validLength };
+    }
+
+    private static long dispatch(ByteBuffer body, ReplayHandler handler) throws IOException {
+        RecordType type = RecordType.fromCode(body.get());
+        long sequence = body.getLong();
+        long timestamp = body.getLong();
+
+        switch (type) {
+            case OPEN_ACCOUNT:
+                String customerId = getString(body);
+                String firstName = getString(body);
+                String lastName = getString(body);
+                String phoneNumber = getString(body);
+                String email = getString(body);
+                String accountNumber = getString(body);
+                String holderName = getString(body);
+                long initialBalance = body.getLong();
+                String pin = getString(body);
+                long openingTransactionId = body.getLong();
+                // Records written before account types existed end here and open savings accounts
+                AccountType accountType = body.hasRemaining() ? AccountType.fromCode(body.get()) : AccountType.SAVINGS;
+                handler.onOpenAccount(sequence, timestamp, customerId, firstName, lastName, phoneNumber,
+                    email, accountNumber, holderName, accountType, initialBalance, pin, openingTransactionId);
+                break;
+            case DEPOSIT:
+                handler.onDeposit(sequence, timestamp, getString(body), body.getLong(), body.getLong());
+                break;
+            case WITHDRAWAL:
+                handler.onWithdrawal(sequence, timestamp, getString(body), body.getLong(), body.getLong());
+                break;
+            case PIN_CHANGE:
+                handler.onPinChange(sequence, timestamp, getString(body), getString(body), body.getLong());
+                break;
+            case TRANSFER:
+                handler.onTransfer(sequence, timestamp, getString(body), getString(body), body.getLong(),
+                    body.getLong());
+                break;
+            case SETTLEMENT_CREDIT:
+                handler.onSettlementCredit(sequence, timestamp, getString(body), body.getLong(), body.getLong());
+                break;
+            case SETTLEMENT_DEBIT:
+                handler.onSettlementDebit(sequence, timestamp, getString(body), body.getLong(), body.getLong());
+                break;
+            case ACCOUNT_LOCK:
+                handler.onAccountLock(sequence, timestamp, getString(body), body.get() != 0);
+                break;
+        }
+        return sequence;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] value = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    // Lifecycle and statistics
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            dataAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            flusher.join();
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Path getPath() { return path; }
+
+    public long getLastSequence() {
+        lock.lock();
+        try {
+            return lastSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getSyncCount() {
+        lock.lock();
+        try {
+            return syncCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
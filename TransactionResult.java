@@ -0,0 +1,32 @@
+/**
+ * Outcome of a deposit, withdrawal, PIN change or transfer
+ * Demonstrates: Enums as result codes, Separating domain logic from presentation
+ *
+ * Domain methods report what happened and leave the wording to whoever shows it
+ * (an ATM session, a load test, a log), so they never print or build strings themselves.
+ */
+public enum TransactionResult {
+    SUCCESS,
+    INVALID_AMOUNT,
+    // Cash withdrawals must be a multiple of ₹100
+    INVALID_DENOMINATION,
+    DAILY_LIMIT_EXCEEDED,
+    // Declined by a FraudScreen rule before any money moved
+    SUSPECTED_FRAUD,
+    INSUFFICIENT_FUNDS,
+    INCORRECT_PIN,
+    INVALID_PIN_FORMAT,
+    SAME_PIN,
+    // PIN changes: the old PIN was not checked because the account is locked, or backing off / busy
+    ACCOUNT_LOCKED,
+    TRY_AGAIN_LATER,
+    // Transfers: an account number that doesn't exist, or the same account on both sides
+    UNKNOWN_ACCOUNT,
+    SAME_ACCOUNT,
+    // The journal refused the record, so the operation was undone
+    JOURNAL_UNAVAILABLE,
+    // Applied and appended, but the journal failed before confirming it was on disk
+    NOT_DURABLE;
+
+    public boolean isSuccess() { return this == SUCCESS; }
+}
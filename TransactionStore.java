@@ -0,0 +1,674 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Time-partitioned index of every account transaction, built from the shard journals
+ * Demonstrates: Time partitioning, Binary search, Columnar storage, Memory-mapped files, Incremental indexing
+ *
+ * Rows are grouped into one partition per hour or day of their timestamp (UTC). A partition keeps
+ * its rows in time order and also in account-then-time order, so the rows of a time range -
+ * for the whole bank or for one account - are found by binary search and read in order.
+ *
+ * The partition that is still receiving rows lives on the heap. Once the clock is GRACE_MILLIS
+ * past its end it is sealed into a columnar file (one array per field, then the account order)
+ * that is memory-mapped read-only, so months of history cost page cache rather than heap and a
+ * query touches only the columns and pages it needs.
+ *
+ * The journals stay the source of truth. refresh() reads each shard's journal from where it last
+ * stopped, on the journal's own reader, so ATM operations never wait for it. It holds the store's
+ * write lock while it reads, though, and forEach refreshes first so it sees every durable row:
+ * a query waits for (and holds off other queries during) the catch-up, which the scheduled
+ * refresh keeps to the few seconds of records since it last ran. Statements refresh once when
+ * they open, then page through only what is indexed (visitAccount).
+ *
+ * Sealed partitions record how far into each journal they reach, and a manifest records where
+ * to resume, so a restart rereads only the rows of partitions that were still open. The store is
+ * rebuilt from the journals if its files are missing, damaged or of another granularity.
+ */
+public class TransactionStore {
+
+    /**
+     * Partition width
+     */
+    public enum Granularity {
+        HOUR(3_600_000L, "yyyyMMddHH"),
+        DAY(86_400_000L, "yyyyMMdd");
+
+        private final long millis;
+        private final DateTimeFormatter fileStamp;
+
+        Granularity(long millis, String fileStampPattern) {
+            this.millis = millis;
+            this.fileStamp = DateTimeFormatter.ofPattern(fileStampPattern).withZone(ZoneOffset.UTC);
+        }
+
+        long startOf(long timestampMillis) {
+            return Math.floorDiv(timestampMillis, millis) * millis;
+        }
+
+        static Granularity fromSystemProperties() {
+            return valueOf(System.getProperty(PARTITION_PROPERTY, "day").toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Receives the rows of a query in time order (by account, then time, for one-account queries)
+     */
+    public interface RowVisitor {
+        void visit(long timestampMillis, long transactionId, long accountNumber, TransactionType type,
+                   Transaction.Description description, long amountMinor);
+    }
+
+    static final String PARTITION_PROPERTY = "atm.store.partition";
+    // How long after a partition ends it stays open for rows still on their way from the journals
+    static final long GRACE_MILLIS = 60_000;
+
+    private static final int MAGIC = 0x41544D50; // "ATMP"
+    private static final int VERSION = 1;
+    private static final String MANIFEST_FILE_NAME = "manifest";
+    private static final String PARTITION_PREFIX = "p-";
+    private static final String PARTITION_SUFFIX = ".col";
+    private static final TransactionType[] TYPES = TransactionType.values();
+    // Description by its one-byte code, so reading a row doesn't search (or copy) values()
+    private static final Transaction.Description[] DESCRIPTIONS = new Transaction.Description[256];
+
+    static {
+        for (Transaction.Description description : Transaction.Description.values()) {
+            DESCRIPTIONS[description.getCode() & 0xFF] = description;
+        }
+    }
+
+    private final Path directory;
+    private final Granularity granularity;
+    private final BankShard[] shards;
+    // Journal offset each shard's next refresh reads from
+    private final long[] readOffsets;
+    // Sealed and open partitions by start time
+    private final TreeMap<Long, Partition> partitions = new TreeMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Feeder feeder = new Feeder();
+
+    private TransactionStore(Path directory, Granularity granularity, BankShard[] shards) {
+        this.directory = directory;
+        this.granularity = granularity;
+        this.shards = shards;
+        this.readOffsets = new long[shards.length];
+    }
+
+    /**
+     * Loads the sealed partitions and resume offsets; rows after them are read by the first refresh
+     */
+    static TransactionStore open(Path directory, BankShard[] shards, Granularity granularity) throws IOException {
+        Files.createDirectories(directory);
+        TransactionStore store = new TransactionStore(directory, granularity, shards);
+        if (!store.load()) {
+            // Rebuilt from the start of every journal
+            store.partitions.clear();
+            Arrays.fill(store.readOffsets, 0);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+        }
+        return store;
+    }
+
+    // False if the files on disk can't be used as they are
+    private boolean load() throws IOException {
+        Path manifest = directory.resolve(MANIFEST_FILE_NAME);
+        if (!Files.exists(manifest)) {
+            return false;
+        }
+        String[] fields = Files.readString(manifest, StandardCharsets.UTF_8).trim().split(" ");
+        if (fields.length != 2 + shards.length || !fields[0].equals(granularity.name())
+                || !fields[1].equals(Integer.toString(shards.length))) {
+            return false;
+        }
+        for (int i = 0; i < shards.length; i++) {
+            try {
+                readOffsets[i] = Long.parseLong(fields[2 + i]);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            if (readOffsets[i] < 0 || readOffsets[i] > Files.size(shards[i].getJournal().getPath())) {
+                // The journal was replaced; this store describes another one
+                return false;
+            }
+        }
+
+        String pattern = PARTITION_PREFIX + "*" + PARTITION_SUFFIX;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, pattern)) {
+            for (Path file : files) {
+                SealedPartition partition = SealedPartition.load(file, shards.length);
+                if (partition == null || partition.end - partition.start != granularity.millis) {
+                    return false;
+                }
+                partitions.put(partition.start, partition);
+            }
+        }
+        return true;
+    }
+
+    // Reading the journals
+
+    /**
+     * Indexes every journal record made durable since the last refresh and seals partitions
+     * that ended more than GRACE_MILLIS ago
+     */
+    public void refresh() throws IOException {
+        lock.writeLock().lock();
+        try {
+            // Anything stamped before this, less the grace, is durable by the time the reads below finish
+            long startedAt = System.currentTimeMillis();
+            for (int i = 0; i < shards.length; i++) {
+                try (TransactionJournal.Reader reader = shards[i].getJournal().openReader(readOffsets[i])) {
+                    feeder.shard = i;
+                    feeder.reader = reader;
+                    feeder.recordStart = reader.getOffset();
+                    while (reader.next(feeder)) {
+                        feeder.recordStart = reader.getOffset();
+                    }
+                    readOffsets[i] = reader.getOffset();
+                } finally {
+                    feeder.reader = null;
+                }
+            }
+            sealBefore(startedAt - GRACE_MILLIS);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the rows of each shard's own accounts; the other leg of a cross-shard transfer is
+     * indexed from the other shard's journal
+     */
+    private class Feeder extends TransactionJournal.RowAdapter {
+        int shard;
+        TransactionJournal.Reader reader;
+        long recordStart;
+
+        @Override
+        void onRow(String accountNumber, long timestamp, long transactionId, TransactionType type,
+                   Transaction.Description description, long amountMinor) {
+            if (shards[shard].owns(accountNumber)) {
+                add(shard, recordStart, reader.getOffset(), timestamp, transactionId,
+                    Account.parseAccountNumber(accountNumber), type, description, amountMinor);
+            }
+        }
+    }
+
+    // Caller holds the write lock
+    void add(int shard, long recordStart, long recordEnd, long timestamp, long transactionId, long accountNumber,
+             TransactionType type, Transaction.Description description, long amountMinor) {
+        long start = granularity.startOf(timestamp);
+        Partition partition = partitions.get(start);
+        if (partition instanceof SealedPartition) {
+            SealedPartition sealed = (SealedPartition) partition;
+            if (recordEnd <= sealed.coveredEnd[shard]) {
+                // Reread after a restart; the sealed file already has it
+                return;
+            }
+            // Late row for a sealed partition: take it back onto the heap and seal it again later
+            partition = sealed.reopen(shards.length);
+            partitions.put(start, partition);
+        }
+        if (partition == null) {
+            partition = new OpenPartition(start, start + granularity.millis, shards.length);
+            partitions.put(start, partition);
+        }
+        ((OpenPartition) partition).add(shard, recordStart, recordEnd, timestamp, transactionId, accountNumber,
+            type, description, amountMinor);
+    }
+
+    // Caller holds the write lock
+    private void sealBefore(long threshold) throws IOException {
+        boolean sealedAny = false;
+        for (Map.Entry<Long, Partition> entry : partitions.entrySet()) {
+            if (entry.getValue() instanceof OpenPartition && entry.getValue().end() <= threshold) {
+                OpenPartition open = (OpenPartition) entry.getValue();
+                Path file = directory.resolve(PARTITION_PREFIX
+                    + granularity.fileStamp.format(Instant.ofEpochMilli(open.start)) + PARTITION_SUFFIX);
+                entry.setValue(SealedPartition.write(file, open));
+                sealedAny = true;
+            }
+        }
+        if (sealedAny) {
+            writeManifest();
+        }
+    }
+
+    // Where a restart resumes reading: the first record of any still-open partition, else where reading stopped
+    private void writeManifest() throws IOException {
+        long[] resume = readOffsets.clone();
+        for (Partition partition : partitions.values()) {
+            if (partition instanceof OpenPartition) {
+                long[] firstStart = ((OpenPartition) partition).firstStart;
+                for (int i = 0; i < resume.length; i++) {
+                    resume[i] = Math.min(resume[i], firstStart[i]);
+                }
+            }
+        }
+        StringBuilder text = new StringBuilder(granularity.name()).append(' ').append(shards.length);
+        for (long offset : resume) {
+            text.append(' ').append(offset);
+        }
+        Path temp = directory.resolve(MANIFEST_FILE_NAME + ".tmp");
+        Files.writeString(temp, text.append('\n'), StandardCharsets.UTF_8);
+        Files.move(temp, directory.resolve(MANIFEST_FILE_NAME), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Queries
+
+    /**
+     * Visits every row with a timestamp in [fromMillis, toMillis), in time order
+     * @return the number of rows visited
+     */
+    public long forEach(long fromMillis, long toMillis, RowVisitor visitor) throws IOException {
+        return query(Digits.INVALID, fromMillis, toMillis, visitor);
+    }
+
+    /**
+     * Visits one account's rows with a timestamp in [fromMillis, toMillis), in time order
+     * @return the number of rows visited
+     */
+    public long forEach(long accountNumber, long fromMillis, long toMillis, RowVisitor visitor) throws IOException {
+        if (accountNumber < 0) {
+            throw new IllegalArgumentException("Invalid account number: " + accountNumber);
+        }
+        return query(accountNumber, fromMillis, toMillis, visitor);
+    }
+
+    private long query(long accountNumber, long fromMillis, long toMillis, RowVisitor visitor) throws IOException {
+        refresh();
+        return visitIndexed(accountNumber, fromMillis, toMillis, Long.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Visits at most limit of one account's rows from fromMillis on, in time order, without a
+     * refresh; statements page through an account this way
+     * @return the number of rows visited
+     */
+    long visitAccount(long accountNumber, long fromMillis, long toMillis, long limit, RowVisitor visitor) {
+        return visitIndexed(accountNumber, fromMillis, toMillis, limit, visitor);
+    }
+
+    private long visitIndexed(long accountNumber, long fromMillis, long toMillis, long limit, RowVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            if (fromMillis >= toMillis) {
+                return 0;
+            }
+            Long first = partitions.floorKey(fromMillis);
+            long visited = 0;
+            for (Partition partition : partitions.subMap(first == null ? fromMillis : first, true, toMillis, false)
+                    .values()) {
+                if (visited == limit) break;
+                visited += accountNumber == Digits.INVALID
+                    ? partition.visit(fromMillis, toMillis, visitor)
+                    : partition.visitAccount(accountNumber, fromMillis, toMillis, limit - visited, visitor);
+            }
+            return visited;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Granularity getGranularity() { return granularity; }
+
+    /**
+     * Number of partitions, and how many of them are sealed on disk
+     */
+    public int[] getPartitionCounts() {
+        lock.readLock().lock();
+        try {
+            int sealed = 0;
+            for (Partition partition : partitions.values()) {
+                if (partition instanceof SealedPartition) sealed++;
+            }
+            return new int[] { partitions.size(), sealed };
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Partitions
+
+    private interface Partition {
+        long end();
+
+        long visit(long fromMillis, long toMillis, RowVisitor visitor);
+
+        long visitAccount(long accountNumber, long fromMillis, long toMillis, long limit, RowVisitor visitor);
+    }
+
+    /**
+     * Partition still receiving rows: growable columns in arrival order, plus row numbers kept
+     * sorted by time for the whole partition and for each account
+     */
+    private static final class OpenPartition implements Partition {
+        private static final int INITIAL_ROWS = 256;
+
+        /**
+         * One account's row numbers in time order
+         */
+        private static final class AccountRows {
+            final long accountNumber;
+            int[] rows = new int[4];
+            int size;
+
+            AccountRows(long accountNumber) {
+                this.accountNumber = accountNumber;
+            }
+        }
+
+        final long start;
+        final long end;
+        // Per shard: journal offset of the first record read into this partition, and the end of the last
+        final long[] firstStart;
+        final long[] coveredEnd;
+
+        int size;
+        long[] timestamps = new long[INITIAL_ROWS];
+        long[] transactionIds = new long[INITIAL_ROWS];
+        long[] accountNumbers = new long[INITIAL_ROWS];
+        long[] amounts = new long[INITIAL_ROWS];
+        byte[] types = new byte[INITIAL_ROWS];
+        byte[] descriptions = new byte[INITIAL_ROWS];
+        int[] byTime = new int[INITIAL_ROWS];
+        final LongHashIndex<AccountRows> byAccount = new LongHashIndex<>();
+
+        OpenPartition(long start, long end, int shardCount) {
+            this.start = start;
+            this.end = end;
+            this.firstStart = new long[shardCount];
+            this.coveredEnd = new long[shardCount];
+            Arrays.fill(firstStart, Long.MAX_VALUE);
+        }
+
+        void add(int shard, long recordStart, long recordEnd, long timestamp, long transactionId,
+                 long accountNumber, TransactionType type, Transaction.Description description, long amountMinor) {
+            firstStart[shard] = Math.min(firstStart[shard], recordStart);
+            coveredEnd[shard] = Math.max(coveredEnd[shard], recordEnd);
+            append(timestamp, transactionId, accountNumber, (byte) type.ordinal(), description.getCode(), amountMinor);
+        }
+
+        void append(long timestamp, long transactionId, long accountNumber, byte type, byte description,
+                    long amountMinor) {
+            if (size == timestamps.length) {
+                int capacity = size * 2;
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                transactionIds = Arrays.copyOf(transactionIds, capacity);
+                accountNumbers = Arrays.copyOf(accountNumbers, capacity);
+                amounts = Arrays.copyOf(amounts, capacity);
+                types = Arrays.copyOf(types, capacity);
+                descriptions = Arrays.copyOf(descriptions, capacity);
+                byTime = Arrays.copyOf(byTime, capacity);
+            }
+            int row = size++;
+            timestamps[row] = timestamp;
+            transactionIds[row] = transactionId;
+            accountNumbers[row] = accountNumber;
+            amounts[row] = amountMinor;
+            types[row] = type;
+            descriptions[row] = description;
+            insertByTime(byTime, row, row);
+
+            AccountRows account = byAccount.get(accountNumber);
+            if (account == null) {
+                account = new AccountRows(accountNumber);
+                byAccount.put(accountNumber, account);
+            }
+            if (account.size == account.rows.length) {
+                account.rows = Arrays.copyOf(account.rows, account.size * 2);
+            }
+            insertByTime(account.rows, account.size++, row);
+        }
+
+        // Rows arrive almost in time order, so this usually stores at the end without shifting anything
+        private void insertByTime(int[] order, int count, int row) {
+            long timestamp = timestamps[row];
+            int i = count;
+            while (i > 0 && timestamps[order[i - 1]] > timestamp) {
+                order[i] = order[i - 1];
+                i--;
+            }
+            order[i] = row;
+        }
+
+        @Override
+        public long end() { return end; }
+
+        @Override
+        public long visit(long fromMillis, long toMillis, RowVisitor visitor) {
+            return visitRange(byTime, size, fromMillis, toMillis, Long.MAX_VALUE, visitor);
+        }
+
+        @Override
+        public long visitAccount(long accountNumber, long fromMillis, long toMillis, long limit, RowVisitor visitor) {
+            AccountRows account = byAccount.get(accountNumber);
+            return account == null ? 0 : visitRange(account.rows, account.size, fromMillis, toMillis, limit, visitor);
+        }
+
+        private long visitRange(int[] order, int count, long fromMillis, long toMillis, long limit,
+                                RowVisitor visitor) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[order[mid]] < fromMillis) low = mid + 1; else high = mid;
+            }
+            long visited = 0;
+            for (int i = low; i < count && timestamps[order[i]] < toMillis && visited < limit; i++) {
+                int row = order[i];
+                visitor.visit(timestamps[row], transactionIds[row], accountNumbers[row], TYPES[types[row]],
+                    DESCRIPTIONS[descriptions[row] & 0xFF], amounts[row]);
+                visited++;
+            }
+            return visited;
+        }
+    }
+
+    /**
+     * Partition sealed into a read-only, memory-mapped columnar file
+     *
+     * Layout (big-endian): magic, version, start, end, row count, shard count, per-shard covered
+     * journal offset; then in time order the timestamp, transaction id, account number and amount
+     * columns (8 bytes per row each), the type and description code columns (1 byte each), and
+     * finally the row numbers in account-then-time order (4 bytes each).
+     */
+    private static final class SealedPartition implements Partition {
+        final long start;
+        final long end;
+        final long[] coveredEnd;
+        final int size;
+        private final MappedByteBuffer data;
+        private final int timestampsAt;
+        private final int transactionIdsAt;
+        private final int accountNumbersAt;
+        private final int amountsAt;
+        private final int typesAt;
+        private final int descriptionsAt;
+        private final int accountOrderAt;
+
+        private SealedPartition(long start, long end, long[] coveredEnd, int size, MappedByteBuffer data) {
+            this.start = start;
+            this.end = end;
+            this.coveredEnd = coveredEnd;
+            this.size = size;
+            this.data = data;
+            this.timestampsAt = headerSize(coveredEnd.length);
+            this.transactionIdsAt = timestampsAt + size * 8;
+            this.accountNumbersAt = transactionIdsAt + size * 8;
+            this.amountsAt = accountNumbersAt + size * 8;
+            this.typesAt = amountsAt + size * 8;
+            this.descriptionsAt = typesAt + size;
+            this.accountOrderAt = descriptionsAt + size;
+        }
+
+        private static int headerSize(int shardCount) {
+            return 4 + 4 + 8 + 8 + 4 + 4 + shardCount * 8;
+        }
+
+        private static long fileSize(int shardCount, int rows) {
+            return headerSize(shardCount) + (long) rows * (8 + 8 + 8 + 8 + 1 + 1 + 4);
+        }
+
+        /**
+         * Writes the open partition's rows in time order with its account order, then maps the file
+         */
+        static SealedPartition write(Path file, OpenPartition open) throws IOException {
+            int shardCount = open.coveredEnd.length;
+            int rows = open.size;
+            long size = fileSize(shardCount, rows);
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Partition too large for one file (" + rows + " rows); use hourly partitions");
+            }
+
+            // Sealed row i is open row byTime[i]; positions maps back the other way
+            int[] positions = new int[rows];
+            for (int i = 0; i < rows; i++) {
+                positions[open.byTime[i]] = i;
+            }
+            long[] accountNumbers = new long[open.byAccount.size()];
+            int[] next = new int[1];
+            open.byAccount.forEach(account -> accountNumbers[next[0]++] = account.accountNumber);
+            Arrays.sort(accountNumbers);
+
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                out.order(ByteOrder.BIG_ENDIAN);
+                out.putInt(MAGIC).putInt(VERSION).putLong(open.start).putLong(open.end).putInt(rows).putInt(shardCount);
+                for (long offset : open.coveredEnd) out.putLong(offset);
+                for (int i = 0; i < rows; i++) out.putLong(open.timestamps[open.byTime[i]]);
+                for (int i = 0; i < rows; i++) out.putLong(open.transactionIds[open.byTime[i]]);
+                for (int i = 0; i < rows; i++) out.putLong(open.accountNumbers[open.byTime[i]]);
+                for (int i = 0; i < rows; i++) out.putLong(open.amounts[open.byTime[i]]);
+                for (int i = 0; i < rows; i++) out.put(open.types[open.byTime[i]]);
+                for (int i = 0; i < rows; i++) out.put(open.descriptions[open.byTime[i]]);
+                for (long accountNumber : accountNumbers) {
+                    OpenPartition.AccountRows account = open.byAccount.get(accountNumber);
+                    for (int i = 0; i < account.size; i++) out.putInt(positions[account.rows[i]]);
+                }
+                out.force();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return load(file, shardCount);
+        }
+
+        /**
+         * Maps a sealed partition file
+         * @return the partition, or null if the file is damaged or for another shard count
+         */
+        static SealedPartition load(Path file, int shardCount) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long fileSize = channel.size();
+                if (fileSize < headerSize(shardCount) || fileSize > Integer.MAX_VALUE) {
+                    return null;
+                }
+                MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+                if (data.getInt() != MAGIC || data.getInt() != VERSION) {
+                    return null;
+                }
+                long start = data.getLong();
+                long end = data.getLong();
+                int rows = data.getInt();
+                if (data.getInt() != shardCount || rows < 0 || fileSize != fileSize(shardCount, rows)) {
+                    return null;
+                }
+                long[] coveredEnd = new long[shardCount];
+                for (int i = 0; i < shardCount; i++) {
+                    coveredEnd[i] = data.getLong();
+                }
+                return new SealedPartition(start, end, coveredEnd, rows, data);
+            }
+        }
+
+        /**
+         * Copies the rows back into an open partition so late rows can join them
+         */
+        OpenPartition reopen(int shardCount) {
+            OpenPartition open = new OpenPartition(start, end, shardCount);
+            System.arraycopy(coveredEnd, 0, open.coveredEnd, 0, shardCount);
+            for (int i = 0; i < size; i++) {
+                open.append(timestamp(i), data.getLong(transactionIdsAt + i * 8), accountNumber(i),
+                    data.get(typesAt + i), data.get(descriptionsAt + i), data.getLong(amountsAt + i * 8));
+            }
+            return open;
+        }
+
+        private long timestamp(int row) { return data.getLong(timestampsAt + row * 8); }
+        private long accountNumber(int row) { return data.getLong(accountNumbersAt + row * 8); }
+        private int accountOrder(int index) { return data.getInt(accountOrderAt + index * 4); }
+
+        @Override
+        public long end() { return end; }
+
+        @Override
+        public long visit(long fromMillis, long toMillis, RowVisitor visitor) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamp(mid) < fromMillis) low = mid + 1; else high = mid;
+            }
+            long visited = 0;
+            for (int row = low; row < size && timestamp(row) < toMillis; row++) {
+                visitRow(row, visitor);
+                visited++;
+            }
+            return visited;
+        }
+
+        @Override
+        public long visitAccount(long accountNumber, long fromMillis, long toMillis, long limit, RowVisitor visitor) {
+            // First index in account order at or after (accountNumber, fromMillis)
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int row = accountOrder(mid);
+                long account = accountNumber(row);
+                if (account < accountNumber || (account == accountNumber && timestamp(row) < fromMillis)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            long visited = 0;
+            for (int i = low; i < size && visited < limit; i++) {
+                int row = accountOrder(i);
+                if (accountNumber(row) != accountNumber || timestamp(row) >= toMillis) break;
+                visitRow(row, visitor);
+                visited++;
+            }
+            return visited;
+        }
+
+        private void visitRow(int row, RowVisitor visitor) {
+            visitor.visit(timestamp(row), data.getLong(transactionIdsAt + row * 8), accountNumber(row),
+                TYPES[data.get(typesAt + row)], DESCRIPTIONS[data.get(descriptionsAt + row) & 0xFF],
+                data.getLong(amountsAt + row * 8));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+/**
+ * Kinds of account transactions
+ * Demonstrates: Enums, Type safety
+ */
+public enum TransactionType {
+    DEPOSIT('+'),
+    WITHDRAWAL('-'),
+    PIN_CHANGE(' '),
+    TRANSFER_IN('+'),
+    TRANSFER_OUT('-');
+
+    // Sign shown next to the amount on statements
+    private final char symbol;
+
+    TransactionType(char symbol) {
+        this.symbol = symbol;
+    }
+
+    public char getSymbol() { return symbol; }
+}
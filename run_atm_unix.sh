@@ -7,7 +7,7 @@ echo "🔧 Creating build directory..."
 mkdir -p build
 
 echo "⚙️ Compiling Java files..."
-javac -d build *.java
+javac -encoding UTF-8 -d build *.java
 
 if [ $? -eq 0 ]; then
     echo "✅ Compilation successful!"
@@ -7,7 +7,7 @@ echo 🔧 Creating build directory...
 if not exist build mkdir build
 
 echo ⚙️ Compiling Java files...
-javac -d build *.java
+javac -encoding UTF-8 -d build *.java
 
 if %ERRORLEVEL% EQU 0 (
     echo ✅ Compilation successful!
@@ -0,0 +1,19 @@
+#!/bin/bash
+echo "================================================"
+echo "       ATM Simulator - Benchmark Script"
+echo "================================================"
+
+echo "🔧 Creating build directory..."
+mkdir -p build
+
+echo "⚙️ Compiling Java files..."
+javac -encoding UTF-8 -d build *.java
+
+if [ $? -eq 0 ]; then
+    echo "✅ Compilation successful!"
+    echo "⏱️ Running benchmark suite..."
+    echo
+    java -cp build BenchmarkSuite "$@"
+else
+    echo "❌ Compilation failed! Please check your Java installation."
+fi
@@ -0,0 +1,20 @@
+@echo off
+echo ================================================
+echo        ATM Simulator - Benchmark Script
+echo ================================================
+
+echo 🔧 Creating build directory...
+if not exist build mkdir build
+
+echo ⚙️ Compiling Java files...
+javac -encoding UTF-8 -d build *.java
+
+if %ERRORLEVEL% EQU 0 (
+    echo ✅ Compilation successful!
+    echo ⏱️ Running benchmark suite...
+    echo.
+    java -cp build BenchmarkSuite %*
+) else (
+    echo ❌ Compilation failed! Please check your Java installation.
+    pause
+)